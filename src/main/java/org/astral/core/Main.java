@@ -7,9 +7,14 @@ import org.astral.core.monitor.MonitorConfig;
 import org.astral.core.monitor.TpsMonitor;
 import org.astral.core.process.JarProcessManager;
 import org.astral.core.process.ManagerHolder;
+import org.astral.core.process.RestartCoordinator;
+import org.astral.core.replication.ReplicationService;
+import org.astral.core.scheduler.MaintenanceScheduler;
 import org.astral.core.updates.github.GithubService;
+import org.astral.core.updates.util.IoThrottle;
 import org.astral.core.watcher.assets.AssetsWatcher;
 import org.astral.core.watcher.mods.DirectorySynchronizer;
+import org.astral.core.watcher.mods.Trash;
 import org.astral.core.watcher.mods.WatcherRegistry;
 import org.jetbrains.annotations.NotNull;
 
@@ -18,7 +23,9 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Scanner;
+import java.util.concurrent.TimeUnit;
 
 class Main {
 
@@ -30,6 +37,13 @@ class Main {
         if (config == null) config = new Config();
         if (config.server == null) config.server = new Config.Server();
         if (config.watchers == null) config.watchers = new ArrayList<>();
+        if (config.sync == null) config.sync = new Config.Sync();
+        if (config.replication == null) config.replication = new Config.Replication();
+
+        DirectorySynchronizer.configure(config.sync);
+        IoThrottle.shared().configure(config.sync.ioLimitMBps, config.sync.ioBurstMB);
+        DirectorySynchronizer.recoverJournal();
+        Trash.recover();
 
         Path basePath = resolveServerPath(config, scanner);
 
@@ -60,7 +74,8 @@ class Main {
         Path jarPath = basePath.resolve("Server").resolve(config.server.jarName);
         List<String> baseArgs = buildArgs(config.server.args);
         JarProcessManager manager = new JarProcessManager(jarPath.toString(), localAssets, baseArgs);
-        ManagerHolder managerHolder = new ManagerHolder(manager);
+        RestartCoordinator restartCoordinator = new RestartCoordinator(manager, config.server.restartCoalesceSeconds);
+        ManagerHolder managerHolder = new ManagerHolder(manager, restartCoordinator);
         WatcherRegistry watcherRegistry = new WatcherRegistry(managerHolder, serverMods, localMods);
 
         /* ================= CARGA WATCHERS DESDE CONFIG ================= */
@@ -82,7 +97,7 @@ class Main {
                 }
 
                 try {
-                    watcherRegistry.addWatcher(watcherPath);
+                    watcherRegistry.addWatcher(watcherPath, w);
                     System.out.println("[WATCHER] Cargado watcher: " + watcherPath);
 
                 } catch (Exception e) {
@@ -93,16 +108,27 @@ class Main {
 
         }
 
+        /* ================= REPLICACIÓN ENTRE NODOS ================= */
+
+        ReplicationService replication = ReplicationService.start(config.replication, localMods, localAssets);
+
         /* ================= INICIALIZAR MONITOR TPS (monitor.yml) ================= */
 
         Path monitorFile = baseDir.resolve("monitor.yml");
         MonitorConfig monitorConfig = MonitorConfig.load(monitorFile);
-        TpsMonitor tpsMonitor = new TpsMonitor(manager, monitorConfig, monitorFile);
+        TpsMonitor tpsMonitor = new TpsMonitor(manager, restartCoordinator, monitorConfig, monitorFile);
+
+        MaintenanceScheduler maintenanceScheduler = new MaintenanceScheduler(
+                manager,
+                monitorConfig,
+                () -> manager.isRunning() ? tpsMonitor.latestWorldTps() : Map.of()
+        );
 
         Runnable reloadMonitorRunnable = () -> {
             System.out.println("[MAIN] Recargando monitor.yml...");
             MonitorConfig newCfg = MonitorConfig.load(monitorFile);
             tpsMonitor.updateConfig(newCfg);
+            maintenanceScheduler.updateConfig(newCfg);
             System.out.println("[MAIN] monitor.yml recargado.");
         };
 
@@ -110,6 +136,8 @@ class Main {
 
         Runtime.getRuntime().addShutdownHook(new Thread(() -> {
             System.out.println("[SHUTDOWN] Cerrando aplicación...");
+            if (replication != null) replication.shutdown();
+            restartCoordinator.shutdown();
             manager.stop();
             try {
                 System.out.println("[SHUTDOWN] Sincronizando localMods -> serverMods antes de cerrar...");
@@ -122,42 +150,49 @@ class Main {
 
             try {
                 tpsMonitor.shutdown();
+                maintenanceScheduler.shutdown();
             } catch (Exception ignored) {}
         }));
 
-        Thread assetsThread = new Thread(
-                new AssetsWatcher(localAssets, managerHolder),
-                "AssetsWatcher"
-        );
-        assetsThread.setDaemon(true);
-        assetsThread.start();
+        new AssetsWatcher(localAssets, managerHolder).start();
 
         manager.start();
 
         tpsMonitor.start();
 
+        maintenanceScheduler.start();
+
         BackendConsole console = new BackendConsole(
                 managerHolder,
                 watcherRegistry,
                 config,
                 reloadMonitorRunnable,
                 () -> {
+                    if (replication != null) replication.shutdown();
+                    restartCoordinator.shutdown();
                     watcherRegistry.shutdownAll();
                     try {
                         tpsMonitor.shutdown();
+                        maintenanceScheduler.shutdown();
                     } catch (Exception ignored) {}
                     manager.stop();
                 },
-                githubService
+                githubService,
+                maintenanceScheduler,
+                replication
         );
 
         if (githubService != null) {
             final GithubService us = githubService;
-            new Thread(() -> {
+            maintenanceScheduler.setUpdatesJob(() -> {
+                System.out.println("[MAIN] Comprobación programada de actualizaciones...");
+                us.checkAllAndDownload();
+            });
+            maintenanceScheduler.submit("updates-initial", TimeUnit.MINUTES.toMillis(10), () -> {
                 System.out.println("[MAIN] Iniciando comprobación inicial de actualizaciones...");
                 us.checkAllAndDownload();
                 System.out.println("[MAIN] Comprobación inicial de actualizaciones finalizada.");
-            }, "InitialUpdatesCheck").start();
+            });
         }
 
         console.startListening();
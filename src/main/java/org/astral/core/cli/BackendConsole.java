@@ -4,8 +4,17 @@ import org.astral.core.config.Config;
 import org.astral.core.config.ConfigLoader;
 import org.astral.core.process.JarProcessManager;
 import org.astral.core.process.ManagerHolder;
+import org.astral.core.replication.ReplicationService;
+import org.astral.core.scheduler.MaintenanceScheduler;
 import org.astral.core.updates.github.GithubService;
 import org.astral.core.updates.github.GithubConfig;
+import org.astral.core.updates.util.IoThrottle;
+import org.astral.core.watcher.WatchDispatcher;
+import org.astral.core.watcher.mods.CopyBenchmark;
+import org.astral.core.watcher.mods.Durability;
+import org.astral.core.watcher.mods.PathFilter;
+import org.astral.core.watcher.mods.Trash;
+import org.astral.core.watcher.mods.WatchEventSuppressor;
 import org.astral.core.watcher.mods.WatcherRegistry;
 
 import java.nio.file.Path;
@@ -21,19 +30,25 @@ public class BackendConsole {
     private final Runnable reloadConfigCallback;
     private final Runnable shutdownCallback;
     private final GithubService githubService;
+    private final MaintenanceScheduler maintenanceScheduler;
+    private final ReplicationService replication;
 
     public BackendConsole(ManagerHolder managerHolder,
                           WatcherRegistry watcherRegistry,
                           Config config,
                           Runnable reloadConfigCallback,
                           Runnable shutdownCallback,
-                          GithubService githubService) {
+                          GithubService githubService,
+                          MaintenanceScheduler maintenanceScheduler,
+                          ReplicationService replication) {
         this.managerHolder = managerHolder;
         this.watcherRegistry = watcherRegistry;
         this.config = config;
         this.reloadConfigCallback = reloadConfigCallback;
         this.shutdownCallback = shutdownCallback;
         this.githubService = githubService;
+        this.maintenanceScheduler = maintenanceScheduler;
+        this.replication = replication;
     }
 
     public void startListening() {
@@ -44,12 +59,19 @@ public class BackendConsole {
   watch add <ruta>
   watch remove <ruta>
   watch list
+  watch stats
   backend send <comando> / bs <comando>
   backend reload-config / brc
   updates list
   updates check
   updates download <repoKey>
   updates download all
+  scheduler status
+  restart status
+  io stats
+  replication stats
+  replication sync
+  sync bench [ruta]
   exit / quit
 """);
         }).start();
@@ -90,6 +112,15 @@ public class BackendConsole {
                     continue;
                 }
 
+                if (input.equalsIgnoreCase("watch stats")) {
+                    WatchDispatcher.shared().stats().forEach(l -> System.out.println("[WATCHER] " + l));
+                    System.out.println("[WATCHER] " + WatchEventSuppressor.stats());
+                    System.out.println("[WATCHER] ecos descartados por contenido: " + WatchEventSuppressor.echoesDropped());
+                    System.out.println("[WATCHER] " + PathFilter.stats());
+                    watcherRegistry.fanOutStats().forEach(l -> System.out.println("[FANOUT] " + l));
+                    continue;
+                }
+
                 if (input.startsWith("watch add ")) {
                     String payload = input.substring("watch add ".length()).trim();
                     if (payload.isEmpty()) { System.out.println("[BACKEND] Debes indicar la ruta: watch add <ruta>"); continue; }
@@ -187,6 +218,42 @@ public class BackendConsole {
                 }
 
 
+                if (input.equalsIgnoreCase("io stats")) {
+                    IoThrottle.shared().stats().forEach(l -> System.out.println("[IO] " + l));
+                    System.out.println("[IO] " + Trash.stats());
+                    System.out.println("[IO] " + Durability.stats());
+                    continue;
+                }
+
+                if (input.equalsIgnoreCase("replication stats")) {
+                    if (replication == null) System.out.println("[REPLICATION] Replicación no configurada.");
+                    else replication.stats().forEach(l -> System.out.println("[REPLICATION] " + l));
+                    continue;
+                }
+
+                if (input.equalsIgnoreCase("replication sync")) {
+                    if (replication == null) System.out.println("[REPLICATION] Replicación no configurada.");
+                    else replication.syncNow();
+                    continue;
+                }
+
+                if (input.equalsIgnoreCase("restart status")) {
+                    managerHolder.restarts().status().forEach(l -> System.out.println("[RESTART] " + l));
+                    continue;
+                }
+
+                if (input.equalsIgnoreCase("scheduler status")) {
+                    if (maintenanceScheduler == null) System.out.println("[SCHEDULER] Planificador no disponible.");
+                    else maintenanceScheduler.status().forEach(l -> System.out.println("[SCHEDULER] " + l));
+                    continue;
+                }
+
+                if (input.equalsIgnoreCase("sync bench") || input.startsWith("sync bench ")) {
+                    String payload = input.substring("sync bench".length()).trim();
+                    Path dir = payload.isEmpty() ? null : Path.of(payload);
+                    new Thread(() -> CopyBenchmark.run(dir), "SyncBenchmark").start();
+                    continue;
+                }
 
                 System.out.println("[BACKEND] Comando inválido.");
             }
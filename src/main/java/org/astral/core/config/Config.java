@@ -6,15 +6,51 @@ public class Config {
 
     public Server server;
     public List<Watcher> watchers;
+    public Sync sync;
+    public Replication replication;
 
     public static class Server {
         public String basePath;
         public String jarName;
         public String args;
+        public int restartCoalesceSeconds = 10;
 
         public Server() {}
     }
 
+    public static class Sync {
+        public boolean manifestHashes = false;
+        public String stateDir = ".sync-core";
+        public int copyConcurrency = 4;
+        public String copyMode = "copy";
+        public boolean verifyStagedHashes = true;
+        public int quietMillis = 300;
+        public int debounceMillis = 750;
+        public String watchBackend = "auto";
+        public int pollMinMillis = 500;
+        public int pollMaxMillis = 10000;
+        public int deltaThresholdMB = 64;
+        public int deltaBlockKB = 64;
+        public boolean deltaInPlace = false;
+        public int ioLimitMBps = 0;
+        public int ioBurstMB = 0;
+        public int trashBacklog = 64;
+        public String durability = "batch";
+
+        public Sync() {}
+    }
+
+    public static class Replication {
+        public String listen;
+        public String token;
+        public List<String> peers;
+        public List<String> trees;
+        public int intervalSeconds = 15;
+        public int blockKB = 256;
+
+        public Replication() {}
+    }
+
     public static class Watcher {
 
         @SuppressWarnings("unused")
@@ -22,9 +58,19 @@ public class Config {
         }
 
         public String path;
+        public String backend;
+        public List<String> include;
+        public List<String> exclude;
+        public String completion;
+        public List<String> targets;
 
         public Watcher(String path) {
             this.path = path;
         }
+
+        public Watcher(String path, String backend) {
+            this.path = path;
+            this.backend = backend;
+        }
     }
 }
\ No newline at end of file
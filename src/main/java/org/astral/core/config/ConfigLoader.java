@@ -43,6 +43,12 @@ public class ConfigLoader {
                 if (cfg.watchers == null)
                     cfg.watchers = new ArrayList<>();
 
+                if (cfg.sync == null)
+                    cfg.sync = new Config.Sync();
+
+                if (cfg.replication == null)
+                    cfg.replication = new Config.Replication();
+
                 return cfg;
 
             } catch (Exception ex) {
@@ -126,6 +132,10 @@ public class ConfigLoader {
 
                     cfg.server.args = joinTokensToLine(parsed);
                 }
+
+                if (server.containsKey("restartCoalesceSeconds"))
+                    cfg.server.restartCoalesceSeconds =
+                            parseInt(server.get("restartCoalesceSeconds"), cfg.server.restartCoalesceSeconds);
             }
         }
 
@@ -145,12 +155,18 @@ public class ConfigLoader {
                                 (Map<String, Object>) raw;
 
                         Object pathObj = wm.get("path");
+                        Object backendObj = wm.get("backend");
                         if (pathObj != null) {
-                            watchers.add(
-                                    new Config.Watcher(
-                                            String.valueOf(pathObj)
-                                    )
+                            Config.Watcher watcher = new Config.Watcher(
+                                    String.valueOf(pathObj),
+                                    backendObj == null ? null : String.valueOf(backendObj)
                             );
+                            watcher.include = parseStringList(wm.get("include"));
+                            watcher.exclude = parseStringList(wm.get("exclude"));
+                            Object completionObj = wm.get("completion");
+                            if (completionObj != null) watcher.completion = String.valueOf(completionObj);
+                            watcher.targets = parseStringList(wm.get("targets"));
+                            watchers.add(watcher);
                         }
 
                     } else if (o instanceof String s) {
@@ -162,12 +178,141 @@ public class ConfigLoader {
             }
         }
 
+        /* ================= SYNC ================= */
+
+        if (root.containsKey("sync")) {
+            Object syncObj = root.get("sync");
+
+            if (syncObj instanceof Map<?, ?> raw) {
+                @SuppressWarnings("unchecked")
+                Map<String, Object> sync = (Map<String, Object>) raw;
+
+                if (sync.containsKey("manifestHashes"))
+                    cfg.sync.manifestHashes =
+                            Boolean.parseBoolean(String.valueOf(sync.get("manifestHashes")));
+
+                if (sync.containsKey("stateDir"))
+                    cfg.sync.stateDir =
+                            String.valueOf(sync.get("stateDir"));
+
+                if (sync.containsKey("copyConcurrency"))
+                    cfg.sync.copyConcurrency =
+                            parseInt(sync.get("copyConcurrency"), cfg.sync.copyConcurrency);
+
+                if (sync.containsKey("copyMode"))
+                    cfg.sync.copyMode =
+                            String.valueOf(sync.get("copyMode"));
+
+                if (sync.containsKey("quietMillis"))
+                    cfg.sync.quietMillis =
+                            parseInt(sync.get("quietMillis"), cfg.sync.quietMillis);
+
+                if (sync.containsKey("debounceMillis"))
+                    cfg.sync.debounceMillis =
+                            parseInt(sync.get("debounceMillis"), cfg.sync.debounceMillis);
+
+                if (sync.containsKey("watchBackend"))
+                    cfg.sync.watchBackend =
+                            String.valueOf(sync.get("watchBackend"));
+
+                if (sync.containsKey("pollMinMillis"))
+                    cfg.sync.pollMinMillis =
+                            parseInt(sync.get("pollMinMillis"), cfg.sync.pollMinMillis);
+
+                if (sync.containsKey("pollMaxMillis"))
+                    cfg.sync.pollMaxMillis =
+                            parseInt(sync.get("pollMaxMillis"), cfg.sync.pollMaxMillis);
+
+                if (sync.containsKey("deltaThresholdMB"))
+                    cfg.sync.deltaThresholdMB =
+                            parseInt(sync.get("deltaThresholdMB"), cfg.sync.deltaThresholdMB);
+
+                if (sync.containsKey("deltaBlockKB"))
+                    cfg.sync.deltaBlockKB =
+                            parseInt(sync.get("deltaBlockKB"), cfg.sync.deltaBlockKB);
+
+                if (sync.containsKey("deltaInPlace"))
+                    cfg.sync.deltaInPlace =
+                            Boolean.parseBoolean(String.valueOf(sync.get("deltaInPlace")));
+
+                if (sync.containsKey("ioLimitMBps"))
+                    cfg.sync.ioLimitMBps =
+                            parseInt(sync.get("ioLimitMBps"), cfg.sync.ioLimitMBps);
+
+                if (sync.containsKey("ioBurstMB"))
+                    cfg.sync.ioBurstMB =
+                            parseInt(sync.get("ioBurstMB"), cfg.sync.ioBurstMB);
+
+                if (sync.containsKey("trashBacklog"))
+                    cfg.sync.trashBacklog =
+                            parseInt(sync.get("trashBacklog"), cfg.sync.trashBacklog);
+
+                if (sync.containsKey("durability"))
+                    cfg.sync.durability =
+                            String.valueOf(sync.get("durability"));
+
+                if (sync.containsKey("verifyStagedHashes"))
+                    cfg.sync.verifyStagedHashes =
+                            Boolean.parseBoolean(String.valueOf(sync.get("verifyStagedHashes")));
+            }
+        }
+
+        /* ================= REPLICATION ================= */
+
+        if (root.containsKey("replication")) {
+            Object replObj = root.get("replication");
+
+            if (replObj instanceof Map<?, ?> raw) {
+                @SuppressWarnings("unchecked")
+                Map<String, Object> repl = (Map<String, Object>) raw;
+
+                if (repl.get("listen") != null)
+                    cfg.replication.listen =
+                            String.valueOf(repl.get("listen"));
+
+                if (repl.get("token") != null)
+                    cfg.replication.token =
+                            String.valueOf(repl.get("token"));
+
+                cfg.replication.peers = parseStringList(repl.get("peers"));
+                cfg.replication.trees = parseStringList(repl.get("trees"));
+
+                if (repl.containsKey("intervalSeconds"))
+                    cfg.replication.intervalSeconds =
+                            parseInt(repl.get("intervalSeconds"), cfg.replication.intervalSeconds);
+
+                if (repl.containsKey("blockKB"))
+                    cfg.replication.blockKB =
+                            parseInt(repl.get("blockKB"), cfg.replication.blockKB);
+            }
+        }
+
         if (cfg.watchers == null)
             cfg.watchers = new ArrayList<>();
 
         return cfg;
     }
 
+    /* Acepta una lista YAML o un único valor. */
+    private static List<String> parseStringList(Object raw) {
+        if (raw == null) return null;
+        List<String> out = new ArrayList<>();
+        if (raw instanceof List<?> list) {
+            for (Object o : list) if (o != null) out.add(String.valueOf(o));
+        } else {
+            out.add(String.valueOf(raw));
+        }
+        return out;
+    }
+
+    private static int parseInt(Object raw, int fallback) {
+        try {
+            return Integer.parseInt(String.valueOf(raw).trim());
+        } catch (NumberFormatException e) {
+            return fallback;
+        }
+    }
+
     private static Path backupConfigFile(@NotNull Path path) {
         try {
             String ts = LocalDateTime.now().format(BACKUP_TS);
@@ -207,19 +352,57 @@ public class ConfigLoader {
                 !cfg.server.args.isBlank()) {
             server.put("args", cfg.server.args);
         }
+        server.put("restartCoalesceSeconds",
+                cfg.server != null ? cfg.server.restartCoalesceSeconds : 10);
 
         List<Object> watchersOut = new ArrayList<>();
         if (cfg.watchers != null) {
             for (Config.Watcher w : cfg.watchers) {
                 Map<String, Object> wm = new LinkedHashMap<>();
                 wm.put("path", w.path);
+                if (w.backend != null && !w.backend.isBlank()) wm.put("backend", w.backend);
+                if (w.include != null && !w.include.isEmpty()) wm.put("include", w.include);
+                if (w.exclude != null && !w.exclude.isEmpty()) wm.put("exclude", w.exclude);
+                if (w.completion != null && !w.completion.isBlank()) wm.put("completion", w.completion);
+                if (w.targets != null && !w.targets.isEmpty()) wm.put("targets", w.targets);
                 watchersOut.add(wm);
             }
         }
 
+        Config.Sync syncCfg = cfg.sync != null ? cfg.sync : new Config.Sync();
+        Map<String, Object> sync = new LinkedHashMap<>();
+        sync.put("manifestHashes", syncCfg.manifestHashes);
+        sync.put("stateDir", syncCfg.stateDir);
+        sync.put("copyConcurrency", syncCfg.copyConcurrency);
+        sync.put("copyMode", syncCfg.copyMode);
+        sync.put("verifyStagedHashes", syncCfg.verifyStagedHashes);
+        sync.put("quietMillis", syncCfg.quietMillis);
+        sync.put("debounceMillis", syncCfg.debounceMillis);
+        sync.put("watchBackend", syncCfg.watchBackend);
+        sync.put("pollMinMillis", syncCfg.pollMinMillis);
+        sync.put("pollMaxMillis", syncCfg.pollMaxMillis);
+        sync.put("deltaThresholdMB", syncCfg.deltaThresholdMB);
+        sync.put("deltaBlockKB", syncCfg.deltaBlockKB);
+        sync.put("deltaInPlace", syncCfg.deltaInPlace);
+        sync.put("ioLimitMBps", syncCfg.ioLimitMBps);
+        sync.put("ioBurstMB", syncCfg.ioBurstMB);
+        sync.put("trashBacklog", syncCfg.trashBacklog);
+        sync.put("durability", syncCfg.durability);
+
+        Config.Replication replCfg = cfg.replication != null ? cfg.replication : new Config.Replication();
+        Map<String, Object> replication = new LinkedHashMap<>();
+        replication.put("listen", replCfg.listen != null ? replCfg.listen : "");
+        if (replCfg.token != null && !replCfg.token.isBlank()) replication.put("token", replCfg.token);
+        replication.put("peers", replCfg.peers != null ? replCfg.peers : new ArrayList<>());
+        if (replCfg.trees != null && !replCfg.trees.isEmpty()) replication.put("trees", replCfg.trees);
+        replication.put("intervalSeconds", replCfg.intervalSeconds);
+        replication.put("blockKB", replCfg.blockKB);
+
         Map<String, Object> root = new LinkedHashMap<>();
         root.put("server", server);
         root.put("watchers", watchersOut);
+        root.put("sync", sync);
+        root.put("replication", replication);
 
         try (BufferedWriter writer =
                      Files.newBufferedWriter(path)) {
@@ -322,9 +505,42 @@ server:
   basePath: # /home/ruta/completa
   jarName: HytaleServer.jar
   args: --assets ../Assets.zip --backup --backup-dir backups --backup-frequency 30
+  restartCoalesceSeconds: 10
 
 watchers:
 #  - path: /home/path/your/compile/libs
+#    backend: auto # auto | native | polling
+#    include: ["*.jar"]
+#    exclude: ["*-sources.jar", "tmp/**"]
+#    completion: auto # build/libs: quiet | marker[:.build-complete] | ready | zip | auto
+#    targets: ["/srv/lobby/mods", "/srv/survival/mods"] # fan-out: copiar a estos destinos en lugar de localMods
+
+sync:
+  manifestHashes: false
+  stateDir: .sync-core
+  copyConcurrency: 4
+  copyMode: copy # copy | transfer | reflink | hardlink | auto (hardlink: solo si el origen se reemplaza con rename)
+  verifyStagedHashes: true
+  quietMillis: 300
+  debounceMillis: 750
+  watchBackend: auto # auto | native | polling
+  pollMinMillis: 500
+  pollMaxMillis: 10000
+  deltaThresholdMB: 64 # 0 = desactivado
+  deltaBlockKB: 64
+  deltaInPlace: false
+  ioLimitMBps: 0 # 0 = sin límite
+  ioBurstMB: 0 # 0 = un segundo de ioLimitMBps
+  trashBacklog: 64 # 0 = borrar siempre en línea
+  durability: batch # none | batch | always
+
+replication:
+  listen: # vacío = no servir; "7420" (solo 127.0.0.1) o "0.0.0.0:7420" para servir mods/assets a otros nodos
+  token: # secreto compartido entre nodos; obligatorio si listen no es loopback
+  peers: [] # ["10.0.0.2:7420"] orígenes de los que traer cambios
+  trees: [mods, assets]
+  intervalSeconds: 15
+  blockKB: 256
 """;
 
         Files.writeString(path, example);
@@ -20,6 +20,8 @@ public final class DefaultConfig {
 
         cfg.server = server;
         cfg.watchers = new ArrayList<>();
+        cfg.sync = new Config.Sync();
+        cfg.replication = new Config.Replication();
 
         return cfg;
     }
@@ -0,0 +1,275 @@
+package org.astral.core.monitor;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/*
+ * Detecta firmas de fallo en la salida del servidor.
+ * Todas las firmas se compilan en un único autómata (Aho-Corasick determinista sobre un
+ * alfabeto comprimido), así cada línea se recorre una sola vez y sin crear objetos en el
+ * hilo lector. Las tormentas de excepciones se cuentan en una ventana deslizante por segundos;
+ * el literal de la tormenta tiene su propia salida en el autómata, así una línea que además
+ * contiene una firma también cuenta como excepción.
+ */
+public final class CrashSignatureDetector {
+
+    public enum Action {
+        RESTART, DIAGNOSTICS, ALERT;
+
+        static Action parse(String raw) {
+            if (raw == null) return null;
+            return switch (raw.trim().toLowerCase(Locale.ROOT)) {
+                case "restart" -> RESTART;
+                case "diagnostics", "diag" -> DIAGNOSTICS;
+                case "alert" -> ALERT;
+                default -> null;
+            };
+        }
+    }
+
+    public record Signature(String literal, Action action) {}
+
+    public interface Listener {
+        void onSignature(Signature signature, String line);
+    }
+
+    private static final String STORM_LITERAL = "Exception";
+    private static final int TAIL_SIZE = 200;
+
+    private final List<Signature> signatures;
+    private final Signature stormSignature;
+    private final Listener listener;
+
+    /* autómata */
+    private final short[] alphabet;
+    private final int alphabetSize;
+    private final int[] delta;
+    private final int[] output;
+    private final boolean[] stormOutput;
+    private final int stormIndex;
+
+    /* cooldown por firma */
+    private final long cooldownMillis;
+    private final long[] lastFiredAt;
+
+    /* ventana deslizante de excepciones */
+    private final int stormThreshold;
+    private final int[] stormBuckets;
+    private final long[] stormBucketSecond;
+
+    /* últimas líneas para diagnósticos */
+    private final String[] tail = new String[TAIL_SIZE];
+    private volatile int tailPos = 0;
+
+    private CrashSignatureDetector(List<Signature> signatures,
+                                   Signature stormSignature,
+                                   int stormThreshold,
+                                   int stormWindowSeconds,
+                                   long cooldownMillis,
+                                   Listener listener) {
+        this.signatures = signatures;
+        this.stormSignature = stormSignature;
+        this.stormThreshold = stormThreshold;
+        this.cooldownMillis = cooldownMillis;
+        this.listener = listener;
+
+        List<String> literals = new ArrayList<>();
+        for (Signature s : signatures) literals.add(s.literal());
+        if (stormSignature != null) literals.add(STORM_LITERAL);
+        this.stormIndex = stormSignature != null ? literals.size() - 1 : -1;
+
+        this.alphabet = new short[Character.MAX_VALUE + 1];
+        int next = 1;
+        for (String lit : literals) {
+            for (int i = 0; i < lit.length(); i++) {
+                char c = lit.charAt(i);
+                if (alphabet[c] == 0) alphabet[c] = (short) next++;
+            }
+        }
+        this.alphabetSize = next;
+
+        /* trie */
+        int maxStates = 1;
+        for (String lit : literals) maxStates += lit.length();
+
+        int[] trie = new int[maxStates * alphabetSize];
+        Arrays.fill(trie, -1);
+        int[] out = new int[maxStates];
+        Arrays.fill(out, -1);
+        boolean[] storm = new boolean[maxStates];
+        int states = 1;
+
+        for (int p = 0; p < literals.size(); p++) {
+            String lit = literals.get(p);
+            int s = 0;
+            for (int i = 0; i < lit.length(); i++) {
+                int a = alphabet[lit.charAt(i)];
+                int idx = s * alphabetSize + a;
+                if (trie[idx] < 0) trie[idx] = states++;
+                s = trie[idx];
+            }
+            if (p == stormIndex) storm[s] = true;
+            else if (out[s] < 0 || p < out[s]) out[s] = p;
+        }
+
+        /* enlaces de fallo -> DFA completo (BFS) */
+        int[] fail = new int[states];
+        int[] queue = new int[states];
+        int head = 0, tailQ = 0;
+
+        for (int a = 0; a < alphabetSize; a++) {
+            int idx = a;
+            if (trie[idx] < 0) {
+                trie[idx] = 0;
+            } else {
+                fail[trie[idx]] = 0;
+                queue[tailQ++] = trie[idx];
+            }
+        }
+
+        while (head < tailQ) {
+            int s = queue[head++];
+            int f = fail[s];
+            if (out[f] >= 0 && (out[s] < 0 || out[f] < out[s])) out[s] = out[f];
+            if (storm[f]) storm[s] = true;
+            for (int a = 0; a < alphabetSize; a++) {
+                int idx = s * alphabetSize + a;
+                int t = trie[idx];
+                if (t < 0) {
+                    trie[idx] = trie[f * alphabetSize + a];
+                } else {
+                    fail[t] = trie[f * alphabetSize + a];
+                    queue[tailQ++] = t;
+                }
+            }
+        }
+
+        this.delta = Arrays.copyOf(trie, states * alphabetSize);
+        this.output = Arrays.copyOf(out, states);
+        this.stormOutput = Arrays.copyOf(storm, states);
+        this.lastFiredAt = new long[signatures.size() + 1];
+
+        int window = Math.max(1, stormWindowSeconds);
+        this.stormBuckets = new int[window];
+        this.stormBucketSecond = new long[window];
+    }
+
+    public static @NotNull CrashSignatureDetector fromConfig(@NotNull MonitorConfig cfg, Listener listener) {
+        List<Signature> parsed = new ArrayList<>();
+
+        for (String raw : cfg.signatures) {
+            if (raw == null) continue;
+            int sep = raw.indexOf('|');
+            if (sep <= 0 || sep == raw.length() - 1) {
+                System.out.println("[MONITOR] Firma inválida (usar accion|texto): " + raw);
+                continue;
+            }
+            Action action = Action.parse(raw.substring(0, sep));
+            String literal = raw.substring(sep + 1).trim();
+            if (action == null || literal.isEmpty()) {
+                System.out.println("[MONITOR] Firma inválida (usar accion|texto): " + raw);
+                continue;
+            }
+            parsed.add(new Signature(literal, action));
+        }
+
+        Signature storm = null;
+        if (cfg.exceptionStormThreshold > 0) {
+            Action stormAction = Action.parse(cfg.exceptionStormAction);
+            storm = new Signature("exception storm", stormAction != null ? stormAction : Action.DIAGNOSTICS);
+        }
+
+        return new CrashSignatureDetector(
+                parsed,
+                storm,
+                cfg.exceptionStormThreshold,
+                cfg.exceptionStormWindowSeconds,
+                Math.max(0, cfg.signatureCooldownSeconds) * 1000L,
+                listener
+        );
+    }
+
+    /* Llamado desde el hilo lector de la salida: no reserva memoria salvo cuando dispara. */
+    public void onLine(String line) {
+        if (line == null) return;
+
+        int pos = tailPos;
+        tail[pos] = line;
+        tailPos = (pos + 1) % TAIL_SIZE;
+
+        int s = 0;
+        int best = -1;
+        boolean sawException = false;
+
+        for (int i = 0, n = line.length(); i < n; i++) {
+            s = delta[s * alphabetSize + alphabet[line.charAt(i)]];
+            if (stormOutput[s]) sawException = true;
+            int o = output[s];
+            if (o >= 0 && (best < 0 || o < best)) best = o;
+            if (best == 0 && (sawException || stormIndex < 0)) break;
+        }
+
+        long now = System.currentTimeMillis();
+
+        if (best >= 0) {
+            fire(best, signatures.get(best), line, now);
+        }
+
+        if (sawException && recordException(now)) {
+            fire(signatures.size(), stormSignature, line, now);
+        }
+    }
+
+    private boolean recordException(long now) {
+        long sec = now / 1000L;
+        int n = stormBuckets.length;
+        int idx = (int) (sec % n);
+
+        if (stormBucketSecond[idx] != sec) {
+            stormBucketSecond[idx] = sec;
+            stormBuckets[idx] = 0;
+        }
+        stormBuckets[idx]++;
+
+        int total = 0;
+        for (int i = 0; i < n; i++) {
+            if (sec - stormBucketSecond[i] < n) total += stormBuckets[i];
+        }
+        return total >= stormThreshold;
+    }
+
+    private void fire(int slot, Signature sig, String line, long now) {
+        if (now - lastFiredAt[slot] < cooldownMillis) return;
+        lastFiredAt[slot] = now;
+        if (listener != null) {
+            try {
+                listener.onSignature(sig, line);
+            } catch (Exception e) {
+                System.out.println("[MONITOR] Error notificando firma: " + e.getMessage());
+            }
+        }
+    }
+
+    public void resetWindows() {
+        Arrays.fill(stormBuckets, 0);
+        Arrays.fill(stormBucketSecond, 0L);
+    }
+
+    public @NotNull List<String> tailSnapshot() {
+        List<String> out = new ArrayList<>(TAIL_SIZE);
+        int start = tailPos;
+        for (int i = 0; i < TAIL_SIZE; i++) {
+            String l = tail[(start + i) % TAIL_SIZE];
+            if (l != null) out.add(l);
+        }
+        return out;
+    }
+
+    public int signatureCount() {
+        return signatures.size();
+    }
+}
@@ -5,7 +5,10 @@ import org.jetbrains.annotations.NotNull;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 public class MonitorConfig {
 
@@ -21,8 +24,40 @@ public class MonitorConfig {
     public boolean enablePeriodicRestart = false;
     public int periodicRestartDays = 7;
 
+    public int worldHistorySize = 10;
+    public int worldLowTpsSamples = 1;
+    public String lowTpsWorldCommand = "";
+    public int worldActionCooldownSeconds = 300;
+    public Map<String, WorldThreshold> worlds = new LinkedHashMap<>();
+
+    public boolean crashDetection = true;
+    public List<String> signatures = new ArrayList<>(List.of(
+            "restart|java.lang.OutOfMemoryError",
+            "restart|Found one Java-level deadlock",
+            "diagnostics|Watchdog",
+            "alert|Server tick took"
+    ));
+    public int exceptionStormThreshold = 50;
+    public int exceptionStormWindowSeconds = 10;
+    public String exceptionStormAction = "diagnostics";
+    public int signatureCooldownSeconds = 60;
+    public String diagnosticsDir = "diagnostics";
+
+    public double schedulerMinTps = 19.0;
+    public double schedulerMaxCpuLoad = 0.80;
+    public double schedulerMaxDiskBusy = 0.60;
+    public int schedulerPollSeconds = 5;
+    public int maintenanceMaxDelayMinutes = 30;
+    public int updatesCheckIntervalMinutes = 0;
+    public List<String> maintenanceCommands = new ArrayList<>();
+
     public MonitorConfig() {}
 
+    public static class WorldThreshold {
+        public Double tpsMin;
+        public String command;
+    }
+
     public static MonitorConfig load(Path path) {
         MonitorConfig cfg = new MonitorConfig();
 
@@ -36,6 +71,7 @@ public class MonitorConfig {
             }
 
             List<String> lines = Files.readAllLines(path);
+            boolean customSignatures = false;
             for (String raw : lines) {
                 String line = raw.trim();
                 if (line.isEmpty() || line.startsWith("#")) continue;
@@ -48,6 +84,10 @@ public class MonitorConfig {
                     value = value.substring(1, value.length() - 1);
                 }
                 try {
+                    if (key.startsWith("world.")) {
+                        parseWorldKey(cfg, key, value);
+                        continue;
+                    }
                     switch (key) {
                         case "checkIntervalSeconds" -> cfg.checkIntervalSeconds = Integer.parseInt(value);
                         case "responseTimeoutSeconds" -> cfg.responseTimeoutSeconds = Integer.parseInt(value);
@@ -59,6 +99,30 @@ public class MonitorConfig {
                         case "restartOnLowTps" -> cfg.restartOnLowTps = Boolean.parseBoolean(value);
                         case "enablePeriodicRestart" -> cfg.enablePeriodicRestart = Boolean.parseBoolean(value);
                         case "periodicRestartDays" -> cfg.periodicRestartDays = Integer.parseInt(value);
+                        case "worldHistorySize" -> cfg.worldHistorySize = Integer.parseInt(value);
+                        case "worldLowTpsSamples" -> cfg.worldLowTpsSamples = Integer.parseInt(value);
+                        case "lowTpsWorldCommand" -> cfg.lowTpsWorldCommand = value;
+                        case "worldActionCooldownSeconds" -> cfg.worldActionCooldownSeconds = Integer.parseInt(value);
+                        case "crashDetection" -> cfg.crashDetection = Boolean.parseBoolean(value);
+                        case "signature" -> {
+                            if (!customSignatures) {
+                                cfg.signatures.clear();
+                                customSignatures = true;
+                            }
+                            cfg.signatures.add(value);
+                        }
+                        case "exceptionStormThreshold" -> cfg.exceptionStormThreshold = Integer.parseInt(value);
+                        case "exceptionStormWindowSeconds" -> cfg.exceptionStormWindowSeconds = Integer.parseInt(value);
+                        case "exceptionStormAction" -> cfg.exceptionStormAction = value;
+                        case "signatureCooldownSeconds" -> cfg.signatureCooldownSeconds = Integer.parseInt(value);
+                        case "diagnosticsDir" -> cfg.diagnosticsDir = value;
+                        case "schedulerMinTps" -> cfg.schedulerMinTps = Double.parseDouble(value);
+                        case "schedulerMaxCpuLoad" -> cfg.schedulerMaxCpuLoad = Double.parseDouble(value);
+                        case "schedulerMaxDiskBusy" -> cfg.schedulerMaxDiskBusy = Double.parseDouble(value);
+                        case "schedulerPollSeconds" -> cfg.schedulerPollSeconds = Integer.parseInt(value);
+                        case "maintenanceMaxDelayMinutes" -> cfg.maintenanceMaxDelayMinutes = Integer.parseInt(value);
+                        case "updatesCheckIntervalMinutes" -> cfg.updatesCheckIntervalMinutes = Integer.parseInt(value);
+                        case "maintenanceCommand" -> cfg.maintenanceCommands.add(value);
                         default -> { /* ignore unknown */ }
                     }
                 } catch (Exception e) {
@@ -73,6 +137,23 @@ public class MonitorConfig {
         return cfg;
     }
 
+    /* world.<nombre>.tpsMin / world.<nombre>.command */
+    private static void parseWorldKey(MonitorConfig cfg, String key, String value) {
+        int dot = key.lastIndexOf('.');
+        if (dot <= "world.".length()) {
+            System.out.println("[MONITOR] Clave de mundo inválida en monitor.yml: " + key);
+            return;
+        }
+        String world = key.substring("world.".length(), dot);
+        String field = key.substring(dot + 1);
+        WorldThreshold wt = cfg.worlds.computeIfAbsent(world, _ -> new WorldThreshold());
+        switch (field) {
+            case "tpsMin" -> wt.tpsMin = Double.parseDouble(value);
+            case "command" -> wt.command = value;
+            default -> System.out.println("[MONITOR] Campo de mundo desconocido en monitor.yml: " + key);
+        }
+    }
+
     private static void writeDefaults(@NotNull Path path) throws IOException {
         if (path.getParent() != null) Files.createDirectories(path.getParent());
         String content = """
@@ -87,6 +168,28 @@ public class MonitorConfig {
                 # restartOnLowTps: si es true reinicia cuando TPS < tpsMin
                 # enablePeriodicRestart: si true, realizará un reinicio periódico cada periodicRestartDays días
                 # periodicRestartDays: número de días entre reinicios periódicos
+                # worldHistorySize: muestras de TPS que se guardan por mundo
+                # worldLowTpsSamples: muestras bajas consecutivas necesarias antes de actuar sobre un mundo
+                # lowTpsWorldCommand: comando por defecto para un mundo con TPS bajo ({world} = nombre);
+                #   vacío = reiniciar el servidor completo
+                # worldActionCooldownSeconds: tiempo mínimo entre dos acciones sobre el mismo mundo
+                # world.<nombre>.tpsMin: umbral específico para un mundo
+                # world.<nombre>.command: comando específico para un mundo con TPS bajo
+                # crashDetection: si true, analiza la salida del servidor buscando firmas de fallo
+                # signature: "accion|texto" (repetible). accion = restart | diagnostics | alert
+                #   si se define alguna, reemplaza a las firmas por defecto
+                # exceptionStormThreshold: excepciones dentro de la ventana para considerar tormenta (0 = desactivado)
+                # exceptionStormWindowSeconds: tamaño de la ventana deslizante (segundos)
+                # exceptionStormAction: accion ante una tormenta de excepciones
+                # signatureCooldownSeconds: tiempo mínimo entre dos disparos de la misma firma
+                # diagnosticsDir: carpeta donde se guardan los diagnósticos capturados
+                # schedulerMinTps: TPS mínimo para ejecutar trabajos de mantenimiento diferibles
+                # schedulerMaxCpuLoad: carga de CPU del host (0..1) por encima de la cual se difieren
+                # schedulerMaxDiskBusy: ocupación de disco (0..1) por encima de la cual se difieren
+                # schedulerPollSeconds: cada cuanto se reevalúa la cola de mantenimiento
+                # maintenanceMaxDelayMinutes: plazo máximo que un trabajo puede quedar diferido
+                # updatesCheckIntervalMinutes: comprobación periódica de updates de GitHub (0 = desactivado)
+                # maintenanceCommand: "minutos|comando" (repetible), comando de servidor periódico diferible
                 checkIntervalSeconds: 60
                 responseTimeoutSeconds: 5
                 tpsMin: 18.0
@@ -97,6 +200,29 @@ public class MonitorConfig {
                 restartOnLowTps: true
                 enablePeriodicRestart: false
                 periodicRestartDays: 7
+                worldHistorySize: 10
+                worldLowTpsSamples: 1
+                lowTpsWorldCommand: ""
+                worldActionCooldownSeconds: 300
+                # world.default.tpsMin: 18.0
+                # world.default.command: "world unload {world}"
+                crashDetection: true
+                signature: "restart|java.lang.OutOfMemoryError"
+                signature: "restart|Found one Java-level deadlock"
+                signature: "diagnostics|Watchdog"
+                signature: "alert|Server tick took"
+                exceptionStormThreshold: 50
+                exceptionStormWindowSeconds: 10
+                exceptionStormAction: diagnostics
+                signatureCooldownSeconds: 60
+                diagnosticsDir: diagnostics
+                schedulerMinTps: 19.0
+                schedulerMaxCpuLoad: 0.80
+                schedulerMaxDiskBusy: 0.60
+                schedulerPollSeconds: 5
+                maintenanceMaxDelayMinutes: 30
+                updatesCheckIntervalMinutes: 0
+                # maintenanceCommand: "60|save-all"
                 """;
         Files.writeString(path, content);
     }
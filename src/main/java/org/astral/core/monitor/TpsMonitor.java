@@ -1,10 +1,15 @@
 package org.astral.core.monitor;
 
 import org.astral.core.process.JarProcessManager;
+import org.astral.core.process.RestartCoordinator;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Matcher;
@@ -19,20 +24,35 @@ public class TpsMonitor {
 
     private final AtomicInteger unresponsiveCount = new AtomicInteger(0);
     private volatile long lastRestartAt = 0L;
+    private final RestartCoordinator restarts;
 
     private final Path lastPeriodicFile;
+    private final Path baseDir;
+    private volatile CrashSignatureDetector detector;
+
+    private static final DateTimeFormatter DIAG_TS =
+            DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+    private final Map<String, WorldTpsHistory> worldHistory = new ConcurrentHashMap<>();
+
+    private static final long PROBE_QUIET_MILLIS = 500L;
 
     private static final Pattern TPS_PATTERN =
             Pattern.compile("TPS \\(([^)]+)\\): Min: ([0-9.]+), Avg: ([0-9.]+), Max: ([0-9.]+)");
 
-    public TpsMonitor(JarProcessManager manager, MonitorConfig cfg, Path monitorFile) {
+    public TpsMonitor(JarProcessManager manager, RestartCoordinator restarts, MonitorConfig cfg, Path monitorFile) {
         this.manager = manager;
+        this.restarts = restarts;
         this.cfg = cfg;
         if (monitorFile != null && monitorFile.getParent() != null) {
             this.lastPeriodicFile = monitorFile.getParent().resolve("monitor.last_restart");
+            this.baseDir = monitorFile.getParent();
         } else {
             this.lastPeriodicFile = null;
+            this.baseDir = Path.of(System.getProperty("user.dir"));
         }
+        this.detector = buildDetector(cfg);
+        manager.setOutputListener(this::onServerLine);
     }
 
     public void start() {
@@ -62,6 +82,7 @@ public class TpsMonitor {
         if (newCfg == null) return;
         boolean needReschedule = newCfg.checkIntervalSeconds != this.cfg.checkIntervalSeconds;
         this.cfg = newCfg;
+        this.detector = buildDetector(newCfg);
         System.out.println("[MONITOR] Config actualizada. checkIntervalSeconds=" + cfg.checkIntervalSeconds);
         if (needReschedule) {
             shutdown();
@@ -69,6 +90,117 @@ public class TpsMonitor {
         }
     }
 
+    /* ================= FIRMAS DE FALLO ================= */
+
+    private CrashSignatureDetector buildDetector(MonitorConfig c) {
+        if (!c.crashDetection) return null;
+        CrashSignatureDetector d = CrashSignatureDetector.fromConfig(c, this::onSignature);
+        System.out.println("[MONITOR] Detección de fallos activa (" + d.signatureCount() + " firmas).");
+        return d;
+    }
+
+    private void onServerLine(String line) {
+        CrashSignatureDetector d = detector;
+        if (d != null) d.onLine(line);
+    }
+
+    private void onSignature(CrashSignatureDetector.Signature sig, String line) {
+        switch (sig.action()) {
+            case ALERT -> System.out.println("[MONITOR] ALERTA: firma '" + sig.literal() + "' detectada: " + line);
+            case DIAGNOSTICS -> {
+                System.out.println("[MONITOR] Firma '" + sig.literal() + "' detectada, capturando diagnósticos...");
+                runAction(() -> captureDiagnostics(sig, line));
+            }
+            case RESTART -> {
+                System.out.println("[MONITOR] Firma fatal '" + sig.literal() + "' detectada: " + line);
+                runAction(() -> restartOnSignature(sig));
+            }
+        }
+    }
+
+    private void runAction(Runnable action) {
+        synchronized (schedulerLock) {
+            if (scheduler != null && !scheduler.isShutdown()) {
+                scheduler.execute(action);
+                return;
+            }
+        }
+        Thread t = new Thread(action, "TpsMonitor-Action");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    private void restartOnSignature(CrashSignatureDetector.Signature sig) {
+        long sinceLast = System.currentTimeMillis() - lastRestartAt();
+        if (sinceLast < (cfg.minTimeBetweenRestartsSeconds * 1000L)) {
+            System.out.println("[MONITOR] Firma fatal dentro del cooldown de reinicio (" + (sinceLast / 1000) + "s), ignorada.");
+            return;
+        }
+        captureDiagnostics(sig, null);
+        System.out.println("[MONITOR] Reinicio inmediato por firma: " + sig.literal());
+        doForceRestart("firma de crash: " + sig.literal());
+        unresponsiveCount.set(0);
+        CrashSignatureDetector d = detector;
+        if (d != null) d.resetWindows();
+    }
+
+    private void captureDiagnostics(CrashSignatureDetector.Signature sig, String line) {
+        try {
+            Path dir = baseDir.resolve(cfg.diagnosticsDir);
+            Files.createDirectories(dir);
+            Path out = dir.resolve("crash-" + LocalDateTime.now().format(DIAG_TS) + ".log");
+
+            List<String> content = new ArrayList<>();
+            content.add("# firma: " + sig.literal() + " (" + sig.action() + ")");
+            if (line != null) content.add("# linea: " + line);
+            content.add("");
+            content.add("# ===== ultimas lineas del servidor =====");
+            CrashSignatureDetector d = detector;
+            if (d != null) content.addAll(d.tailSnapshot());
+
+            long pid = manager.pid();
+            if (pid > 0) {
+                content.add("");
+                content.add("# ===== jcmd " + pid + " Thread.print =====");
+                content.addAll(threadDump(pid));
+            }
+
+            Files.write(out, content, StandardCharsets.UTF_8);
+            System.out.println("[MONITOR] Diagnósticos guardados en: " + out);
+        } catch (IOException e) {
+            System.out.println("[MONITOR] No se pudieron guardar diagnósticos: " + e.getMessage());
+        }
+    }
+
+    private static List<String> threadDump(long pid) {
+        List<String> lines = new ArrayList<>();
+        Path dump = null;
+        try {
+            // a un archivo: leer el pipe bloquearía hasta que jcmd termine y el timeout no serviría
+            dump = Files.createTempFile("jcmd-" + pid + "-", ".txt");
+            Process p = new ProcessBuilder("jcmd", String.valueOf(pid), "Thread.print")
+                    .redirectErrorStream(true)
+                    .redirectOutput(dump.toFile())
+                    .start();
+            if (!p.waitFor(10, TimeUnit.SECONDS)) {
+                p.destroyForcibly();
+                lines.add("# jcmd no terminó en 10 s, salida parcial:");
+            }
+            lines.addAll(Files.readAllLines(dump, StandardCharsets.UTF_8));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            lines.add("# jcmd no disponible: " + e.getMessage());
+        } finally {
+            if (dump != null) {
+                try {
+                    Files.deleteIfExists(dump);
+                } catch (IOException ignored) {}
+            }
+        }
+        return lines;
+    }
+
     private void checkOnce() {
         try {
             if (!manager.isRunning()) {
@@ -77,7 +209,7 @@ public class TpsMonitor {
             }
 
             long now = System.currentTimeMillis();
-            if (now - lastRestartAt < (cfg.minTimeBetweenRestartsSeconds * 1000L)) {
+            if (now - lastRestartAt() < (cfg.minTimeBetweenRestartsSeconds * 1000L)) {
                 checkPeriodicRestart();
                 return;
             }
@@ -85,40 +217,39 @@ public class TpsMonitor {
             manager.sendCommand(cfg.tpsCommand);
 
             final long end = System.currentTimeMillis() + (cfg.responseTimeoutSeconds * 1000L);
-            boolean gotTps = false;
+            Map<String, Double> probe = new LinkedHashMap<>();
 
             while (System.currentTimeMillis() < end) {
                 long timeLeft = end - System.currentTimeMillis();
-                String line = manager.pollOutputLine(Math.max(100, timeLeft), TimeUnit.MILLISECONDS);
-                if (line == null) continue;
+                // tras la primera línea TPS solo se espera un hueco corto por el resto de mundos
+                long wait = probe.isEmpty()
+                        ? Math.max(100, timeLeft)
+                        : Math.min(Math.max(100, timeLeft), PROBE_QUIET_MILLIS);
+                String line = manager.pollOutputLine(wait, TimeUnit.MILLISECONDS);
+                if (line == null) {
+                    if (!probe.isEmpty()) break;
+                    continue;
+                }
 
                 Matcher m = TPS_PATTERN.matcher(line);
                 if (m.find()) {
-                    double avg = Double.parseDouble(m.group(3));
-                    System.out.println("[MONITOR] TPS detectado (" + m.group(1) + ") Avg=" + avg);
-                    gotTps = true;
-                    unresponsiveCount.set(0);
-
-                    if (cfg.restartOnLowTps && avg < cfg.tpsMin) {
-                        long sinceLast = System.currentTimeMillis() - lastRestartAt;
-                        if (sinceLast >= (cfg.minTimeBetweenRestartsSeconds * 1000L)) {
-                            System.out.println("[MONITOR] TPS bajo (" + avg + " < " + cfg.tpsMin + "), reiniciando servidor...");
-                            doRestart();
-                        } else {
-                            System.out.println("[MONITOR] TPS bajo pero dentro del cooldown de reinicio (" + (sinceLast / 1000) + "s).");
-                        }
-                    }
-                    break;
+                    probe.put(m.group(1), Double.parseDouble(m.group(3)));
                 }
             }
 
+            boolean gotTps = !probe.isEmpty();
+            if (gotTps) {
+                unresponsiveCount.set(0);
+                evaluateWorlds(probe);
+            }
+
             if (!gotTps) {
                 int count = unresponsiveCount.incrementAndGet();
                 System.out.println("[MONITOR] No se obtuvo respuesta TPS (contador=" + count + ")");
 
                 if (count >= cfg.unresponsiveThreshold) {
                     System.out.println("[MONITOR] Terminal no responde. Intentando reinicio forzoso...");
-                    doForceRestart();
+                    doForceRestart("terminal sin respuesta TPS");
                     unresponsiveCount.set(0);
                 }
             }
@@ -130,6 +261,92 @@ public class TpsMonitor {
         }
     }
 
+    /* ================= TPS POR MUNDO ================= */
+
+    private void evaluateWorlds(Map<String, Double> probe) {
+        long now = System.currentTimeMillis();
+        boolean restartWanted = false;
+        String restartReason = null;
+
+        for (Map.Entry<String, Double> e : probe.entrySet()) {
+            String world = e.getKey();
+            double avg = e.getValue();
+
+            WorldTpsHistory history = worldHistory.computeIfAbsent(world, _ -> new WorldTpsHistory());
+            history.add(avg, Math.max(1, cfg.worldHistorySize));
+
+            MonitorConfig.WorldThreshold wt = cfg.worlds.get(world);
+            double min = (wt != null && wt.tpsMin != null) ? wt.tpsMin : cfg.tpsMin;
+            System.out.println("[MONITOR] TPS detectado (" + world + ") Avg=" + avg + " (min=" + min + ")");
+
+            if (!cfg.restartOnLowTps) continue;
+            if (!history.lowForLast(Math.max(1, cfg.worldLowTpsSamples), min)) continue;
+
+            String command = (wt != null && wt.command != null && !wt.command.isBlank())
+                    ? wt.command
+                    : cfg.lowTpsWorldCommand;
+
+            if (command != null && !command.isBlank()) {
+                long sinceAction = now - history.lastActionAt;
+                if (sinceAction < cfg.worldActionCooldownSeconds * 1000L) {
+                    System.out.println("[MONITOR] TPS bajo en " + world + " pero dentro del cooldown de acción (" + (sinceAction / 1000) + "s).");
+                    continue;
+                }
+                history.lastActionAt = now;
+                String resolved = command.replace("{world}", world);
+                System.out.println("[MONITOR] TPS bajo en " + world + " (" + avg + " < " + min + "), ejecutando: " + resolved);
+                manager.sendCommand(resolved);
+            } else {
+                restartWanted = true;
+                restartReason = world + " (" + avg + " < " + min + ")";
+            }
+        }
+
+        if (!restartWanted) return;
+
+        long sinceLast = System.currentTimeMillis() - lastRestartAt();
+        if (sinceLast >= (cfg.minTimeBetweenRestartsSeconds * 1000L)) {
+            System.out.println("[MONITOR] TPS bajo en " + restartReason + ", reiniciando servidor...");
+            doRestart("TPS bajo en " + restartReason);
+            worldHistory.clear();
+        } else {
+            System.out.println("[MONITOR] TPS bajo pero dentro del cooldown de reinicio (" + (sinceLast / 1000) + "s).");
+        }
+    }
+
+    public Map<String, Double> latestWorldTps() {
+        Map<String, Double> out = new LinkedHashMap<>();
+        worldHistory.forEach((w, h) -> {
+            double last = h.last();
+            if (!Double.isNaN(last)) out.put(w, last);
+        });
+        return out;
+    }
+
+    private static final class WorldTpsHistory {
+        private final Deque<Double> samples = new ArrayDeque<>();
+        private volatile long lastActionAt = 0L;
+
+        synchronized void add(double avg, int capacity) {
+            samples.addLast(avg);
+            while (samples.size() > capacity) samples.removeFirst();
+        }
+
+        synchronized boolean lowForLast(int count, double min) {
+            if (samples.size() < count) return false;
+            Iterator<Double> it = samples.descendingIterator();
+            for (int i = 0; i < count; i++) {
+                if (it.next() >= min) return false;
+            }
+            return true;
+        }
+
+        synchronized double last() {
+            Double v = samples.peekLast();
+            return v != null ? v : Double.NaN;
+        }
+    }
+
     private void checkPeriodicRestart() {
         try {
             if (!cfg.enablePeriodicRestart) return;
@@ -141,13 +358,13 @@ public class TpsMonitor {
             long intervalMillis = TimeUnit.DAYS.toMillis(cfg.periodicRestartDays);
 
             if (now - last >= intervalMillis) {
-                if (now - lastRestartAt < (cfg.minTimeBetweenRestartsSeconds * 1000L)) {
+                if (now - lastRestartAt() < (cfg.minTimeBetweenRestartsSeconds * 1000L)) {
                     System.out.println("[MONITOR] Reinicio periódico pendiente pero dentro del cooldown de reinicio.");
                     return;
                 }
 
                 System.out.println("[MONITOR] Reinicio periódico programado. Procediendo a reiniciar...");
-                doRestart();
+                doRestart("reinicio periódico");
                 writeLastPeriodicTimestamp(now);
             }
         } catch (Exception e) {
@@ -178,34 +395,29 @@ public class TpsMonitor {
         }
     }
 
-    private void doRestart() {
-        try {
-            lastRestartAt = System.currentTimeMillis();
-            manager.sendCommand("stop");
-            manager.waitForStop();
-            if (manager.isRunning()) {
-                manager.stop();
-            }
-            manager.start();
-            System.out.println("[MONITOR] Restart completado.");
-        } catch (Exception e) {
-            System.out.println("[MONITOR] Error en doRestart: " + e.getMessage());
-        }
+    /* Reinicios de cualquier origen (mods, assets...) también cuentan para el cooldown. */
+    private long lastRestartAt() {
+        return Math.max(lastRestartAt, restarts.lastRestartAt());
+    }
+
+    private void doRestart(String reason) {
+        lastRestartAt = System.currentTimeMillis();
+        awaitRestart(restarts.request("monitor", reason, RestartCoordinator.Urgency.NORMAL), "doRestart");
+    }
+
+    private void doForceRestart(String reason) {
+        lastRestartAt = System.currentTimeMillis();
+        awaitRestart(restarts.request("monitor", reason, RestartCoordinator.Urgency.IMMEDIATE), "doForceRestart");
     }
 
-    private void doForceRestart() {
+    private static void awaitRestart(CompletableFuture<Boolean> done, String what) {
         try {
-            lastRestartAt = System.currentTimeMillis();
-            manager.sendCommand("stop");
-            manager.waitForStop();
-            if (manager.isRunning()) {
-                System.out.println("[MONITOR] Stop gracioso falló, forzando stop...");
-                manager.stop();
-            }
-            manager.start();
-            System.out.println("[MONITOR] Force restart completado.");
+            done.get(5, TimeUnit.MINUTES);
+            System.out.println("[MONITOR] Restart completado.");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         } catch (Exception e) {
-            System.out.println("[MONITOR] Error en doForceRestart: " + e.getMessage());
+            System.out.println("[MONITOR] Error en " + what + ": " + e.getMessage());
         }
     }
 }
\ No newline at end of file
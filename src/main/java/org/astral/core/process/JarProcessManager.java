@@ -8,6 +8,7 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.*;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 public class JarProcessManager {
 
@@ -19,6 +20,7 @@ public class JarProcessManager {
     private Thread outputThread;
 
     private final BlockingQueue<String> outputQueue = new LinkedBlockingQueue<>(2000);
+    private volatile Consumer<String> outputListener;
 
     public JarProcessManager(String jarPath,
                              Path assetsDir,
@@ -68,6 +70,14 @@ public class JarProcessManager {
                     String line;
                     while ((line = reader.readLine()) != null) {
                         System.out.println("[SERVER] " + line);
+                        Consumer<String> listener = outputListener;
+                        if (listener != null) {
+                            try {
+                                listener.accept(line);
+                            } catch (Exception e) {
+                                System.out.println("[PROCESS] Error en listener de salida: " + e.getMessage());
+                            }
+                        }
                         try {
                             boolean added = outputQueue.offer(line, 10, TimeUnit.MILLISECONDS);
                             if (!added) {
@@ -179,6 +189,15 @@ public class JarProcessManager {
         }
     }
 
+    public void setOutputListener(Consumer<String> listener) {
+        this.outputListener = listener;
+    }
+
+    public synchronized long pid() {
+        if (process == null || !process.isAlive()) return -1L;
+        return process.pid();
+    }
+
     public String pollOutputLine(long timeout, TimeUnit unit) {
         try {
             return outputQueue.poll(timeout, unit);
@@ -3,13 +3,19 @@ package org.astral.core.process;
 public class ManagerHolder {
 
     private final JarProcessManager manager;
+    private final RestartCoordinator restarts;
 
-    public ManagerHolder(JarProcessManager manager) {
+    public ManagerHolder(JarProcessManager manager, RestartCoordinator restarts) {
         this.manager = manager;
+        this.restarts = restarts;
     }
 
     public synchronized JarProcessManager get() {
         return manager;
     }
 
-}
\ No newline at end of file
+    public RestartCoordinator restarts() {
+        return restarts;
+    }
+
+}
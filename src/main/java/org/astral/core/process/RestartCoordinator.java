@@ -0,0 +1,237 @@
+package org.astral.core.process;
+
+import org.astral.core.updates.util.IoThrottle;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/*
+ * Único punto por el que se reinicia el servidor.
+ * - Las peticiones (mods, assets, monitor TPS, actualizaciones...) se acumulan durante una ventana
+ *   (server.restartCoalesceSeconds) contada desde la primera; IMMEDIATE dispara el lote sin esperar.
+ * - Al disparar, cada petición prepara su trabajo con el servidor aún en marcha (p. ej. staging)
+ *   y devuelve lo que hay que aplicar con el servidor parado, o null si ya no hace falta.
+ * - Un solo stop, todos los cambios, un solo start: como mucho un reinicio por lote.
+ * - Peticiones con la misma clave se fusionan; solo cuenta la última.
+ * - Si el lote lleva una IMMEDIATE, las NORMAL no se preparan antes de parar: con el servidor ya
+ *   parado aplican su acción directa (o se preparan entonces), así la parada urgente no espera
+ *   a ningún staging.
+ */
+public final class RestartCoordinator {
+
+    public enum Urgency { NORMAL, IMMEDIATE }
+
+    @FunctionalInterface
+    public interface StoppedAction {
+        void apply() throws Exception;
+    }
+
+    @FunctionalInterface
+    public interface Task {
+        /* Con el servidor corriendo. null = ya no hace falta reiniciar por esta petición. */
+        @Nullable StoppedAction prepare() throws Exception;
+    }
+
+    private record Request(String key, String reason, Urgency urgency, Task task,
+                           @Nullable StoppedAction direct, CompletableFuture<Boolean> done, long at) {}
+
+    private final JarProcessManager manager;
+    private volatile long windowMillis;
+
+    private final Map<String, Request> pending = new LinkedHashMap<>();
+    private ScheduledFuture<?> timer;
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "Restart-Coordinator");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private long requests, merged, restarts, skipped, lastDowntimeMillis, lastRestartAt;
+    private String lastReasons = "";
+
+    public RestartCoordinator(@NotNull JarProcessManager manager, int windowSeconds) {
+        this.manager = manager;
+        setWindowSeconds(windowSeconds);
+    }
+
+    public void setWindowSeconds(int seconds) {
+        this.windowMillis = TimeUnit.SECONDS.toMillis(Math.max(0, seconds));
+    }
+
+    /* Reinicio simple, sin cambios que aplicar con el servidor parado. */
+    public CompletableFuture<Boolean> request(@NotNull String key, @NotNull String reason, @NotNull Urgency urgency) {
+        return submit(key, reason, urgency, () -> () -> {});
+    }
+
+    /* true al completarse si el servidor se reinició por este lote; false si no hizo falta. */
+    public CompletableFuture<Boolean> submit(@NotNull String key, @NotNull String reason,
+                                             @NotNull Urgency urgency, @NotNull Task task) {
+        return submit(key, reason, urgency, task, null);
+    }
+
+    /* direct: lo que se aplica con el servidor parado si un lote urgente no deja preparar (null = preparar entonces). */
+    public CompletableFuture<Boolean> submit(@NotNull String key, @NotNull String reason,
+                                             @NotNull Urgency urgency, @NotNull Task task,
+                                             @Nullable StoppedAction direct) {
+        CompletableFuture<Boolean> done = new CompletableFuture<>();
+        synchronized (pending) {
+            requests++;
+            Request prev = pending.remove(key);
+            if (prev != null) {
+                merged++;
+                // la petición anterior queda cubierta por esta
+                done.whenComplete((r, e) -> {
+                    if (e != null) prev.done().completeExceptionally(e);
+                    else prev.done().complete(r);
+                });
+            } else if (!pending.isEmpty()) {
+                merged++;
+            }
+            pending.put(key, new Request(key, reason, urgency, task, direct, done, System.currentTimeMillis()));
+
+            System.out.println("[RESTART] Petición de " + key + ": " + reason
+                    + (pending.size() > 1 ? " (" + pending.size() + " en el lote)" : ""));
+
+            if (urgency == Urgency.IMMEDIATE) {
+                if (timer != null) timer.cancel(false);
+                timer = executor.schedule(this::fire, 0, TimeUnit.MILLISECONDS);
+            } else if (timer == null || timer.isDone()) {
+                timer = executor.schedule(this::fire, windowMillis, TimeUnit.MILLISECONDS);
+            }
+        }
+        return done;
+    }
+
+    private void fire() {
+        List<Request> batch;
+        synchronized (pending) {
+            batch = new ArrayList<>(pending.values());
+            pending.clear();
+            timer = null;
+        }
+        if (batch.isEmpty()) return;
+
+        List<StoppedAction> actions = new ArrayList<>();
+        List<String> reasons = new ArrayList<>();
+
+        // urgente: se para ya; las NORMAL se resuelven con el servidor parado
+        List<Request> afterStop = new ArrayList<>();
+        boolean urgent = batch.stream().anyMatch(r -> r.urgency() == Urgency.IMMEDIATE);
+        List<Request> now = batch;
+        if (urgent) {
+            now = new ArrayList<>();
+            for (Request r : batch) (r.urgency() == Urgency.IMMEDIATE ? now : afterStop).add(r);
+        }
+        boolean failed = prepareAll(now, actions, reasons);
+        if (actions.isEmpty() && !afterStop.isEmpty()) {
+            // la urgente ya no hace falta: el resto sigue el camino normal
+            failed |= prepareAll(afterStop, actions, reasons);
+            afterStop.clear();
+        }
+
+        if (actions.isEmpty()) {
+            synchronized (pending) {
+                skipped++;
+            }
+            if (!failed) System.out.println("[RESTART] Lote de " + batch.size() + " peticiones sin cambios que aplicar, no se reinicia.");
+            batch.forEach(r -> r.done().complete(false));
+            return;
+        }
+
+        for (Request r : afterStop) reasons.add(r.key() + ": " + r.reason());
+        System.out.println("[RESTART] Reiniciando servidor (" + reasons.size() + " motivos): " + String.join("; ", reasons));
+        long stoppedAt = System.currentTimeMillis();
+
+        // con el servidor parado no hay nada que proteger: sin límite de I/O
+        IoThrottle.Lane lane = IoThrottle.shared().fastLane();
+        try {
+            stopServer();
+            for (Request r : afterStop) {
+                try {
+                    StoppedAction a = r.direct() != null ? r.direct() : r.task().prepare();
+                    if (a != null) actions.add(a);
+                } catch (Exception e) {
+                    System.err.println("[RESTART] Error preparando " + r.key() + ": " + e.getMessage());
+                }
+            }
+            for (StoppedAction a : actions) {
+                try {
+                    a.apply();
+                } catch (Exception e) {
+                    System.err.println("[RESTART] Error aplicando cambios con el servidor parado: " + e.getMessage());
+                }
+            }
+        } finally {
+            lane.close();
+            manager.start();
+        }
+
+        long downtime = System.currentTimeMillis() - stoppedAt;
+        synchronized (pending) {
+            restarts++;
+            lastDowntimeMillis = downtime;
+            lastRestartAt = System.currentTimeMillis();
+            lastReasons = String.join("; ", reasons);
+        }
+        System.out.println("[RESTART] Servidor detenido " + downtime + " ms para " + batch.size() + " peticiones.");
+        batch.forEach(r -> r.done().complete(true));
+    }
+
+    /* Prepara con el servidor corriendo; true si alguna petición falló. */
+    private static boolean prepareAll(List<Request> requests, List<StoppedAction> actions, List<String> reasons) {
+        boolean failed = false;
+        for (Request r : requests) {
+            try {
+                StoppedAction a = r.task().prepare();
+                if (a != null) {
+                    actions.add(a);
+                    reasons.add(r.key() + ": " + r.reason());
+                }
+            } catch (Exception e) {
+                failed = true;
+                System.err.println("[RESTART] Error preparando " + r.key() + ": " + e.getMessage());
+            }
+        }
+        return failed;
+    }
+
+    private void stopServer() {
+        if (!manager.isRunning()) return;
+        manager.sendCommand("stop");
+        manager.waitForStop();
+        if (manager.isRunning()) {
+            System.out.println("[RESTART] Stop gracioso falló, forzando stop...");
+            manager.stop();
+        }
+    }
+
+    public long lastRestartAt() {
+        synchronized (pending) {
+            return lastRestartAt;
+        }
+    }
+
+    public @NotNull List<String> status() {
+        synchronized (pending) {
+            List<String> out = new ArrayList<>();
+            out.add("Ventana de agrupación: " + (windowMillis / 1000) + "s");
+            out.add("Peticiones: " + requests + ", fusionadas: " + merged
+                    + ", reinicios: " + restarts + ", lotes sin cambios: " + skipped);
+            if (restarts > 0) {
+                out.add("Último reinicio hace " + ((System.currentTimeMillis() - lastRestartAt) / 1000) + "s, "
+                        + lastDowntimeMillis + " ms parado (" + lastReasons + ")");
+            }
+            for (Request r : pending.values()) {
+                out.add("Pendiente: " + r.key() + " (" + r.reason() + ", hace "
+                        + ((System.currentTimeMillis() - r.at()) / 1000) + "s)");
+            }
+            return out;
+        }
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,285 @@
+package org.astral.core.replication;
+
+import org.astral.core.updates.util.HashUtils;
+import org.astral.core.watcher.mods.DirectorySynchronizer;
+import org.astral.core.watcher.mods.Durability;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.astral.core.replication.ReplicationProtocol.*;
+
+/*
+ * Nodo destino: trae de un origen los archivos que faltan o difieren y los coloca en el árbol local.
+ * - Por archivo se envían los hashes de los bloques de la copia local; solo viajan los bloques distintos.
+ * - Lo recibido se reconstruye en un temporal, se verifica con el SHA-256 del manifiesto y se coloca
+ *   con rename: los watchers locales lo ven y lo llevan al servidor por el camino normal.
+ * - Borrados: solo de archivos que llegaron de este origen y que nadie ha tocado después
+ *   (registro en stateDir/replication/<origen>-<árbol>.received).
+ */
+final class ReplicationPeer {
+
+    private static final int CONNECT_TIMEOUT_MILLIS = 5000;
+
+    private final String address;
+    private final InetSocketAddress target;
+    private final String token;
+    private final Map<String, Path> trees;
+    private final int block;
+
+    private final AtomicLong rounds = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong files = new AtomicLong();
+    private final AtomicLong deleted = new AtomicLong();
+    private final AtomicLong bytesReceived = new AtomicLong();
+    private final AtomicLong bytesReused = new AtomicLong();
+    private volatile long lastRoundMillis;
+    private volatile double lastRoundMBps;
+    private volatile long lastSuccess;
+    private volatile long lastChangeLagMillis = -1;
+    private volatile String lastError;
+
+    ReplicationPeer(@NotNull String address, String token, @NotNull Map<String, Path> trees, int block) {
+        this.address = address;
+        this.target = ReplicationService.parseAddress(address, null);
+        this.token = token == null ? "" : token;
+        this.trees = trees;
+        this.block = block;
+    }
+
+    String address() {
+        return address;
+    }
+
+    /* Una ronda completa (todos los árboles). Devuelve los archivos actualizados. */
+    synchronized int syncOnce() {
+        long start = System.nanoTime();
+        long received = bytesReceived.get();
+        int changed = 0;
+        long lag = -1;
+        try {
+            for (Map.Entry<String, Path> t : trees.entrySet()) {
+                RoundResult r = round(t.getKey(), t.getValue().toAbsolutePath().normalize());
+                changed += r.changed();
+                lag = Math.max(lag, r.maxLagMillis());
+            }
+            lastSuccess = System.currentTimeMillis();
+            lastError = null;
+            if (lag >= 0) lastChangeLagMillis = lag;
+        } catch (IOException e) {
+            failures.incrementAndGet();
+            lastError = e.getMessage();
+            System.err.println("[REPLICATION] Error replicando desde " + address + ": " + e.getMessage());
+        } finally {
+            rounds.incrementAndGet();
+            long nanos = System.nanoTime() - start;
+            lastRoundMillis = nanos / 1_000_000;
+            lastRoundMBps = (bytesReceived.get() - received) / (1024.0 * 1024.0) / Math.max(1e-9, nanos / 1e9);
+        }
+        return changed;
+    }
+
+    private record RoundResult(int changed, long maxLagMillis) {}
+
+    private RoundResult round(String tree, Path root) throws IOException {
+        try (Socket s = new Socket()) {
+            s.connect(target, CONNECT_TIMEOUT_MILLIS);
+            s.setSoTimeout(SOCKET_TIMEOUT_MILLIS);
+            s.setTcpNoDelay(true);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(s.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(s.getOutputStream()));
+
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeUTF(token);
+            out.writeUTF(tree);
+            out.flush();
+
+            if (in.readByte() != OK) throw new IOException(address + " rechazó la conexión: " + in.readUTF());
+            List<Entry> remote = readManifest(in);
+
+            Map<String, String> received = loadReceived(tree);
+            int changed = 0;
+            long maxLag = -1;
+            for (Entry e : remote) {
+                Path local = resolveInside(root, e.path());
+                if (upToDate(local, e)) {
+                    received.put(e.path(), e.sha256());
+                    continue;
+                }
+                if (fetch(in, out, local, e)) {
+                    received.put(e.path(), e.sha256());
+                    changed++;
+                    maxLag = Math.max(maxLag, System.currentTimeMillis() - e.mtime());
+                }
+            }
+            out.writeByte(DONE);
+            out.flush();
+
+            changed += deleteGone(tree, root, remote, received);
+            Durability.barrier("replicación " + address + " (" + tree + ")");
+            saveReceived(tree, received);
+
+            if (changed > 0) {
+                System.out.println("[REPLICATION] " + address + " (" + tree + "): " + changed + " archivos actualizados en " + root);
+            }
+            return new RoundResult(changed, maxLag);
+        }
+    }
+
+    private static boolean upToDate(Path local, Entry e) throws IOException {
+        if (!Files.isRegularFile(local)) return false;
+        long size = Files.size(local);
+        if (size != e.size()) return false;
+        String sha = sha256(local, size, Files.getLastModifiedTime(local).toMillis());
+        return e.sha256().equals(sha);
+    }
+
+    /* Pide el archivo, lo reconstruye en un temporal y lo coloca si el SHA-256 cuadra. */
+    private boolean fetch(DataInputStream in, DataOutputStream out, Path local, Entry e) throws IOException {
+        byte[][] mine = blockHashes(local, block);
+        out.writeByte(FILE);
+        out.writeUTF(e.path());
+        out.writeInt(block);
+        out.writeInt(mine.length);
+        for (byte[] h : mine) out.write(h);
+        out.flush();
+
+        Path tmp = DirectorySynchronizer.tempFor(local);
+        boolean placed = false;
+        try {
+            try (FileChannel old = Files.isRegularFile(local) ? FileChannel.open(local, StandardOpenOption.READ) : null;
+                 OutputStream w = new BufferedOutputStream(Files.newOutputStream(tmp,
+                         StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE))) {
+                byte[] buf = new byte[block];
+                for (int i = 0; ; i++) {
+                    byte tag = in.readByte();
+                    if (tag == END) break;
+                    if (tag == GONE) return false;
+                    if (tag == SAME) {
+                        if (old == null || i >= mine.length) throw new IOException("bloque reutilizado inexistente en " + e.path());
+                        int n = readBlock(old, (long) i * block, buf);
+                        w.write(buf, 0, n);
+                        bytesReused.addAndGet(n);
+                    } else if (tag == DATA) {
+                        int n = in.readInt();
+                        if (n < 0 || n > block) throw new IOException("bloque inválido en " + e.path());
+                        in.readFully(buf, 0, n);
+                        w.write(buf, 0, n);
+                        bytesReceived.addAndGet(n);
+                    } else {
+                        throw new IOException("respuesta desconocida " + tag + " para " + e.path());
+                    }
+                }
+            }
+
+            String sha = HashUtils.sha256OfFile(tmp);
+            if (!sha.equals(e.sha256())) {
+                // el origen cambió durante la ronda: se reintenta en la siguiente
+                System.err.println("[REPLICATION] " + e.path() + " no coincide con el manifiesto de " + address + ", se reintenta.");
+                return false;
+            }
+            Files.setLastModifiedTime(tmp, FileTime.fromMillis(e.mtime()));
+            DirectorySynchronizer.commitTemp(tmp, local);
+            placed = true;
+            remember(local, e.size(), e.mtime(), sha);
+            files.incrementAndGet();
+            return true;
+        } catch (IOException ex) {
+            throw ex;
+        } catch (Exception ex) {
+            throw new IOException(ex);
+        } finally {
+            if (!placed) Files.deleteIfExists(tmp);
+        }
+    }
+
+    /* Borra lo que vino de este origen y ya no está allí, si la copia local sigue intacta. */
+    private int deleteGone(String tree, Path root, List<Entry> remote, Map<String, String> received) {
+        Set<String> present = new HashSet<>();
+        for (Entry e : remote) present.add(e.path());
+
+        List<String> gone = new ArrayList<>();
+        for (String key : received.keySet()) {
+            if (!present.contains(key)) gone.add(key);
+        }
+
+        int count = 0;
+        for (String key : gone) {
+            String sha256 = received.remove(key);
+            try {
+                Path local = resolveInside(root, key);
+                if (!Files.isRegularFile(local)) continue;
+                String sha = sha256(local, Files.size(local), Files.getLastModifiedTime(local).toMillis());
+                if (!sha256.equals(sha)) {
+                    System.out.println("[REPLICATION] " + key + " se borró en " + address + " pero cambió en local; se conserva.");
+                    continue;
+                }
+                Files.deleteIfExists(local);
+                deleted.incrementAndGet();
+                count++;
+            } catch (IOException e) {
+                System.err.println("[REPLICATION] No se pudo borrar " + key + " (" + tree + "): " + e.getMessage());
+            }
+        }
+        return count;
+    }
+
+    private Path receivedFile(String tree) {
+        String id = address.replaceAll("[^A-Za-z0-9._-]", "_");
+        return DirectorySynchronizer.stateDir().resolve("replication").resolve(id + "-" + tree + ".received");
+    }
+
+    private Map<String, String> loadReceived(String tree) {
+        Map<String, String> out = new TreeMap<>();
+        Path f = receivedFile(tree);
+        if (!Files.exists(f)) return out;
+        try {
+            for (String line : Files.readAllLines(f, StandardCharsets.UTF_8)) {
+                int tab = line.indexOf('\t');
+                if (tab > 0) out.put(line.substring(tab + 1), line.substring(0, tab));
+            }
+        } catch (IOException e) {
+            System.err.println("[REPLICATION] No se pudo leer " + f + ": " + e.getMessage());
+        }
+        return out;
+    }
+
+    private void saveReceived(String tree, Map<String, String> received) {
+        Path f = receivedFile(tree);
+        try {
+            Files.createDirectories(f.getParent());
+            Path tmp = f.resolveSibling(f.getFileName() + ".tmp");
+            try (BufferedWriter w = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+                for (Map.Entry<String, String> e : received.entrySet()) {
+                    w.write(e.getValue() + "\t" + e.getKey());
+                    w.newLine();
+                }
+            }
+            Files.move(tmp, f, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            System.err.println("[REPLICATION] No se pudo guardar " + f + ": " + e.getMessage());
+        }
+    }
+
+    @NotNull String stats() {
+        long since = lastSuccess == 0 ? -1 : (System.currentTimeMillis() - lastSuccess) / 1000;
+        return String.format(Locale.ROOT,
+                "<- %s: %d rondas (%d fallidas), %d archivos, %d borrados, %.1f MB recibidos, %.1f MB reutilizados, "
+                        + "última ronda %d ms a %.1f MB/s, %s, retraso del último cambio %s%s",
+                address, rounds.get(), failures.get(), files.get(), deleted.get(),
+                bytesReceived.get() / (1024.0 * 1024.0), bytesReused.get() / (1024.0 * 1024.0),
+                lastRoundMillis, lastRoundMBps,
+                since < 0 ? "nunca sincronizado" : "sincronizado hace " + since + " s",
+                lastChangeLagMillis < 0 ? "-" : lastChangeLagMillis + " ms",
+                lastError != null ? " (último error: " + lastError + ")" : "");
+    }
+}
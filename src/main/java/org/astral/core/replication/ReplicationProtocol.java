@@ -0,0 +1,167 @@
+package org.astral.core.replication;
+
+import org.astral.core.updates.util.HashUtils;
+import org.astral.core.updates.util.IoThrottle;
+import org.astral.core.watcher.mods.PathFilter;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/*
+ * Protocolo de replicación entre nodos (TCP, binario con Data*Stream). Una conexión por árbol y ronda:
+ *   cliente  -> MAGIC, VERSION, token, árbol ("mods" | "assets")
+ *   servidor -> OK + manifiesto (n × ruta, tamaño, mtime, sha256) | ERROR + mensaje
+ *   cliente  -> por cada archivo que le falta o difiere: FILE, ruta, tamaño de bloque,
+ *               n × SHA-256 de los bloques de su copia actual
+ *   servidor -> por bloque: SAME (el cliente ya lo tiene en esa posición) | DATA + longitud + bytes;
+ *               END al terminar, GONE si el archivo ya no existe
+ *   cliente  -> DONE
+ * El cliente reconstruye en un temporal y solo lo coloca si el SHA-256 coincide con el del manifiesto.
+ */
+final class ReplicationProtocol {
+
+    static final int MAGIC = 0x53435250; // "SCRP"
+    static final int VERSION = 1;
+
+    static final byte OK = 0;
+    static final byte ERROR = 1;
+    static final byte FILE = 2;
+    static final byte DONE = 3;
+    static final byte SAME = 4;
+    static final byte DATA = 5;
+    static final byte END = 6;
+    static final byte GONE = 7;
+
+    static final int HASH_LEN = 32;
+    static final int MIN_BLOCK = 4 * 1024;
+    static final int MAX_BLOCK = 4 * 1024 * 1024;
+    static final int SOCKET_TIMEOUT_MILLIS = 60_000;
+
+    record Entry(String path, long size, long mtime, String sha256) {}
+
+    private record Hashed(long size, long mtime, String sha256) {}
+
+    /* SHA-256 por archivo, válido mientras no cambien tamaño y mtime. */
+    private static final Map<Path, Hashed> HASHES = new ConcurrentHashMap<>();
+
+    private ReplicationProtocol() {}
+
+    /* Archivos del árbol (sin temporales ni marcadores), con su SHA-256. */
+    static @NotNull List<Entry> manifest(@NotNull Path root) throws IOException {
+        List<Entry> out = new ArrayList<>();
+        if (!Files.isDirectory(root)) return out;
+        try (Stream<Path> s = Files.walk(root)) {
+            for (Path p : (Iterable<Path>) s::iterator) {
+                Path rel = root.relativize(p);
+                if (rel.toString().isEmpty() || PathFilter.skipInSync(rel)) continue;
+                BasicFileAttributes a;
+                try {
+                    a = Files.readAttributes(p, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                } catch (NoSuchFileException e) {
+                    continue;
+                }
+                if (!a.isRegularFile()) continue;
+                long mtime = a.lastModifiedTime().toMillis();
+                String sha = sha256(p, a.size(), mtime);
+                if (sha != null) out.add(new Entry(key(rel), a.size(), mtime, sha));
+            }
+        }
+        return out;
+    }
+
+    /* null si el archivo desapareció mientras se leía. */
+    static String sha256(@NotNull Path file, long size, long mtime) throws IOException {
+        Path abs = file.toAbsolutePath().normalize();
+        Hashed h = HASHES.get(abs);
+        if (h != null && h.size() == size && h.mtime() == mtime) return h.sha256();
+        try {
+            String sha = HashUtils.sha256OfFile(abs);
+            HASHES.put(abs, new Hashed(size, mtime, sha));
+            return sha;
+        } catch (NoSuchFileException e) {
+            HASHES.remove(abs);
+            return null;
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException(e);
+        }
+    }
+
+    static void remember(@NotNull Path file, long size, long mtime, @NotNull String sha256) {
+        HASHES.put(file.toAbsolutePath().normalize(), new Hashed(size, mtime, sha256));
+    }
+
+    static void writeManifest(DataOutputStream out, List<Entry> entries) throws IOException {
+        out.writeInt(entries.size());
+        for (Entry e : entries) {
+            out.writeUTF(e.path());
+            out.writeLong(e.size());
+            out.writeLong(e.mtime());
+            out.writeUTF(e.sha256());
+        }
+    }
+
+    static @NotNull List<Entry> readManifest(DataInputStream in) throws IOException {
+        int n = in.readInt();
+        if (n < 0) throw new IOException("manifiesto inválido (" + n + " entradas)");
+        List<Entry> out = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            out.add(new Entry(in.readUTF(), in.readLong(), in.readLong(), in.readUTF()));
+        }
+        return out;
+    }
+
+    /* SHA-256 de cada bloque de block bytes (el último puede ser más corto). */
+    static byte @NotNull [][] blockHashes(@NotNull Path file, int block) throws IOException {
+        if (!Files.isRegularFile(file)) return new byte[0][];
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = ch.size();
+            int count = (int) ((size + block - 1) / block);
+            byte[][] out = new byte[count][];
+            byte[] buf = new byte[block];
+            for (int i = 0; i < count; i++) {
+                int n = readBlock(ch, (long) i * block, buf);
+                out[i] = HashUtils.sha256(buf, 0, n);
+            }
+            return out;
+        }
+    }
+
+    /* Lee hasta buf.length bytes desde pos; devuelve lo leído (menos solo al final del archivo). */
+    static int readBlock(FileChannel ch, long pos, byte[] buf) throws IOException {
+        ByteBuffer bb = ByteBuffer.wrap(buf);
+        while (bb.hasRemaining()) {
+            int r = ch.read(bb, pos + bb.position());
+            if (r < 0) break;
+        }
+        IoThrottle.shared().acquire(bb.position());
+        return bb.position();
+    }
+
+    /* La ruta del otro nodo no puede salir del árbol. */
+    static @NotNull Path resolveInside(@NotNull Path root, @NotNull String key) throws IOException {
+        Path p = root.resolve(key).normalize();
+        if (key.isEmpty() || Path.of(key).isAbsolute() || !p.startsWith(root.normalize()) || p.equals(root.normalize())) {
+            throw new IOException("ruta fuera del árbol: " + key);
+        }
+        return p;
+    }
+
+    static @NotNull String key(@NotNull Path rel) {
+        return rel.toString().replace('\\', '/');
+    }
+
+    static int clampBlock(int kb) {
+        return Math.clamp(kb * 1024L, MIN_BLOCK, MAX_BLOCK);
+    }
+}
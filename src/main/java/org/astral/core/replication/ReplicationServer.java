@@ -0,0 +1,218 @@
+package org.astral.core.replication;
+
+import org.astral.core.updates.util.HashUtils;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.astral.core.replication.ReplicationProtocol.*;
+
+/*
+ * Nodo origen: sirve manifiestos y bloques de los árboles locales a los nodos que se conectan.
+ * Un hilo acepta conexiones y cada conexión se atiende en un hilo virtual.
+ */
+final class ReplicationServer implements AutoCloseable {
+
+    private static final class Counters {
+        final AtomicLong rounds = new AtomicLong();
+        final AtomicLong files = new AtomicLong();
+        final AtomicLong bytesSent = new AtomicLong();
+        final AtomicLong bytesReused = new AtomicLong();
+        final AtomicLong sendNanos = new AtomicLong();
+        volatile long lastSeen;
+    }
+
+    private final InetSocketAddress bind;
+    private final byte[] token;
+    private final Map<String, Path> trees;
+    private final Map<String, Counters> peers = new ConcurrentHashMap<>();
+    private volatile ServerSocket socket;
+
+    ReplicationServer(@NotNull InetSocketAddress bind, String token, @NotNull Map<String, Path> trees) {
+        this.bind = bind;
+        this.token = (token == null ? "" : token).getBytes(StandardCharsets.UTF_8);
+        this.trees = trees;
+    }
+
+    void start() throws IOException {
+        ServerSocket ss = new ServerSocket();
+        ss.setReuseAddress(true);
+        ss.bind(bind);
+        socket = ss;
+        Thread t = new Thread(this::acceptLoop, "Replication-Accept");
+        t.setDaemon(true);
+        t.start();
+        System.out.println("[REPLICATION] Sirviendo " + trees.keySet() + " en " + ss.getLocalSocketAddress());
+    }
+
+    int port() {
+        ServerSocket ss = socket;
+        return ss == null ? -1 : ss.getLocalPort();
+    }
+
+    private void acceptLoop() {
+        ServerSocket ss = socket;
+        while (ss != null && !ss.isClosed()) {
+            try {
+                Socket s = ss.accept();
+                Thread.ofVirtual().name("Replication-Serve").start(() -> serve(s));
+            } catch (SocketException e) {
+                if (!ss.isClosed()) System.err.println("[REPLICATION] Error aceptando conexión: " + e.getMessage());
+            } catch (IOException e) {
+                System.err.println("[REPLICATION] Error aceptando conexión: " + e.getMessage());
+            }
+        }
+    }
+
+    private void serve(Socket s) {
+        String peer = s.getInetAddress().getHostAddress();
+        try (s;
+             DataInputStream in = new DataInputStream(new BufferedInputStream(s.getInputStream()));
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(s.getOutputStream()))) {
+            s.setSoTimeout(SOCKET_TIMEOUT_MILLIS);
+            s.setTcpNoDelay(true);
+
+            if (in.readInt() != MAGIC) return;
+            int version = in.readInt();
+            String tok = in.readUTF();
+            String tree = in.readUTF();
+
+            String error = null;
+            if (version != VERSION) error = "versión de protocolo " + version + " no soportada (esperada " + VERSION + ")";
+            else if (!MessageDigest.isEqual(token, tok.getBytes(StandardCharsets.UTF_8))) error = "token inválido";
+            else if (!trees.containsKey(tree)) error = "árbol desconocido: " + tree;
+            if (error != null) {
+                out.writeByte(ERROR);
+                out.writeUTF(error);
+                out.flush();
+                System.err.println("[REPLICATION] Conexión rechazada de " + peer + ": " + error);
+                return;
+            }
+
+            Path root = trees.get(tree).toAbsolutePath().normalize();
+            Counters c = peers.computeIfAbsent(peer, _ -> new Counters());
+            c.rounds.incrementAndGet();
+            c.lastSeen = System.currentTimeMillis();
+
+            // solo se sirve lo anunciado en esta conexión: archivos regulares, sin seguir enlaces
+            List<Entry> entries = manifest(root);
+            Set<String> listed = new HashSet<>();
+            for (Entry e : entries) listed.add(e.path());
+
+            out.writeByte(OK);
+            writeManifest(out, entries);
+            out.flush();
+
+            while (true) {
+                byte cmd = in.readByte();
+                if (cmd == DONE) break;
+                if (cmd != FILE) throw new IOException("comando desconocido " + cmd);
+                String key = in.readUTF();
+                int block = in.readInt();
+                int count = in.readInt();
+                if (block < MIN_BLOCK || block > MAX_BLOCK || count < 0) throw new IOException("petición inválida para " + key);
+                if (!listed.contains(key)) throw new IOException("archivo no anunciado en el manifiesto: " + key);
+                // count lo manda el otro nodo: solo se guardan los hashes que pueden coincidir con algún bloque
+                int useful = (int) Math.min(count, blockCount(resolveInside(root, key), block));
+                byte[][] theirs = new byte[useful][];
+                for (int i = 0; i < useful; i++) {
+                    theirs[i] = in.readNBytes(HASH_LEN);
+                }
+                in.skipNBytes((long) (count - useful) * HASH_LEN);
+                sendFile(out, root, key, block, theirs, c);
+                out.flush();
+            }
+        } catch (EOFException ignored) {
+            // el otro nodo cerró la conexión
+        } catch (IOException e) {
+            System.err.println("[REPLICATION] Error sirviendo a " + peer + ": " + e.getMessage());
+        }
+    }
+
+    private static long blockCount(Path file, int block) {
+        try {
+            long size = Files.readAttributes(file, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS).size();
+            return (size + block - 1) / block;
+        } catch (IOException e) {
+            return 0; // no existe: sendFile responde GONE
+        }
+    }
+
+    /* Bloque a bloque: SAME si el cliente ya tiene ese bloque en esa posición, DATA si no. */
+    private static void sendFile(DataOutputStream out, Path root, String key, int block,
+                                 byte[][] theirs, Counters c) throws IOException {
+        Path file = resolveInside(root, key);
+        if (!Files.isRegularFile(file, LinkOption.NOFOLLOW_LINKS)) {
+            out.writeByte(GONE);
+            return;
+        }
+        long start = System.nanoTime();
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ, LinkOption.NOFOLLOW_LINKS)) {
+            byte[] buf = new byte[block];
+            long pos = 0;
+            for (int i = 0; ; i++) {
+                int n = readBlock(ch, pos, buf);
+                if (n == 0) break;
+                if (i < theirs.length && Arrays.equals(theirs[i], HashUtils.sha256(buf, 0, n))) {
+                    out.writeByte(SAME);
+                    c.bytesReused.addAndGet(n);
+                } else {
+                    out.writeByte(DATA);
+                    out.writeInt(n);
+                    out.write(buf, 0, n);
+                    c.bytesSent.addAndGet(n);
+                }
+                pos += n;
+                if (n < block) break;
+            }
+        } catch (NoSuchFileException e) {
+            out.writeByte(GONE);
+            return;
+        }
+        out.writeByte(END);
+        c.files.incrementAndGet();
+        c.sendNanos.addAndGet(System.nanoTime() - start);
+    }
+
+    @NotNull List<String> stats() {
+        List<String> out = new ArrayList<>();
+        ServerSocket ss = socket;
+        out.add("Origen en " + (ss != null ? ss.getLocalSocketAddress() : bind) + " (" + trees.keySet() + "): " + peers.size() + " nodos conectados alguna vez");
+        peers.forEach((peer, c) -> {
+            double secs = c.sendNanos.get() / 1e9;
+            out.add(String.format(Locale.ROOT,
+                    "  -> %s: %d rondas, %d archivos, %.1f MB enviados, %.1f MB reutilizados, %.1f MB/s, última conexión hace %d s",
+                    peer, c.rounds.get(), c.files.get(), c.bytesSent.get() / (1024.0 * 1024.0),
+                    c.bytesReused.get() / (1024.0 * 1024.0),
+                    secs > 0 ? c.bytesSent.get() / (1024.0 * 1024.0) / secs : 0.0,
+                    (System.currentTimeMillis() - c.lastSeen) / 1000));
+        });
+        return out;
+    }
+
+    @Override
+    public void close() {
+        ServerSocket ss = socket;
+        socket = null;
+        if (ss == null) return;
+        try {
+            ss.close();
+        } catch (IOException ignored) {}
+    }
+}
@@ -0,0 +1,142 @@
+package org.astral.core.replication;
+
+import org.astral.core.config.Config;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Replicación de mods/ y assets/ entre nodos de Sync Core (config.yml -> replication).
+ * - listen: este nodo sirve sus árboles como origen ("7420" = solo 127.0.0.1, "0.0.0.0:7420" para la red;
+ *   fuera de loopback exige token).
+ * - peers: orígenes de los que este nodo trae cambios cada intervalSeconds.
+ * Un nodo puede ser origen y destino a la vez; sin listen ni peers no se arranca nada.
+ */
+public final class ReplicationService {
+
+    public static final int DEFAULT_PORT = 7420;
+
+    private final ReplicationServer server;
+    private final List<ReplicationPeer> peers;
+    private final ScheduledExecutorService scheduler;
+
+    private ReplicationService(ReplicationServer server, List<ReplicationPeer> peers, ScheduledExecutorService scheduler) {
+        this.server = server;
+        this.peers = peers;
+        this.scheduler = scheduler;
+    }
+
+    /* null si la replicación no está configurada. */
+    public static ReplicationService start(Config.Replication cfg, @NotNull Path localMods, @NotNull Path localAssets) {
+        if (cfg == null) return null;
+        boolean listen = cfg.listen != null && !cfg.listen.isBlank();
+        List<String> addresses = new ArrayList<>();
+        if (cfg.peers != null) {
+            for (String p : cfg.peers) if (p != null && !p.isBlank()) addresses.add(p.trim());
+        }
+        if (!listen && addresses.isEmpty()) return null;
+
+        Map<String, Path> trees = new LinkedHashMap<>();
+        List<String> names = cfg.trees == null || cfg.trees.isEmpty() ? List.of("mods", "assets") : cfg.trees;
+        for (String n : names) {
+            switch (n.trim().toLowerCase(Locale.ROOT)) {
+                case "mods" -> trees.put("mods", localMods);
+                case "assets" -> trees.put("assets", localAssets);
+                default -> System.err.println("[REPLICATION] Árbol desconocido en replication.trees: " + n);
+            }
+        }
+        if (trees.isEmpty()) return null;
+
+        ReplicationServer server = null;
+        if (listen) {
+            try {
+                InetSocketAddress bind = parseAddress(cfg.listen, "127.0.0.1");
+                boolean loopback = bind.getAddress() != null && bind.getAddress().isLoopbackAddress();
+                if (!loopback && (cfg.token == null || cfg.token.isBlank())) {
+                    throw new IllegalArgumentException("servir fuera de loopback requiere replication.token");
+                }
+                server = new ReplicationServer(bind, cfg.token, trees);
+                server.start();
+            } catch (IOException | IllegalArgumentException e) {
+                System.err.println("[REPLICATION] No se pudo escuchar en " + cfg.listen + ": " + e.getMessage());
+                server = null;
+            }
+        }
+
+        List<ReplicationPeer> peers = new ArrayList<>();
+        int block = ReplicationProtocol.clampBlock(cfg.blockKB);
+        for (String a : addresses) {
+            try {
+                peers.add(new ReplicationPeer(a, cfg.token, trees, block));
+            } catch (IllegalArgumentException e) {
+                System.err.println("[REPLICATION] Dirección inválida '" + a + "': " + e.getMessage());
+            }
+        }
+
+        ScheduledExecutorService scheduler = null;
+        if (!peers.isEmpty()) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "Replication-Scheduler");
+                t.setDaemon(true);
+                return t;
+            });
+            long interval = Math.max(1, cfg.intervalSeconds);
+            for (ReplicationPeer p : peers) {
+                scheduler.scheduleWithFixedDelay(p::syncOnce, 0, interval, TimeUnit.SECONDS);
+            }
+            System.out.println("[REPLICATION] Replicando " + trees.keySet() + " desde " + addresses + " cada " + interval + "s");
+        }
+
+        return new ReplicationService(server, peers, scheduler);
+    }
+
+    /* "host:puerto", "puerto" o "host" (puerto por defecto); [::1]:puerto para IPv6. */
+    static @NotNull InetSocketAddress parseAddress(@NotNull String raw, String defaultHost) {
+        String v = raw.trim();
+        String host = defaultHost;
+        int port = DEFAULT_PORT;
+        int colon = v.lastIndexOf(':');
+        if (v.startsWith("[")) {
+            int close = v.indexOf(']');
+            if (close < 0) throw new IllegalArgumentException("falta ']'");
+            host = v.substring(1, close);
+            if (close + 1 < v.length() && v.charAt(close + 1) == ':') port = Integer.parseInt(v.substring(close + 2));
+        } else if (colon >= 0) {
+            host = v.substring(0, colon);
+            port = Integer.parseInt(v.substring(colon + 1));
+        } else if (v.chars().allMatch(Character::isDigit)) {
+            port = Integer.parseInt(v);
+        } else {
+            host = v;
+        }
+        if (host == null || host.isEmpty()) throw new IllegalArgumentException("falta el host");
+        return new InetSocketAddress(host, port);
+    }
+
+    /* Ronda inmediata con todos los orígenes (consola: replication sync). */
+    public void syncNow() {
+        if (peers.isEmpty()) {
+            System.out.println("[REPLICATION] No hay peers configurados.");
+            return;
+        }
+        for (ReplicationPeer p : peers) scheduler.execute(p::syncOnce);
+    }
+
+    public @NotNull List<String> stats() {
+        List<String> out = new ArrayList<>();
+        if (server != null) out.addAll(server.stats());
+        for (ReplicationPeer p : peers) out.add(p.stats());
+        return out;
+    }
+
+    public void shutdown() {
+        if (scheduler != null) scheduler.shutdownNow();
+        if (server != null) server.close();
+    }
+}
@@ -0,0 +1,69 @@
+package org.astral.core.scheduler;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/* Carga del host: CPU vía MXBean y ocupación de disco vía /proc/diskstats (solo Linux). */
+final class LoadProbe {
+
+    private static final Path DISKSTATS = Path.of("/proc/diskstats");
+
+    private final Map<String, Long> lastIoTicks = new HashMap<>();
+    private long lastSampleAt = 0L;
+    private double lastDiskBusy = -1.0;
+
+    double cpuLoad() {
+        OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+        if (os instanceof com.sun.management.OperatingSystemMXBean sun) {
+            return sun.getCpuLoad();
+        }
+        double avg = os.getSystemLoadAverage();
+        if (avg < 0) return -1.0;
+        return avg / Math.max(1, os.getAvailableProcessors());
+    }
+
+    /* Fracción del tiempo (0..1) en que el disco más ocupado estuvo atendiendo I/O desde la última muestra. */
+    synchronized double diskBusy() {
+        if (!Files.isReadable(DISKSTATS)) return -1.0;
+
+        List<String> lines;
+        try {
+            lines = Files.readAllLines(DISKSTATS);
+        } catch (IOException e) {
+            return -1.0;
+        }
+
+        long now = System.currentTimeMillis();
+        long elapsed = now - lastSampleAt;
+        double busiest = 0.0;
+        boolean first = lastSampleAt == 0L;
+
+        for (String line : lines) {
+            String[] f = line.trim().split("\\s+");
+            if (f.length < 13) continue;
+            String dev = f[2];
+            if (dev.startsWith("loop") || dev.startsWith("ram")) continue;
+
+            long ticks;
+            try {
+                ticks = Long.parseLong(f[12]);
+            } catch (NumberFormatException e) {
+                continue;
+            }
+
+            Long prev = lastIoTicks.put(dev, ticks);
+            if (prev == null || first || elapsed <= 0) continue;
+            busiest = Math.max(busiest, Math.min(1.0, (ticks - prev) / (double) elapsed));
+        }
+
+        lastSampleAt = now;
+        if (!first) lastDiskBusy = busiest;
+        return lastDiskBusy;
+    }
+}
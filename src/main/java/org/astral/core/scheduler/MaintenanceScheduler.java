@@ -0,0 +1,311 @@
+package org.astral.core.scheduler;
+
+import org.astral.core.monitor.MonitorConfig;
+import org.astral.core.process.JarProcessManager;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/*
+ * Cola central de trabajos diferibles (comprobación de updates, verificación de hashes,
+ * comandos de mantenimiento del servidor...). Un trabajo solo se ejecuta cuando el TPS
+ * medido y la carga de CPU/disco del host lo permiten, o cuando vence su plazo máximo.
+ * Se ejecuta un trabajo a la vez.
+ */
+public class MaintenanceScheduler {
+
+    private static final String MAINTENANCE_PREFIX = "maintenance:";
+    private static final String UPDATES_JOB = "updates-check";
+
+    private final JarProcessManager manager;
+    private final Supplier<Map<String, Double>> tpsSource;
+    private final LoadProbe probe = new LoadProbe();
+
+    private final Object lock = new Object();
+    private final Map<String, Job> jobs = new LinkedHashMap<>();
+    private final AtomicBoolean busy = new AtomicBoolean(false);
+
+    private volatile MonitorConfig cfg;
+    private volatile Runnable updatesJob;
+    private volatile String lastDecision = "-";
+
+    private ScheduledExecutorService ticker;
+    private final ExecutorService worker = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "Maintenance-Worker");
+        t.setDaemon(true);
+        t.setPriority(Thread.MIN_PRIORITY);
+        return t;
+    });
+
+    private static final class Job {
+        final String name;
+        final Runnable task;
+        final long periodMillis;
+        final long maxDelayMillis;
+        long notBefore;
+        long deadline;
+        int deferrals;
+
+        Job(String name, Runnable task, long notBefore, long maxDelayMillis, long periodMillis) {
+            this.name = name;
+            this.task = task;
+            this.notBefore = notBefore;
+            this.maxDelayMillis = maxDelayMillis;
+            this.deadline = notBefore + maxDelayMillis;
+            this.periodMillis = periodMillis;
+        }
+    }
+
+    public MaintenanceScheduler(JarProcessManager manager,
+                                MonitorConfig cfg,
+                                Supplier<Map<String, Double>> tpsSource) {
+        this.manager = manager;
+        this.cfg = cfg;
+        this.tpsSource = tpsSource;
+    }
+
+    public synchronized void start() {
+        if (ticker != null && !ticker.isShutdown()) return;
+        ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "Maintenance-Scheduler");
+            t.setDaemon(true);
+            return t;
+        });
+        applyConfig(cfg);
+        long poll = Math.max(1, cfg.schedulerPollSeconds);
+        ticker.scheduleWithFixedDelay(this::tick, poll, poll, TimeUnit.SECONDS);
+        System.out.println("[SCHEDULER] Planificador de mantenimiento iniciado (poll: " + poll + "s)");
+    }
+
+    public synchronized void shutdown() {
+        if (ticker != null) {
+            ticker.shutdownNow();
+            ticker = null;
+        }
+        worker.shutdownNow();
+        System.out.println("[SCHEDULER] Planificador detenido.");
+    }
+
+    public void updateConfig(MonitorConfig newCfg) {
+        if (newCfg == null) return;
+        boolean reschedule = newCfg.schedulerPollSeconds != cfg.schedulerPollSeconds;
+        this.cfg = newCfg;
+        if (reschedule) {
+            synchronized (this) {
+                if (ticker != null) {
+                    ticker.shutdownNow();
+                    ticker = null;
+                }
+            }
+            start();
+        } else {
+            applyConfig(newCfg);
+        }
+    }
+
+    public void setUpdatesJob(Runnable job) {
+        this.updatesJob = job;
+        applyConfig(cfg);
+    }
+
+    /* Trabajo único: se ejecuta con holgura de carga o, como muy tarde, tras maxDelayMillis. */
+    public void submit(@NotNull String name, long maxDelayMillis, @NotNull Runnable task) {
+        long now = System.currentTimeMillis();
+        synchronized (lock) {
+            Job existing = jobs.get(name);
+            if (existing != null) {
+                existing.deadline = Math.min(existing.deadline, now + maxDelayMillis);
+                return;
+            }
+            jobs.put(name, new Job(name, task, now, maxDelayMillis, 0L));
+        }
+        System.out.println("[SCHEDULER] Trabajo encolado: " + name);
+    }
+
+    public void schedulePeriodic(@NotNull String name, long periodMillis, long maxDelayMillis, @NotNull Runnable task) {
+        long now = System.currentTimeMillis();
+        synchronized (lock) {
+            jobs.put(name, new Job(name, task, now + periodMillis, maxDelayMillis, periodMillis));
+        }
+    }
+
+    public boolean cancel(String name) {
+        synchronized (lock) {
+            return jobs.remove(name) != null;
+        }
+    }
+
+    /*
+     * Periódico que viene de la configuración: si ya estaba con el mismo periodo conserva su turno
+     * (notBefore y plazo), así una recarga no aplaza los trabajos un periodo entero.
+     */
+    private void keepPeriodic(String name, long periodMillis, long maxDelayMillis, Runnable task) {
+        synchronized (lock) {
+            Job existing = jobs.get(name);
+            if (existing == null || existing.periodMillis != periodMillis) {
+                schedulePeriodic(name, periodMillis, maxDelayMillis, task);
+                return;
+            }
+            Job kept = new Job(name, task, existing.notBefore, maxDelayMillis, periodMillis);
+            if (existing.maxDelayMillis == maxDelayMillis) kept.deadline = existing.deadline;
+            kept.deferrals = existing.deferrals;
+            jobs.put(name, kept);
+        }
+    }
+
+    private void applyConfig(MonitorConfig c) {
+        long maxDelay = TimeUnit.MINUTES.toMillis(Math.max(1, c.maintenanceMaxDelayMinutes));
+        Set<String> configured = new HashSet<>();
+
+        for (String raw : c.maintenanceCommands) {
+            int sep = raw.indexOf('|');
+            if (sep <= 0) {
+                System.out.println("[SCHEDULER] maintenanceCommand inválido (usar minutos|comando): " + raw);
+                continue;
+            }
+            long minutes;
+            try {
+                minutes = Long.parseLong(raw.substring(0, sep).trim());
+            } catch (NumberFormatException e) {
+                System.out.println("[SCHEDULER] maintenanceCommand inválido (usar minutos|comando): " + raw);
+                continue;
+            }
+            String command = raw.substring(sep + 1).trim();
+            if (minutes <= 0 || command.isEmpty()) continue;
+
+            String name = MAINTENANCE_PREFIX + command;
+            configured.add(name);
+            keepPeriodic(name, TimeUnit.MINUTES.toMillis(minutes), maxDelay, () -> {
+                if (manager.isRunning()) {
+                    System.out.println("[SCHEDULER] Ejecutando comando de mantenimiento: " + command);
+                    manager.sendCommand(command);
+                }
+            });
+        }
+
+        synchronized (lock) {
+            jobs.keySet().removeIf(k -> k.startsWith(MAINTENANCE_PREFIX) && !configured.contains(k));
+        }
+
+        Runnable updates = updatesJob;
+        if (updates != null && c.updatesCheckIntervalMinutes > 0) {
+            keepPeriodic(UPDATES_JOB, TimeUnit.MINUTES.toMillis(c.updatesCheckIntervalMinutes), maxDelay, updates);
+        } else {
+            cancel(UPDATES_JOB);
+        }
+    }
+
+    private void tick() {
+        try {
+            if (busy.get()) return;
+
+            long now = System.currentTimeMillis();
+            Job next = null;
+
+            synchronized (lock) {
+                for (Job j : jobs.values()) {
+                    if (j.notBefore > now) continue;
+                    if (next == null || j.deadline < next.deadline) next = j;
+                }
+            }
+            if (next == null) return;
+
+            String blocker = loadBlocker();
+            boolean overdue = now >= next.deadline;
+
+            if (blocker != null && !overdue) {
+                next.deferrals++;
+                lastDecision = "diferido " + next.name + ": " + blocker;
+                return;
+            }
+
+            lastDecision = overdue && blocker != null
+                    ? "forzado " + next.name + " por plazo (" + blocker + ")"
+                    : "ejecutado " + next.name;
+
+            synchronized (lock) {
+                jobs.remove(next.name);
+            }
+
+            run(next);
+
+        } catch (Throwable t) {
+            System.out.println("[SCHEDULER] Error en tick: " + t.getMessage());
+        }
+    }
+
+    private void run(Job job) {
+        busy.set(true);
+        worker.execute(() -> {
+            long start = System.currentTimeMillis();
+            try {
+                job.task.run();
+            } catch (Throwable t) {
+                System.out.println("[SCHEDULER] Error en trabajo " + job.name + ": " + t.getMessage());
+            } finally {
+                long took = System.currentTimeMillis() - start;
+                if (job.deferrals > 0 || took > 1000L) {
+                    System.out.println("[SCHEDULER] Trabajo " + job.name + " terminado en " + took
+                            + "ms (diferido " + job.deferrals + " veces)");
+                }
+                if (job.periodMillis > 0) {
+                    long now = System.currentTimeMillis();
+                    synchronized (lock) {
+                        if (!jobs.containsKey(job.name)) {
+                            jobs.put(job.name, new Job(job.name, job.task, now + job.periodMillis,
+                                    job.maxDelayMillis, job.periodMillis));
+                        }
+                    }
+                }
+                busy.set(false);
+            }
+        });
+    }
+
+    /* null si la carga permite ejecutar; si no, el motivo. */
+    private String loadBlocker() {
+        MonitorConfig c = cfg;
+
+        Map<String, Double> tps = tpsSource != null ? tpsSource.get() : Map.of();
+        if (tps != null && !tps.isEmpty()) {
+            double min = Collections.min(tps.values());
+            if (min < c.schedulerMinTps) {
+                return "TPS " + min + " < " + c.schedulerMinTps;
+            }
+        }
+
+        double cpu = probe.cpuLoad();
+        if (cpu >= 0 && cpu > c.schedulerMaxCpuLoad) {
+            return String.format(Locale.ROOT, "CPU %.2f > %.2f", cpu, c.schedulerMaxCpuLoad);
+        }
+
+        double disk = probe.diskBusy();
+        if (disk >= 0 && disk > c.schedulerMaxDiskBusy) {
+            return String.format(Locale.ROOT, "disco %.2f > %.2f", disk, c.schedulerMaxDiskBusy);
+        }
+
+        return null;
+    }
+
+    public @NotNull List<String> status() {
+        List<String> out = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        out.add("Ultima decision: " + lastDecision + (busy.get() ? " (trabajo en curso)" : ""));
+        synchronized (lock) {
+            if (jobs.isEmpty()) out.add("Sin trabajos pendientes.");
+            for (Job j : jobs.values()) {
+                out.add(j.name
+                        + " | inicia en " + Math.max(0, (j.notBefore - now) / 1000) + "s"
+                        + " | plazo en " + Math.max(0, (j.deadline - now) / 1000) + "s"
+                        + " | diferido " + j.deferrals);
+            }
+        }
+        return out;
+    }
+}
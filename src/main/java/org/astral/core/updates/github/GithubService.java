@@ -1,6 +1,7 @@
 package org.astral.core.updates.github;
 
 import org.astral.core.updates.util.HashUtils;
+import org.astral.core.updates.util.IoThrottle;
 import org.jetbrains.annotations.NotNull;
 import org.kohsuke.github.*;
 
@@ -172,7 +173,7 @@ public class GithubService {
             throw new IOException("HTTP error descargando asset: " + status);
         }
 
-        try (InputStream in = resp.body()) {
+        try (InputStream in = IoThrottle.shared().wrap(resp.body())) {
             Files.copy(in, tmpDownload, StandardCopyOption.REPLACE_EXISTING);
         }
 
@@ -8,6 +8,7 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.security.DigestInputStream;
 import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 
 public final class HashUtils {
 
@@ -15,13 +16,24 @@ public final class HashUtils {
 
     public static @NotNull String sha256OfFile(Path p) throws Exception {
         MessageDigest md = MessageDigest.getInstance("SHA-256");
-        try (InputStream is = Files.newInputStream(p);
+        try (InputStream is = IoThrottle.shared().wrap(Files.newInputStream(p));
              DigestInputStream dis = new DigestInputStream(is, md)) {
             dis.transferTo(OutputStream.nullOutputStream());
         }
         return bytesToHex(md.digest());
     }
 
+    /* SHA-256 de un bloque en memoria (bloques de replicación). */
+    public static byte @NotNull [] sha256(byte @NotNull [] buf, int off, int len) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            md.update(buf, off, len);
+            return md.digest();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
     private static @NotNull String bytesToHex(byte @NotNull [] bytes) {
         StringBuilder sb = new StringBuilder(bytes.length * 2);
         for (byte b : bytes) sb.append(String.format("%02x", b));
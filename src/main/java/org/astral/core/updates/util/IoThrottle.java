@@ -0,0 +1,163 @@
+package org.astral.core.updates.util;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * Limitador de ancho de banda de disco/red compartido por copias, hashes y descargas (token bucket).
+ * - sync.ioLimitMBps: 0 = sin límite. sync.ioBurstMB: ráfaga permitida (0 = un segundo de límite).
+ * - Una petición mayor que los tokens disponibles deja el cubo en negativo y espera lo que falta;
+ *   las siguientes esperan detrás, así el reparto entre hilos es justo.
+ * - Carril rápido: fastLane() deja sin límite solo al hilo que lo abre (y a los hilos que cree
+ *   mientras tanto, p.ej. las copias en paralelo) hasta cerrarlo: el servidor parado esperando su
+ *   sincronización. Las demás copias, réplicas y descargas siguen limitadas.
+ */
+public final class IoThrottle {
+
+    /* Granularidad recomendada para los bucles de copia. */
+    public static final int CHUNK = 1 << 20;
+
+    private static final IoThrottle SHARED = new IoThrottle();
+
+    private double bytesPerNano;     // 0 = sin límite
+    private double capacity;
+    private double tokens;
+    private long lastRefill = System.nanoTime();
+
+    // heredable: las copias en paralelo corren en hilos virtuales creados desde el hilo del carril
+    private final InheritableThreadLocal<Lane> lane = new InheritableThreadLocal<>();
+    private final AtomicInteger fastLanes = new AtomicInteger();
+    private final LongAdder totalBytes = new LongAdder();
+    private final LongAdder fastBytes = new LongAdder();
+    private final LongAdder waits = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+
+    private IoThrottle() {}
+
+    public static @NotNull IoThrottle shared() {
+        return SHARED;
+    }
+
+    public synchronized void configure(int mbPerSecond, int burstMB) {
+        if (mbPerSecond <= 0) {
+            bytesPerNano = 0;
+            return;
+        }
+        double perSecond = mbPerSecond * 1024.0 * 1024.0;
+        bytesPerNano = perSecond / TimeUnit.SECONDS.toNanos(1);
+        capacity = burstMB > 0 ? burstMB * 1024.0 * 1024.0 : perSecond;
+        tokens = Math.min(tokens, capacity);
+        lastRefill = System.nanoTime();
+        System.out.println("[IO] Límite de I/O: " + mbPerSecond + " MB/s, ráfaga " + (long) (capacity / (1024 * 1024)) + " MB");
+    }
+
+    public synchronized boolean enabled() {
+        return bytesPerNano > 0 && !inFastLane();
+    }
+
+    private boolean inFastLane() {
+        Lane l = lane.get();
+        return l != null && !l.closed;
+    }
+
+    /* Bloquea hasta que haya ancho de banda para bytes. */
+    public void acquire(long bytes) {
+        if (bytes <= 0) return;
+        totalBytes.add(bytes);
+        if (inFastLane()) {
+            fastBytes.add(bytes);
+            return;
+        }
+
+        long sleep;
+        synchronized (this) {
+            if (bytesPerNano <= 0) return;
+            long now = System.nanoTime();
+            tokens = Math.min(capacity, tokens + (now - lastRefill) * bytesPerNano);
+            lastRefill = now;
+            tokens -= bytes;
+            if (tokens >= 0) return;
+            sleep = (long) (-tokens / bytesPerNano);
+        }
+
+        waits.increment();
+        long start = System.nanoTime();
+        try {
+            TimeUnit.NANOSECONDS.sleep(sleep);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            waitNanos.add(System.nanoTime() - start);
+        }
+    }
+
+    /* Sin límite para este hilo (y los que cree) hasta cerrar el Lane devuelto. */
+    public @NotNull Lane fastLane() {
+        Lane l = new Lane(lane.get());
+        lane.set(l);
+        fastLanes.incrementAndGet();
+        return l;
+    }
+
+    public final class Lane implements AutoCloseable {
+        private final Lane previous;
+        // un hilo creado durante el carril hereda este Lane: al cerrarse deja de valerle también
+        private volatile boolean closed;
+
+        private Lane(Lane previous) {
+            this.previous = previous;
+        }
+
+        @Override
+        public void close() {
+            if (closed) return;
+            closed = true;
+            fastLanes.decrementAndGet();
+            if (lane.get() == this) lane.set(previous);
+        }
+    }
+
+    /* Stream que consume tokens por cada bloque leído. */
+    public @NotNull InputStream wrap(@NotNull InputStream in) {
+        return new FilterInputStream(in) {
+            @Override
+            public int read() throws IOException {
+                int b = super.read();
+                if (b >= 0) acquire(1);
+                return b;
+            }
+
+            @Override
+            public int read(byte @NotNull [] buf, int off, int len) throws IOException {
+                int n = super.read(buf, off, len);
+                if (n > 0) acquire(n);
+                return n;
+            }
+        };
+    }
+
+    public @NotNull List<String> stats() {
+        List<String> out = new ArrayList<>();
+        synchronized (this) {
+            out.add(bytesPerNano <= 0
+                    ? "Límite: sin límite"
+                    : String.format(Locale.ROOT, "Límite: %.1f MB/s, ráfaga %.1f MB, tokens %.1f MB%s",
+                    bytesPerNano * TimeUnit.SECONDS.toNanos(1) / (1024 * 1024), capacity / (1024 * 1024),
+                    Math.max(0, tokens) / (1024 * 1024), fastLanes.get() > 0 ? " (carril rápido activo)" : ""));
+        }
+        out.add(String.format(Locale.ROOT, "I/O total: %.1f MB (%.1f MB por carril rápido)",
+                totalBytes.sum() / (1024.0 * 1024.0), fastBytes.sum() / (1024.0 * 1024.0)));
+        out.add(String.format(Locale.ROOT, "Esperas por límite: %d, %.1f s en total",
+                waits.sum(), waitNanos.sum() / 1e9));
+        return out;
+    }
+}
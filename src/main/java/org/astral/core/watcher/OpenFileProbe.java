@@ -0,0 +1,87 @@
+package org.astral.core.watcher;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/* Comprueba en /proc/<pid>/fd si algún proceso tiene un archivo abierto para escritura (solo Linux). */
+final class OpenFileProbe {
+
+    private static final Path PROC = Path.of("/proc");
+    private static final boolean AVAILABLE = Files.isDirectory(PROC.resolve("self").resolve("fd"));
+
+    private OpenFileProbe() {}
+
+    static boolean available() {
+        return AVAILABLE;
+    }
+
+    /* true si path (o, con subtree, algo debajo de path) está abierto con O_WRONLY/O_RDWR. */
+    static boolean openForWrite(Path path, boolean subtree) {
+        if (!AVAILABLE) return false;
+
+        Predicate<Path> match = subtree ? t -> t.startsWith(path) : path::equals;
+        return !scan(match, true).isEmpty();
+    }
+
+    /* De paths, los que algún proceso tiene abiertos para escritura: un único recorrido de /proc para todo el lote. */
+    static Set<Path> openForWrite(Set<Path> paths) {
+        if (!AVAILABLE || paths.isEmpty()) return Set.of();
+        return scan(paths::contains, false);
+    }
+
+    private static Set<Path> scan(Predicate<Path> match, boolean firstOnly) {
+        Set<Path> out = new HashSet<>();
+        try (DirectoryStream<Path> procs = Files.newDirectoryStream(PROC, OpenFileProbe::isPidDir)) {
+            for (Path proc : procs) {
+                processWrites(proc, match, out);
+                if (firstOnly && !out.isEmpty()) break;
+            }
+        } catch (IOException ignored) {}
+        return out;
+    }
+
+    private static boolean isPidDir(Path p) {
+        String n = p.getFileName().toString();
+        for (int i = 0; i < n.length(); i++) {
+            if (!Character.isDigit(n.charAt(i))) return false;
+        }
+        return !n.isEmpty();
+    }
+
+    private static void processWrites(Path proc, Predicate<Path> match, Set<Path> out) {
+        Path fdDir = proc.resolve("fd");
+        try (DirectoryStream<Path> fds = Files.newDirectoryStream(fdDir)) {
+            for (Path fd : fds) {
+                Path target;
+                try {
+                    target = Files.readSymbolicLink(fd);
+                } catch (IOException | UnsupportedOperationException e) {
+                    continue;
+                }
+                if (!out.contains(target) && match.test(target)
+                        && writable(proc.resolve("fdinfo").resolve(fd.getFileName().toString()))) {
+                    out.add(target);
+                }
+            }
+        } catch (IOException ignored) {
+            // proceso terminado o sin permisos para leer sus fds
+        }
+    }
+
+    private static boolean writable(Path fdinfo) {
+        try {
+            for (String line : Files.readAllLines(fdinfo)) {
+                if (line.startsWith("flags:")) {
+                    int flags = Integer.parseInt(line.substring("flags:".length()).trim(), 8);
+                    return (flags & 3) != 0;
+                }
+            }
+        } catch (IOException | NumberFormatException ignored) {}
+        return false;
+    }
+}
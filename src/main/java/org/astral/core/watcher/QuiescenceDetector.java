@@ -0,0 +1,210 @@
+package org.astral.core.watcher;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.stream.Stream;
+
+/*
+ * Detector de "archivo en reposo" alimentado por los propios eventos de los watchers.
+ * - touch(): cada evento registra la última actividad de la ruta.
+ * - debounce(): temporizador por clave en un único scheduler; cada evento lo reinicia.
+ * - awaitQuiet(): espera a que no haya eventos durante quietMillis y, en Linux, a que
+ *   nadie tenga el archivo abierto para escritura (/proc/<pid>/fd). Si nada lo está
+ *   escribiendo, vuelve enseguida en lugar de esperar varios ciclos de sondeo.
+ * - awaitQuietAll(): lo mismo para un lote de archivos con un solo recorrido de /proc por
+ *   comprobación, en lugar de uno por archivo.
+ * Fuera de Linux se mantiene la comprobación antigua de tamaños estables.
+ */
+public final class QuiescenceDetector {
+
+    private static final QuiescenceDetector SHARED = new QuiescenceDetector();
+
+    private static final long OPEN_RECHECK_MILLIS = 100L;
+    private static final long FORGET_AFTER_MILLIS = 60_000L;
+
+    private final Map<Path, Long> lastActivity = new ConcurrentHashMap<>();
+    private final Map<Object, ScheduledFuture<?>> timers = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "Quiescence-Scheduler");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private QuiescenceDetector() {
+        scheduler.scheduleWithFixedDelay(this::forgetOld, 30, 30, TimeUnit.SECONDS);
+    }
+
+    public static @NotNull QuiescenceDetector shared() {
+        return SHARED;
+    }
+
+    public void touch(@NotNull Path absolute) {
+        lastActivity.put(absolute, System.currentTimeMillis());
+    }
+
+    /* Ejecuta action (en un hilo virtual) cuando pasen quietMillis sin nuevas llamadas con la misma clave. */
+    public void debounce(@NotNull Object key, long quietMillis, @NotNull Runnable action) {
+        timers.compute(key, (_, prev) -> {
+            if (prev != null) prev.cancel(false);
+            return scheduler.schedule(() -> {
+                timers.remove(key);
+                Thread.ofVirtual().name("Quiescence-Action").start(action);
+            }, Math.max(0, quietMillis), TimeUnit.MILLISECONDS);
+        });
+    }
+
+    public void cancel(@NotNull Object key) {
+        ScheduledFuture<?> f = timers.remove(key);
+        if (f != null) f.cancel(false);
+    }
+
+    /* Bloquea hasta que path (y su subárbol si es directorio) esté en reposo. false si se agota maxMillis. */
+    public boolean awaitQuiet(Path path, long quietMillis, long maxMillis) {
+        if (path == null || !Files.exists(path)) return true;
+        Path abs = path.toAbsolutePath().normalize();
+        boolean subtree = Files.isDirectory(abs);
+        Path real = abs;
+        try {
+            real = abs.toRealPath();
+        } catch (IOException ignored) {}
+
+        if (!OpenFileProbe.available()) {
+            return legacyStableSizes(abs, quietMillis, maxMillis);
+        }
+
+        long deadline = System.currentTimeMillis() + maxMillis;
+
+        while (!Thread.currentThread().isInterrupted()) {
+            long now = System.currentTimeMillis();
+            long quietLeft = lastActivityUnder(abs, subtree) + quietMillis - now;
+
+            if (quietLeft <= 0) {
+                if (!OpenFileProbe.openForWrite(real, subtree)) return true;
+                quietLeft = OPEN_RECHECK_MILLIS;
+            }
+
+            if (now + quietLeft > deadline) {
+                return false;
+            }
+
+            try {
+                Thread.sleep(quietLeft);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return false;
+    }
+
+    /* Como awaitQuiet para un lote de archivos sueltos (p.ej. los que va a copiar una sincronización). */
+    public boolean awaitQuietAll(Collection<Path> files, long quietMillis, long maxMillis) {
+        Map<Path, Path> real = new HashMap<>();
+        for (Path f : files) {
+            if (f == null || !Files.exists(f)) continue;
+            Path abs = f.toAbsolutePath().normalize();
+            try {
+                real.put(abs, abs.toRealPath());
+            } catch (IOException e) {
+                real.put(abs, abs);
+            }
+        }
+        if (real.isEmpty()) return true;
+
+        if (!OpenFileProbe.available()) {
+            return legacyStableSizes(real.keySet(), quietMillis, maxMillis);
+        }
+
+        long deadline = System.currentTimeMillis() + maxMillis;
+        Set<Path> pending = new HashSet<>(real.values());
+
+        while (!Thread.currentThread().isInterrupted()) {
+            long now = System.currentTimeMillis();
+            long last = 0L;
+            for (Path abs : real.keySet()) last = Math.max(last, lastActivity.getOrDefault(abs, 0L));
+            long quietLeft = last + quietMillis - now;
+
+            if (quietLeft <= 0) {
+                // solo se vuelven a comprobar los que seguían abiertos
+                pending = OpenFileProbe.openForWrite(pending);
+                if (pending.isEmpty()) return true;
+                quietLeft = OPEN_RECHECK_MILLIS;
+            }
+
+            if (now + quietLeft > deadline) {
+                return false;
+            }
+
+            try {
+                Thread.sleep(quietLeft);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return false;
+    }
+
+    private long lastActivityUnder(Path abs, boolean subtree) {
+        if (!subtree) return lastActivity.getOrDefault(abs, 0L);
+        long last = 0L;
+        for (Map.Entry<Path, Long> e : lastActivity.entrySet()) {
+            if (e.getKey().startsWith(abs)) last = Math.max(last, e.getValue());
+        }
+        return last;
+    }
+
+    private void forgetOld() {
+        long limit = System.currentTimeMillis() - FORGET_AFTER_MILLIS;
+        lastActivity.values().removeIf(v -> v < limit);
+    }
+
+    /* Fallback sin /proc: tamaños sin cambios durante quietMillis. */
+    private static boolean legacyStableSizes(Path abs, long quietMillis, long maxMillis) {
+        return legacyStableSizes(List.of(abs), quietMillis, maxMillis);
+    }
+
+    @SuppressWarnings("BusyWait")
+    private static boolean legacyStableSizes(Collection<Path> roots, long quietMillis, long maxMillis) {
+        long start = System.currentTimeMillis();
+        Map<Path, Long> last = sizes(roots);
+        long stableSince = start;
+
+        while (System.currentTimeMillis() - start < maxMillis) {
+            try {
+                Thread.sleep(200L);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+            long now = System.currentTimeMillis();
+            Map<Path, Long> cur = sizes(roots);
+            if (!cur.equals(last)) {
+                last = cur;
+                stableSince = now;
+            } else if (now - stableSince >= Math.max(quietMillis, 500L)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Map<Path, Long> sizes(Collection<Path> roots) {
+        Map<Path, Long> out = new HashMap<>();
+        for (Path abs : roots) {
+            try (Stream<Path> s = Files.isDirectory(abs) ? Files.walk(abs) : Stream.of(abs)) {
+                s.filter(Files::isRegularFile).forEach(p -> {
+                    try {
+                        out.put(p, Files.size(p));
+                    } catch (IOException ignored) {}
+                });
+            } catch (IOException ignored) {}
+        }
+        return out;
+    }
+}
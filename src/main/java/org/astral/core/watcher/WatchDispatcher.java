@@ -0,0 +1,250 @@
+package org.astral.core.watcher;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * Un único WatchService para todos los watchers.
+ * - Un hilo de plataforma bloquea en take() (sin despertares periódicos) y reparte cada
+ *   WatchKey a la suscripción que registró su directorio.
+ * - Cada suscripción procesa sus lotes en orden, en un hilo virtual que solo existe
+ *   mientras tiene trabajo. Un handler lento no retrasa a los demás.
+ * - Alta y baja de suscripciones son operaciones de mapa, sin crear ni parar hilos.
+ */
+public final class WatchDispatcher {
+
+    public interface Handler {
+        void onEvents(@NotNull Path dir, @NotNull List<WatchEvent<?>> events);
+
+        /* La clave dejó de ser válida (directorio borrado o desmontado). */
+        default void onKeyInvalid(@NotNull Path dir) {}
+    }
+
+    private static final WatchDispatcher SHARED = new WatchDispatcher();
+
+    private static final WatchEvent.Kind<?>[] KINDS = {
+            StandardWatchEventKinds.ENTRY_CREATE,
+            StandardWatchEventKinds.ENTRY_DELETE,
+            StandardWatchEventKinds.ENTRY_MODIFY,
+            StandardWatchEventKinds.OVERFLOW
+    };
+
+    private final Map<WatchKey, Registration> keys = new ConcurrentHashMap<>();
+    private final Map<Subscription, Boolean> subscriptions = new ConcurrentHashMap<>();
+    private volatile WatchService service;
+    private Thread loop;
+
+    private WatchDispatcher() {}
+
+    public static @NotNull WatchDispatcher shared() {
+        return SHARED;
+    }
+
+    public synchronized @NotNull Subscription subscribe(@NotNull String name, @NotNull Handler handler) throws IOException {
+        ensureStarted();
+        Subscription s = new Subscription(name, handler);
+        subscriptions.put(s, Boolean.TRUE);
+        return s;
+    }
+
+    private void ensureStarted() throws IOException {
+        if (loop != null && loop.isAlive()) return;
+        service = FileSystems.getDefault().newWatchService();
+        loop = new Thread(this::dispatchLoop, "Watch-Dispatcher");
+        loop.setDaemon(true);
+        loop.start();
+    }
+
+    public synchronized void shutdown() {
+        subscriptions.keySet().forEach(Subscription::close);
+        if (loop != null) loop.interrupt();
+        if (service != null) {
+            try {
+                service.close();
+            } catch (IOException ignored) {}
+        }
+        loop = null;
+        service = null;
+    }
+
+    private void dispatchLoop() {
+        WatchService ws = service;
+        while (!Thread.currentThread().isInterrupted()) {
+            WatchKey key;
+            try {
+                key = ws.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (ClosedWatchServiceException e) {
+                break;
+            }
+
+            List<WatchEvent<?>> events = key.pollEvents();
+            boolean valid = key.reset();
+            Registration reg = keys.get(key);
+
+            if (reg == null) {
+                if (!valid) keys.remove(key);
+                continue;
+            }
+            if (!events.isEmpty()) {
+                reg.owner.enqueue(reg.dir, events);
+            }
+            if (!valid) {
+                keys.remove(key);
+                reg.owner.dirs.remove(reg.dir);
+                reg.owner.enqueueInvalid(reg.dir);
+            }
+        }
+    }
+
+    public @NotNull List<String> stats() {
+        List<String> out = new ArrayList<>();
+        subscriptions.keySet().stream()
+                .sorted(Comparator.comparing(s -> s.name))
+                .forEach(s -> out.add(s.describe()));
+        if (out.isEmpty()) out.add("Sin watchers registrados.");
+        return out;
+    }
+
+    private record Registration(Subscription owner, Path dir) {}
+
+    /* Conjunto de directorios de un watcher y su cola de lotes pendientes. */
+    public final class Subscription implements AutoCloseable {
+
+        private final String name;
+        private final Handler handler;
+        private final Map<Path, WatchKey> dirs = new ConcurrentHashMap<>();
+        private final Queue<Runnable> queue = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean draining = new AtomicBoolean(false);
+        private volatile boolean closed;
+
+        private final AtomicLong totalEvents = new AtomicLong();
+        private final AtomicLong totalBatches = new AtomicLong();
+        private final long[] perSecond = new long[60];
+        private long bucketSecond;
+        private volatile long lastEventAt;
+
+        private Subscription(String name, Handler handler) {
+            this.name = name;
+            this.handler = handler;
+        }
+
+        public void watch(@NotNull Path dir) throws IOException {
+            if (closed) return;
+            Path abs = dir.toAbsolutePath().normalize();
+            if (dirs.containsKey(abs)) return;
+            WatchKey key = abs.register(service, KINDS);
+            Registration prev = keys.put(key, new Registration(this, abs));
+            if (prev != null && prev.owner != this) {
+                // otra suscripción ya vigilaba el mismo directorio: el WatchService devuelve la misma clave
+                keys.put(key, prev);
+                throw new IOException("directorio ya vigilado por " + prev.owner.name + ": " + abs);
+            }
+            dirs.put(abs, key);
+        }
+
+        public boolean isWatching(@NotNull Path dir) {
+            return dirs.containsKey(dir.toAbsolutePath().normalize());
+        }
+
+        /* Deja de vigilar dir y todo lo registrado debajo de él. */
+        public void unwatchUnder(@NotNull Path dir) {
+            Path abs = dir.toAbsolutePath().normalize();
+            dirs.entrySet().removeIf(e -> {
+                if (!e.getKey().startsWith(abs)) return false;
+                keys.remove(e.getValue());
+                e.getValue().cancel();
+                return true;
+            });
+        }
+
+        public int watchedDirs() {
+            return dirs.size();
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+            dirs.values().forEach(k -> {
+                keys.remove(k);
+                k.cancel();
+            });
+            dirs.clear();
+            queue.clear();
+            subscriptions.remove(this);
+        }
+
+        private void enqueue(Path dir, List<WatchEvent<?>> events) {
+            record(events);
+            submit(() -> handler.onEvents(dir, events));
+        }
+
+        private void enqueueInvalid(Path dir) {
+            submit(() -> handler.onKeyInvalid(dir));
+        }
+
+        private void submit(Runnable task) {
+            if (closed) return;
+            queue.add(task);
+            if (draining.compareAndSet(false, true)) {
+                Thread.ofVirtual().name("Watch-" + name).start(this::drain);
+            }
+        }
+
+        private void drain() {
+            while (true) {
+                Runnable task;
+                while ((task = queue.poll()) != null) {
+                    if (closed) return;
+                    try {
+                        task.run();
+                    } catch (RuntimeException e) {
+                        System.err.println("[WATCHER] Error en handler de " + name + ": " + e.getMessage());
+                    }
+                }
+                draining.set(false);
+                if (queue.isEmpty() || !draining.compareAndSet(false, true)) return;
+            }
+        }
+
+        private synchronized void record(List<WatchEvent<?>> events) {
+            long now = System.currentTimeMillis();
+            long sec = now / 1000L;
+            advance(sec);
+            perSecond[(int) (sec % perSecond.length)] += events.size();
+            totalEvents.addAndGet(events.size());
+            totalBatches.incrementAndGet();
+            lastEventAt = now;
+        }
+
+        private void advance(long sec) {
+            if (bucketSecond == 0 || sec - bucketSecond >= perSecond.length) {
+                Arrays.fill(perSecond, 0L);
+            } else {
+                for (long s = bucketSecond + 1; s <= sec; s++) {
+                    perSecond[(int) (s % perSecond.length)] = 0L;
+                }
+            }
+            bucketSecond = Math.max(bucketSecond, sec);
+        }
+
+        private synchronized String describe() {
+            advance(System.currentTimeMillis() / 1000L);
+            long lastMinute = 0L;
+            for (long v : perSecond) lastMinute += v;
+            String last = lastEventAt == 0 ? "nunca"
+                    : ((System.currentTimeMillis() - lastEventAt) / 1000L) + "s";
+            return String.format(Locale.ROOT, "%s: %d dirs, %d eventos (%d lotes), %.2f ev/s último minuto, último hace %s",
+                    name, dirs.size(), totalEvents.get(), totalBatches.get(), lastMinute / 60.0, last);
+        }
+    }
+}
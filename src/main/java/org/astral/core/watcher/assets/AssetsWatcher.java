@@ -1,13 +1,19 @@
 package org.astral.core.watcher.assets;
 
 import org.astral.core.process.ManagerHolder;
+import org.astral.core.process.RestartCoordinator;
+import org.astral.core.watcher.QuiescenceDetector;
+import org.astral.core.watcher.WatchDispatcher;
+import org.jetbrains.annotations.NotNull;
 
-import java.nio.file.*;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.concurrent.TimeUnit;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.util.List;
 
-public class AssetsWatcher implements Runnable {
+public class AssetsWatcher implements WatchDispatcher.Handler {
+
+    private static final long QUIET_MILLIS = 500L;
 
     private final Path assetsDir;
     private final ManagerHolder managerHolder;
@@ -17,99 +23,51 @@ public class AssetsWatcher implements Runnable {
         this.managerHolder = managerHolder;
     }
 
-    @Override
-    public void run() {
-
+    public void start() {
         try {
 
             if (!Files.exists(assetsDir)) {
                 Files.createDirectories(assetsDir);
             }
 
-            WatchService watchService = FileSystems.getDefault().newWatchService();
-
-            assetsDir.register(
-                    watchService,
-                    StandardWatchEventKinds.ENTRY_CREATE,
-                    StandardWatchEventKinds.ENTRY_DELETE,
-                    StandardWatchEventKinds.ENTRY_MODIFY
-            );
+            WatchDispatcher.shared()
+                    .subscribe("assets:" + assetsDir.toAbsolutePath().normalize(), this)
+                    .watch(assetsDir);
 
             System.out.println("[ASSETS] Watcher activo en: " + assetsDir);
 
-            while (!Thread.currentThread().isInterrupted()) {
-
-                WatchKey key = watchService.poll(1, TimeUnit.SECONDS);
-                if (key == null) continue;
-
-                boolean changed = false;
-
-                for (WatchEvent<?> event : key.pollEvents()) {
-                    Path changedFile = (Path) event.context();
-                    if (changedFile.toString().endsWith(".zip")) {
-                        changed = true;
-                        break;
-                    }
-                }
-
-                if (changed) {
-                    boolean stable = waitForStableZipFiles(assetsDir);
-                    if (stable) {
-                        reloadServer();
-                    } else {
-                        System.out.println("[ASSETS] Archivos .zip no estabilizados en el tiempo esperado; no se reinicia.");
-                    }
-                }
-
-                key.reset();
-            }
-
         } catch (Exception e) {
             System.out.println("[ASSETS] Error: " + e.getMessage());
         }
     }
 
-    private boolean waitForStableZipFiles(Path dir) {
-        long start = System.currentTimeMillis();
-        Map<Path, Long> lastSizes = new HashMap<>();
+    @Override
+    public void onEvents(@NotNull Path dir, @NotNull List<WatchEvent<?>> events) {
+        boolean changed = false;
 
-        try {
-            while (System.currentTimeMillis() - start < (long) 10000) {
-                boolean allStable = true;
-
-                try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, "*.zip")) {
-                    for (Path p : stream) {
-                        long size = Files.size(p);
-                        Long prev = lastSizes.get(p);
-                        if (prev == null || prev != size) {
-                            lastSizes.put(p, size);
-                            allStable = false;
-                        }
-                    }
-                }
-
-                if (allStable && !lastSizes.isEmpty()) {
-                    return true;
-                }
-
-                TimeUnit.MILLISECONDS.sleep((long) 500);
+        for (WatchEvent<?> event : events) {
+            if (event.context() instanceof Path changedFile && changedFile.toString().endsWith(".zip")) {
+                QuiescenceDetector.shared().touch(dir.resolve(changedFile).toAbsolutePath().normalize());
+                changed = true;
             }
-        } catch (Exception e) {
-            System.out.println("[ASSETS] Error comprobando estabilidad: " + e.getMessage());
         }
-        return false;
-    }
-
-    private void reloadServer() {
-        try {
-            System.out.println("[ASSETS] Cambio detectado y archivos estables. Reiniciando servidor...");
 
-            if (managerHolder.get() != null) {
-                managerHolder.get().restart();
-            }
+        // el reinicio se programa aparte; cada evento nuevo lo pospone
+        if (changed) {
+            QuiescenceDetector.shared().debounce("assets:" + assetsDir, QUIET_MILLIS, this::reloadWhenQuiet);
+        }
+    }
 
-        } catch (Exception e) {
-            System.out.println("[ASSETS] Error reiniciando: " + e.getMessage());
+    private void reloadWhenQuiet() {
+        if (QuiescenceDetector.shared().awaitQuiet(assetsDir, QUIET_MILLIS, 10000L)) {
+            reloadServer();
+        } else {
+            System.out.println("[ASSETS] Archivos .zip no estabilizados en el tiempo esperado; no se reinicia.");
         }
     }
-}
\ No newline at end of file
+
+    private void reloadServer() {
+        System.out.println("[ASSETS] Cambio detectado y archivos estables. Solicitando reinicio...");
+        managerHolder.restarts().request("assets", "cambios en " + assetsDir, RestartCoordinator.Urgency.NORMAL);
+    }
+}
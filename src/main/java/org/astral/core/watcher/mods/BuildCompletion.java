@@ -0,0 +1,195 @@
+package org.astral.core.watcher.mods;
+
+import org.astral.core.watcher.QuiescenceDetector;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.util.*;
+import java.util.stream.Stream;
+
+/*
+ * Cuándo un build de build/libs ha terminado (Config.Watcher.completion):
+ *   quiet          -> espera a que la carpeta deje de recibir escrituras (comportamiento anterior)
+ *   marker[:name]  -> el build escribe al final un archivo marcador (por defecto .build-complete)
+ *                     más reciente que todos los artefactos
+ *   ready          -> cada artefacto tiene su centinela "<artefacto>.ready", escrito después de él
+ *   zip            -> los .jar/.zip tienen el directorio central completo (el EOCD es lo último que se escribe)
+ *   auto           -> por artefacto: .ready si existe, zip para .jar/.zip, quiet para el resto
+ * Con marker/ready/zip no se espera: un lote incompleto se descarta y lo dispara la siguiente escritura.
+ * Los marcadores y centinelas no se copian a mods.
+ */
+final class BuildCompletion {
+
+    enum Mode { QUIET, MARKER, READY, ZIP, AUTO }
+
+    static final String READY_SUFFIX = ".ready";
+    static final String DEFAULT_MARKER = ".build-complete";
+
+    private static final int EOCD_SIG = 0x06054b50;
+    private static final int CEN_SIG = 0x02014b50;
+    private static final int ZIP64_LOCATOR_SIG = 0x07064b50;
+    private static final int EOCD_MIN = 22;
+    private static final int EOCD_MAX_COMMENT = 0xFFFF;
+
+    private final Mode mode;
+    private final String marker;
+
+    private BuildCompletion(Mode mode, String marker) {
+        this.mode = mode;
+        this.marker = marker;
+        if (marker != null) PathFilter.registerSignal(marker);
+    }
+
+    static BuildCompletion parse(@Nullable String raw) {
+        String v = raw == null || raw.isBlank() ? "auto" : raw.trim();
+        String name = null;
+        int colon = v.indexOf(':');
+        if (colon >= 0) {
+            name = v.substring(colon + 1).trim();
+            v = v.substring(0, colon);
+        }
+        Mode mode;
+        try {
+            mode = Mode.valueOf(v.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            System.err.println("[MODS] completion desconocido '" + raw + "', usando auto.");
+            mode = Mode.AUTO;
+        }
+        if (mode == Mode.MARKER && (name == null || name.isEmpty())) name = DEFAULT_MARKER;
+        return new BuildCompletion(mode, mode == Mode.MARKER ? name : null);
+    }
+
+    /* null si el build está completo; si no, qué falta. En modo quiet espera a que la carpeta repose. */
+    @Nullable String pending(Path dir, List<WatchEvent<?>> events) {
+        if (mode == Mode.QUIET) {
+            awaitQuiet(dir);
+            return null;
+        }
+        try {
+            if (mode == Mode.MARKER) return markerPending(dir);
+
+            boolean needQuiet = false;
+            for (Path artifact : candidates(dir, events)) {
+                Path sentinel = artifact.resolveSibling(artifact.getFileName() + READY_SUFFIX);
+                boolean zip = isZip(artifact);
+
+                if (mode == Mode.READY || (mode == Mode.AUTO && Files.exists(sentinel))) {
+                    if (!Files.exists(sentinel)
+                            || Files.getLastModifiedTime(sentinel).compareTo(Files.getLastModifiedTime(artifact)) < 0) {
+                        return "falta " + sentinel.getFileName();
+                    }
+                } else if (zip) {
+                    if (!zipComplete(artifact)) return artifact.getFileName() + " sin directorio central completo";
+                } else if (mode == Mode.AUTO) {
+                    needQuiet = true;
+                }
+            }
+            if (needQuiet) awaitQuiet(dir);
+            return null;
+        } catch (NoSuchFileException e) {
+            return "desapareció " + e.getFile();
+        } catch (IOException e) {
+            return e.getMessage();
+        }
+    }
+
+    private String markerPending(Path dir) throws IOException {
+        Path m = dir.resolve(marker);
+        if (!Files.exists(m)) return "falta " + marker;
+        FileTime done = Files.getLastModifiedTime(m);
+        try (Stream<Path> s = Files.list(dir)) {
+            for (Path p : (Iterable<Path>) s::iterator) {
+                if (p.equals(m) || isSignal(p)) continue;
+                if (Files.getLastModifiedTime(p).compareTo(done) > 0) {
+                    return p.getFileName() + " es posterior a " + marker;
+                }
+            }
+        }
+        return null;
+    }
+
+    /* Artefactos afectados por el lote (un centinela cuenta por su artefacto); OVERFLOW = todos. */
+    private static Set<Path> candidates(Path dir, List<WatchEvent<?>> events) throws IOException {
+        Set<Path> out = new LinkedHashSet<>();
+        boolean all = false;
+        for (WatchEvent<?> ev : events) {
+            if (ev.kind() == StandardWatchEventKinds.OVERFLOW || !(ev.context() instanceof Path rel)) {
+                all = true;
+                continue;
+            }
+            if (ev.kind() == StandardWatchEventKinds.ENTRY_DELETE) continue;
+            String name = rel.toString();
+            if (name.endsWith(READY_SUFFIX)) name = name.substring(0, name.length() - READY_SUFFIX.length());
+            Path p = dir.resolve(name);
+            if (Files.isRegularFile(p) && !isSignal(p)) out.add(p);
+        }
+        if (all) {
+            try (Stream<Path> s = Files.list(dir)) {
+                s.filter(Files::isRegularFile).filter(p -> !isSignal(p)).forEach(out::add);
+            }
+        }
+        return out;
+    }
+
+    private static boolean isSignal(Path p) {
+        return PathFilter.isSignal(p.getFileName());
+    }
+
+    private static boolean isZip(Path p) {
+        String n = p.getFileName().toString().toLowerCase(Locale.ROOT);
+        return n.endsWith(".jar") || n.endsWith(".zip");
+    }
+
+    /* El EOCD cuadra con el tamaño del archivo y apunta a un directorio central real. */
+    static boolean zipComplete(Path zip) throws IOException {
+        try (FileChannel ch = FileChannel.open(zip, StandardOpenOption.READ)) {
+            long size = ch.size();
+            if (size < EOCD_MIN) return false;
+
+            int tailLen = (int) Math.min(size, EOCD_MIN + EOCD_MAX_COMMENT);
+            ByteBuffer tail = ByteBuffer.allocate(tailLen).order(ByteOrder.LITTLE_ENDIAN);
+            long tailStart = size - tailLen;
+            while (tail.hasRemaining()) {
+                if (ch.read(tail, tailStart + tail.position()) < 0) return false;
+            }
+
+            for (int i = tailLen - EOCD_MIN; i >= 0; i--) {
+                if (tail.getInt(i) != EOCD_SIG) continue;
+                int commentLen = tail.getShort(i + 20) & 0xFFFF;
+                if (i + EOCD_MIN + commentLen != tailLen) continue; // firma dentro del comentario
+
+                long cdSize = tail.getInt(i + 12) & 0xFFFFFFFFL;
+                long cdOffset = tail.getInt(i + 16) & 0xFFFFFFFFL;
+                long eocdPos = tailStart + i;
+
+                if (cdOffset == 0xFFFFFFFFL || cdSize == 0xFFFFFFFFL) {
+                    // zip64: basta con que el localizador esté justo antes del EOCD
+                    return i >= 20 && tail.getInt(i - 20) == ZIP64_LOCATOR_SIG;
+                }
+                // el directorio central va justo antes del EOCD (cdOffset puede ser relativo si el
+                // jar lleva datos antepuestos, p. ej. un script de arranque)
+                long cdStart = eocdPos - cdSize;
+                if (cdStart < 0 || cdOffset > cdStart) return false;
+                if (cdSize == 0) return true;
+
+                ByteBuffer sig = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+                while (sig.hasRemaining()) {
+                    if (ch.read(sig, cdStart + sig.position()) < 0) return false;
+                }
+                return sig.getInt(0) == CEN_SIG;
+            }
+            return false;
+        }
+    }
+
+    private static void awaitQuiet(Path dir) {
+        if (!QuiescenceDetector.shared().awaitQuiet(dir, DirectorySynchronizer.quietMillis(), 10000L)) {
+            System.out.println("[MODS] " + dir + " sigue recibiendo escrituras tras 10s, se sincroniza igualmente.");
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package org.astral.core.watcher.mods;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Comparator;
+import java.util.Locale;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/*
+ * Compara copia secuencial contra copia paralela sobre dos árboles sintéticos:
+ * muchos archivos pequeños y pocos archivos grandes.
+ */
+public final class CopyBenchmark {
+
+    private static final int SMALL_FILES = 2000;
+    private static final int SMALL_SIZE = 16 * 1024;
+    private static final int LARGE_FILES = 4;
+    private static final int LARGE_SIZE = 64 * 1024 * 1024;
+
+    private CopyBenchmark() {}
+
+    /* Trabaja en un subdirectorio nuevo dentro de workDir y solo borra ese: workDir nunca se toca. */
+    public static void run(Path workDir) {
+        Path parent = (workDir != null ? workDir : DirectorySynchronizer.stateDir())
+                .toAbsolutePath().normalize();
+        int parallel = Math.max(2, DirectorySynchronizer.copyConcurrency());
+
+        Path base = null;
+        try {
+            Files.createDirectories(parent);
+            base = Files.createTempDirectory(parent, "sync-bench-");
+
+            Path small = base.resolve("src-small");
+            Path large = base.resolve("src-large");
+
+            System.out.println("[BENCH] Generando árboles de prueba en " + base + " ...");
+            generate(small, SMALL_FILES, SMALL_SIZE, 50);
+            generate(large, LARGE_FILES, LARGE_SIZE, 0);
+
+            runCase("muchos pequeños", small, base, parallel);
+            runCase("pocos grandes", large, base, parallel);
+
+        } catch (IOException e) {
+            System.err.println("[BENCH] Error: " + e.getMessage());
+        } finally {
+            if (base != null) {
+                try {
+                    deleteTree(base);
+                } catch (IOException ignored) {}
+            }
+        }
+    }
+
+    private static void runCase(String name, Path src, Path base, int parallel) throws IOException {
+        long bytes = treeSize(src);
+        warm(src);
+
+        Path seqDst = base.resolve("dst-seq");
+        Path parDst = base.resolve("dst-par");
+
+        long seq = timeCopy(src, seqDst, 1);
+        deleteTree(seqDst);
+        long par = timeCopy(src, parDst, parallel);
+        deleteTree(parDst);
+
+        System.out.println(String.format(Locale.ROOT,
+                "[BENCH] %s (%d MB): secuencial %d ms (%.1f MB/s) | paralelo x%d %d ms (%.1f MB/s) | speedup %.2fx",
+                name, bytes / (1024 * 1024),
+                seq, mbps(bytes, seq),
+                parallel, par, mbps(bytes, par),
+                par > 0 ? (double) seq / par : 0.0));
+    }
+
+    private static long timeCopy(Path src, Path dst, int concurrency) throws IOException {
+        deleteTree(dst);
+        long start = System.nanoTime();
+        DirectorySynchronizer.copyTree(src, dst, concurrency);
+        Durability.barrier("benchmark " + dst);
+        return (System.nanoTime() - start) / 1_000_000L;
+    }
+
+    private static double mbps(long bytes, long millis) {
+        if (millis <= 0) return 0.0;
+        return (bytes / (1024.0 * 1024.0)) / (millis / 1000.0);
+    }
+
+    private static void generate(Path dir, int files, int size, int perDir) throws IOException {
+        Random rnd = new Random(42);
+        byte[] buf = new byte[Math.min(size, 1024 * 1024)];
+        for (int i = 0; i < files; i++) {
+            Path parent = perDir > 0 ? dir.resolve("d" + (i / perDir)) : dir;
+            Files.createDirectories(parent);
+            try (OutputStream out = Files.newOutputStream(parent.resolve("f" + i + ".bin"))) {
+                int left = size;
+                while (left > 0) {
+                    rnd.nextBytes(buf);
+                    int n = Math.min(left, buf.length);
+                    out.write(buf, 0, n);
+                    left -= n;
+                }
+            }
+        }
+    }
+
+    /* Lee todo una vez para que ambas pasadas partan con la misma caché de páginas. */
+    private static void warm(Path dir) throws IOException {
+        try (Stream<Path> s = Files.walk(dir)) {
+            for (Path p : (Iterable<Path>) s::iterator) {
+                if (Files.isRegularFile(p)) {
+                    try (var in = Files.newInputStream(p)) {
+                        in.transferTo(OutputStream.nullOutputStream());
+                    }
+                }
+            }
+        }
+    }
+
+    private static long treeSize(Path dir) throws IOException {
+        long[] total = {0L};
+        Files.walkFileTree(dir, new SimpleFileVisitor<>() {
+            @Override
+            public @NotNull FileVisitResult visitFile(@NotNull Path file, @NotNull BasicFileAttributes attrs) {
+                total[0] += attrs.size();
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return total[0];
+    }
+
+    private static void deleteTree(Path dir) throws IOException {
+        if (!Files.exists(dir)) return;
+        try (Stream<Path> s = Files.walk(dir)) {
+            for (Path p : (Iterable<Path>) s.sorted(Comparator.reverseOrder())::iterator) {
+                Files.deleteIfExists(p);
+            }
+        }
+    }
+}
@@ -0,0 +1,251 @@
+package org.astral.core.watcher.mods;
+
+import org.astral.core.updates.util.IoThrottle;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+/*
+ * Copia delta al estilo rsync para archivos grandes (.zip de assets, jars) que ya existen en el destino.
+ * 1. Firma del destino: por bloque, checksum rodante débil + MD5.
+ * 2. Se recorre el origen con la ventana rodante; cada bloque que coincide se reutiliza del destino,
+ *    el resto son literales.
+ * 3. Si todos los bloques reutilizados están en su misma posición, solo se escriben los literales:
+ *    sobre un clon reflink del destino, o directamente en el destino si sync.deltaInPlace lo permite.
+ *    Si no, se reconstruye el archivo en un temporal (bloques del destino + literales).
+ * 4. Siempre termina con el mtime del origen y, salvo in-place, con un rename atómico.
+ */
+final class DeltaCopier {
+
+    /* saved: bytes del archivo que no hubo que escribir. */
+    record Result(long written, long saved) {}
+
+    private static final int MOD = 1 << 16;
+
+    /* Operación del plan: len bytes del origen en srcOff; destOff >= 0 si se toman del destino. */
+    private record Op(long srcOff, int len, long destOff) {
+        boolean literal() {
+            return destOff < 0;
+        }
+    }
+
+    private DeltaCopier() {}
+
+    static boolean applies(Path src, Path dest) {
+        long threshold = DirectorySynchronizer.settings().deltaThresholdMB * 1024L * 1024L;
+        if (threshold <= 0) return false;
+        try {
+            if (!Files.isRegularFile(dest)) return false;
+            long size = Files.size(src);
+            long destSize = Files.size(dest);
+            return size >= threshold && size <= Integer.MAX_VALUE && destSize <= Integer.MAX_VALUE
+                    && !Files.isSameFile(src, dest);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    static Result copy(Path src, Path dest) throws IOException {
+        int block = Math.max(4, DirectorySynchronizer.settings().deltaBlockKB) * 1024;
+
+        try (FileChannel in = FileChannel.open(src, StandardOpenOption.READ);
+             FileChannel old = FileChannel.open(dest, StandardOpenOption.READ)) {
+
+            MappedByteBuffer s = in.map(FileChannel.MapMode.READ_ONLY, 0, in.size());
+            MappedByteBuffer d = old.map(FileChannel.MapMode.READ_ONLY, 0, old.size());
+
+            List<Op> plan = plan(s, d, block);
+            long reused = 0L;
+            boolean aligned = true;
+            for (Op op : plan) {
+                if (op.literal()) continue;
+                reused += op.len();
+                if (op.destOff() != op.srcOff()) aligned = false;
+            }
+            long literalBytes = in.size() - reused;
+
+            if (aligned && DirectorySynchronizer.settings().deltaInPlace && singleLink(dest)) {
+                writeLiterals(dest, s, plan, in.size());
+                FileCopier.copyTimes(src, dest);
+                return new Result(literalBytes, in.size() - literalBytes);
+            }
+
+            Path tmp = FileCopier.tempSibling(dest);
+            try {
+                Files.deleteIfExists(tmp);
+                long written;
+                if (aligned && reused > 0 && FileCopier.reflinkClone(dest, tmp)) {
+                    writeLiterals(tmp, s, plan, in.size());
+                    written = literalBytes;
+                } else {
+                    // sin clon (o con bloques desplazados) el temporal se escribe entero
+                    rebuild(tmp, s, old, plan);
+                    written = in.size();
+                }
+                FileCopier.copyTimes(src, tmp);
+                FileCopier.moveIntoPlace(tmp, dest);
+                return new Result(written, in.size() - written);
+            } finally {
+                Files.deleteIfExists(tmp);
+            }
+        }
+    }
+
+    /* Recorre el origen con la ventana rodante y arma la lista de operaciones. */
+    private static List<Op> plan(ByteBuffer s, ByteBuffer d, int block) throws IOException {
+        Map<Integer, int[]> sigs = signatures(d, block);
+        MessageDigest md5 = md5();
+        List<Op> ops = new ArrayList<>();
+
+        IoThrottle throttle = IoThrottle.shared();
+        int n = s.limit();
+        int literalStart = 0;
+        int p = 0;
+        long charged = 0;
+        int a = 0, b = 0;
+        boolean fresh = true;
+
+        while (p + block <= n) {
+            if (p + block > charged) {
+                throttle.acquire(block);
+                charged += block;
+            }
+            if (fresh) {
+                a = 0;
+                b = 0;
+                for (int i = 0; i < block; i++) {
+                    int x = s.get(p + i) & 0xff;
+                    a += x;
+                    b += (block - i) * x;
+                }
+                a &= MOD - 1;
+                b &= MOD - 1;
+                fresh = false;
+            }
+
+            int[] candidates = sigs.get((b << 16) | a);
+            int match = -1;
+            if (candidates != null) {
+                byte[] strong = digest(md5, s, p, block);
+                for (int blockIndex : candidates) {
+                    if (Arrays.equals(strong, digest(md5, d, blockIndex * block, block))) {
+                        match = blockIndex;
+                        break;
+                    }
+                }
+            }
+
+            if (match >= 0) {
+                if (p > literalStart) ops.add(new Op(literalStart, p - literalStart, -1));
+                ops.add(new Op(p, block, (long) match * block));
+                p += block;
+                literalStart = p;
+                fresh = true;
+                continue;
+            }
+
+            if (p + block < n) {
+                int out = s.get(p) & 0xff;
+                int inb = s.get(p + block) & 0xff;
+                a = (a - out + inb) & (MOD - 1);
+                b = (b - block * out + a) & (MOD - 1);
+            }
+            p++;
+        }
+
+        if (n > literalStart) ops.add(new Op(literalStart, n - literalStart, -1));
+        return ops;
+    }
+
+    private static Map<Integer, int[]> signatures(ByteBuffer d, int block) {
+        Map<Integer, int[]> out = new HashMap<>();
+        int blocks = d.limit() / block; // el último bloque parcial no se indexa
+        for (int k = 0; k < blocks; k++) {
+            IoThrottle.shared().acquire(block);
+            int off = k * block;
+            int a = 0, b = 0;
+            for (int i = 0; i < block; i++) {
+                int x = d.get(off + i) & 0xff;
+                a += x;
+                b += (block - i) * x;
+            }
+            int key = ((b & (MOD - 1)) << 16) | (a & (MOD - 1));
+            int[] prev = out.get(key);
+            if (prev == null) {
+                out.put(key, new int[]{k});
+            } else {
+                int[] grown = Arrays.copyOf(prev, prev.length + 1);
+                grown[prev.length] = k;
+                out.put(key, grown);
+            }
+        }
+        return out;
+    }
+
+    /* Plan alineado: el destino (o su clon) ya tiene los bloques reutilizados en su sitio. */
+    private static void writeLiterals(Path target, ByteBuffer s, List<Op> plan, long size) throws IOException {
+        try (FileChannel out = FileChannel.open(target, StandardOpenOption.WRITE)) {
+            for (Op op : plan) {
+                if (!op.literal()) continue;
+                IoThrottle.shared().acquire(op.len());
+                ByteBuffer slice = s.slice((int) op.srcOff(), op.len());
+                long pos = op.srcOff();
+                while (slice.hasRemaining()) pos += out.write(slice, pos);
+            }
+            out.truncate(size);
+        }
+    }
+
+    private static void rebuild(Path tmp, ByteBuffer s, FileChannel old, List<Op> plan) throws IOException {
+        try (FileChannel out = FileChannel.open(tmp,
+                StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE)) {
+            for (Op op : plan) {
+                IoThrottle.shared().acquire(op.len());
+                if (op.literal()) {
+                    ByteBuffer slice = s.slice((int) op.srcOff(), op.len());
+                    while (slice.hasRemaining()) out.write(slice);
+                } else {
+                    long pos = op.destOff();
+                    long left = op.len();
+                    while (left > 0) {
+                        long n = old.transferTo(pos, left, out);
+                        if (n <= 0) throw new IOException("lectura corta del destino en " + pos);
+                        pos += n;
+                        left -= n;
+                    }
+                }
+            }
+        }
+    }
+
+    private static boolean singleLink(Path p) {
+        try {
+            Object links = Files.getAttribute(p, "unix:nlink");
+            return links instanceof Integer i && i == 1;
+        } catch (IOException | UnsupportedOperationException | IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private static byte[] digest(MessageDigest md, ByteBuffer buf, int off, int len) {
+        md.reset();
+        md.update(buf.slice(off, len));
+        return md.digest();
+    }
+
+    private static MessageDigest md5() throws IOException {
+        try {
+            return MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException("MD5 no disponible", e);
+        }
+    }
+}
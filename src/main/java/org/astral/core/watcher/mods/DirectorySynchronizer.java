@@ -1,188 +1,413 @@
 package org.astral.core.watcher.mods;
 
+import org.astral.core.config.Config;
+import org.astral.core.updates.util.HashUtils;
+import org.astral.core.watcher.QuiescenceDetector;
 import org.jetbrains.annotations.NotNull;
 
 import java.io.IOException;
 import java.nio.file.*;
 import java.nio.file.attribute.BasicFileAttributes;
-import java.util.HashMap;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 public final class DirectorySynchronizer {
 
     private static final long DEST_SUPPRESS_MILLIS = 1200L;
 
+    private static volatile Config.Sync settings = new Config.Sync();
+    private static volatile Path preferredRoot;
+
     private DirectorySynchronizer() {}
 
+    public static void configure(Config.Sync sync) {
+        if (sync != null) settings = sync;
+    }
+
+    /* Al arrancar, antes de cualquier watcher: rehace las operaciones que quedaron a medias. */
+    public static int recoverJournal() {
+        return SyncJournal.shared().recover();
+    }
+
+    static Config.Sync settings() {
+        return settings;
+    }
+
+    public static Path stateDir() {
+        String raw = settings.stateDir == null || settings.stateDir.isBlank() ? ".sync-core" : settings.stateDir;
+        Path p = Path.of(raw);
+        return p.isAbsolute() ? p : Path.of(System.getProperty("user.dir")).resolve(p);
+    }
+
+    /*
+     * Para escritores externos (replicación): temporal junto a dest que los watchers ignoran.
+     * commitTemp lo coloca con rename atómico; ese rename sí lo ven los watchers, así que el
+     * archivo sigue el camino normal (localMods -> servidor, reinicio escalonado).
+     */
+    public static Path tempFor(Path dest) throws IOException {
+        ensureParentDirectory(dest);
+        return FileCopier.tempSibling(dest);
+    }
+
+    public static void commitTemp(Path tmp, Path dest) throws IOException {
+        FileCopier.moveIntoPlace(tmp, dest);
+        Durability.track(dest);
+    }
+
+    /* Deja target igual que source (copia lo cambiado y borra lo que sobra). */
     public static void replaceSync(Path source, Path target) throws IOException {
-        if (!Files.exists(source)) {
-            if (Files.exists(target)) {
-                deleteChildren(target);
-            } else {
-                Files.createDirectories(target);
-            }
-            return;
+        SyncManifest manifest = SyncManifest.forPair(source, target);
+        try {
+            syncTree(source, target, manifest, "", true, true);
+        } finally {
+            manifest.save();
         }
+    }
 
-        if (!Files.exists(target)) {
-            Files.createDirectories(target);
+    /* Subárbol de un par ya abierto: las entradas van al manifiesto del par con prefix delante. */
+    static void mirrorSubtree(Path srcRoot, Path dstRoot, SyncManifest manifest, String prefix) throws IOException {
+        syncTree(srcRoot, dstRoot, manifest, prefix, true, true);
+    }
+
+    /* Copia el contenido de source a target sin borrar nada extra en target. */
+    public static void copyTopLevelContents(Path source, Path target) throws IOException {
+        if (!Files.exists(source)) return;
+
+        SyncManifest manifest = SyncManifest.forPair(source, target);
+        try {
+            syncTree(source, target, manifest, "", false, false);
+        } finally {
+            manifest.save();
         }
+    }
+
+    /* =========================
+       SINCRONIZACIÓN INCREMENTAL
+       - se escanean metadatos de ambos lados y solo se tocan las diferencias
+       - el manifiesto guarda lo que quedó escrito en el destino
+       ========================= */
 
-        deleteChildren(target);
-        copyTreeSafe(source, target);
+    record Meta(long size, long mtime, boolean dir) {}
+
+    private static final class Stats {
+        int copied, unchanged, touched, deleted, failed;
+        final AtomicLong deltaSaved = new AtomicLong();
     }
 
-    private static void deleteChildren(Path target) throws IOException {
-        if (!Files.exists(target)) return;
+    /* op: índice de la operación en el lote del journal (-1 sin journal). */
+    private record CopyTask(Path src, Path dest, String key, int op) {}
 
-        Files.walkFileTree(target, new SimpleFileVisitor<>() {
-            @Override
-            public @NotNull FileVisitResult visitFile(@NotNull Path file, @NotNull BasicFileAttributes attrs) {
-                try {
-                    WatchEventSuppressor.suppress(file, DEST_SUPPRESS_MILLIS);
-                    Files.deleteIfExists(file);
-                } catch (IOException e) {
-                    System.err.println("[SYNC] No se pudo borrar archivo " + file + ": " + e.getMessage());
-                }
-                return FileVisitResult.CONTINUE;
-            }
+    private static void syncTree(Path srcRoot, Path dstRoot, SyncManifest manifest,
+                                 String prefix, boolean mirror, boolean waitStable) throws IOException {
+        long start = System.currentTimeMillis();
+        Stats stats = new Stats();
 
-            @Override
-            public @NotNull FileVisitResult postVisitDirectory(@NotNull Path dir, IOException exc) {
-                if (!dir.equals(target)) {
-                    try {
-                        WatchEventSuppressor.suppress(dir, DEST_SUPPRESS_MILLIS);
-                        Files.deleteIfExists(dir);
-                    } catch (IOException e) {
-                        System.err.println("[SYNC] No se pudo borrar dir " + dir + ": " + e.getMessage());
-                    }
-                }
-                return FileVisitResult.CONTINUE;
+        if (!Files.exists(srcRoot)) {
+            if (!mirror) return;
+            if (!Files.exists(dstRoot)) {
+                Files.createDirectories(dstRoot);
+                return;
             }
-        });
-    }
+        } else if (Files.exists(dstRoot) && !Files.isDirectory(dstRoot)) {
+            WatchEventSuppressor.suppress(dstRoot, DEST_SUPPRESS_MILLIS);
+            Files.deleteIfExists(dstRoot);
+        }
 
-    /* Versión segura y lenta (con waits) - se mantiene por compatibilidad */
-    static void copyTreeSafe(Path source, Path target) throws IOException {
-        if (!Files.exists(source)) return;
+        if (!Files.exists(dstRoot)) {
+            WatchEventSuppressor.suppress(dstRoot, DEST_SUPPRESS_MILLIS);
+            Durability.createDirectories(dstRoot);
+        }
 
-        Files.walkFileTree(source, new SimpleFileVisitor<>() {
+        TreeMap<String, Meta> src = scan(srcRoot);
+        TreeMap<String, Meta> dst = scan(dstRoot);
+        List<CopyTask> copies = new ArrayList<>();
 
-            @Override
-            public @NotNull FileVisitResult preVisitDirectory(@NotNull Path dir, @NotNull BasicFileAttributes attrs) {
-                Path rel = source.relativize(dir);
-                Path destDir = target.resolve(rel);
-                try {
-                    if (!Files.exists(destDir)) {
-                        WatchEventSuppressor.suppress(destDir, DEST_SUPPRESS_MILLIS);
-                        Files.createDirectories(destDir);
+        // orden ascendente: cada directorio se crea antes que su contenido;
+        // los archivos se copian después, en paralelo
+        for (Map.Entry<String, Meta> e : src.entrySet()) {
+            String rel = e.getKey();
+            Meta s = e.getValue();
+            Meta d = dst.get(rel);
+            Path srcPath = srcRoot.resolve(rel);
+            Path dstPath = dstRoot.resolve(rel);
+            String key = prefix.isEmpty() ? rel : prefix + "/" + rel;
+
+            try {
+                if (s.dir()) {
+                    if (d != null && !d.dir()) {
+                        WatchEventSuppressor.suppress(dstPath, DEST_SUPPRESS_MILLIS);
+                        Files.deleteIfExists(dstPath);
+                        d = null;
                     }
-                } catch (IOException e) {
-                    System.err.println("[SYNC] No se pudo crear dir " + destDir + ": " + e.getMessage());
+                    if (d == null) {
+                        WatchEventSuppressor.suppress(dstPath, DEST_SUPPRESS_MILLIS);
+                        Durability.createDirectories(dstPath);
+                        EchoGuard.createdDir(dstPath);
+                    }
+                    continue;
                 }
-                return FileVisitResult.CONTINUE;
-            }
 
-            @Override
-            public @NotNull FileVisitResult visitFile(@NotNull Path file,
-                                                      @NotNull BasicFileAttributes attrs) {
-                Path rel = source.relativize(file);
-                Path dest = target.resolve(rel);
+                if (d != null && d.dir()) {
+                    deleteRecursivelyIfExists(dstPath);
+                    d = null;
+                }
 
-                try {
-                    ensureParentDirectory(dest);
-                    WatchEventSuppressor.suppress(dest, DEST_SUPPRESS_MILLIS);
-                    waitForStableFileQuiet(file);
-                    Files.copy(file, dest,
-                            StandardCopyOption.REPLACE_EXISTING,
-                            StandardCopyOption.COPY_ATTRIBUTES);
-                } catch (NoSuchFileException nsf) {
-                    System.err.println("[SYNC] Archivo desapareció antes de copiar: " + file);
-                } catch (IOException e) {
-                    System.err.println("[SYNC] Error copiando " + file + " -> " + dest + ": " + e.getMessage());
+                if (d != null && d.size() == s.size() && d.mtime() == s.mtime()) {
+                    stats.unchanged++;
+                    SyncManifest.Entry prev = manifest.get(key);
+                    if (prev == null || prev.size() != s.size() || prev.mtime() != s.mtime()) {
+                        manifest.put(key, new SyncManifest.Entry(s.size(), s.mtime(), null));
+                    }
+                    continue;
                 }
 
-                return FileVisitResult.CONTINUE;
+                if (d != null && sameContentAsManifest(manifest.get(key), s, d, srcPath)) {
+                    WatchEventSuppressor.suppress(dstPath, DEST_SUPPRESS_MILLIS);
+                    Files.setLastModifiedTime(dstPath, FileTime.fromMillis(s.mtime()));
+                    SyncManifest.Entry prev = manifest.get(key);
+                    SyncManifest.Entry now = new SyncManifest.Entry(s.size(), s.mtime(), prev.hash());
+                    manifest.put(key, now);
+                    EchoGuard.wrote(dstPath, now);
+                    stats.touched++;
+                    continue;
+                }
+
+                copies.add(new CopyTask(srcPath, dstPath, key, copies.size()));
+
+            } catch (NoSuchFileException nsf) {
+                System.err.println("[SYNC] Archivo desapareció antes de copiar: " + srcPath);
+                stats.failed++;
+            } catch (IOException ex) {
+                System.err.println("[SYNC] Error copiando " + srcPath + " -> " + dstPath + ": " + ex.getMessage());
+                stats.failed++;
             }
+        }
 
-            @Override
-            public @NotNull FileVisitResult visitFileFailed(@NotNull Path file, @NotNull IOException exc) {
-                System.err.println("[SYNC] visitFileFailed " + file + ": " + exc.getMessage());
-                return FileVisitResult.CONTINUE;
+        // sobrantes en orden descendente: el contenido antes que su directorio
+        List<Map.Entry<String, Meta>> extra = new ArrayList<>();
+        if (mirror) {
+            for (Map.Entry<String, Meta> e : dst.descendingMap().entrySet()) {
+                if (!src.containsKey(e.getKey())) extra.add(e);
             }
-        });
+        }
+
+        // directorios sobrantes enteros: un rename a la papelera, sin recorrer su contenido
+        List<String> trashed = new ArrayList<>();
+        for (int i = extra.size() - 1; i >= 0; i--) {
+            Map.Entry<String, Meta> e = extra.get(i);
+            if (!e.getValue().dir() || within(trashed, e.getKey())) continue;
+            if (Trash.discard(dstRoot.resolve(e.getKey()))) trashed.add(e.getKey());
+        }
+
+        // una sola espera (y un solo recorrido de /proc) para todo el lote, no una por archivo
+        if (waitStable && !copies.isEmpty()) {
+            List<Path> sources = new ArrayList<>(copies.size());
+            for (CopyTask t : copies) sources.add(t.src());
+            waitForStableFilesQuiet(sources);
+        }
+
+        SyncJournal.Batch batch = null;
+        if (!copies.isEmpty() || !extra.isEmpty()) {
+            List<SyncJournal.Op> ops = new ArrayList<>(copies.size() + extra.size());
+            for (CopyTask t : copies) ops.add(new SyncJournal.Op(SyncJournal.Kind.COPY, t.src(), t.dest()));
+            for (Map.Entry<String, Meta> e : extra) {
+                // lo que ya está en la papelera no necesita journal: el rename fue atómico
+                ops.add(within(trashed, e.getKey())
+                        ? null
+                        : new SyncJournal.Op(SyncJournal.Kind.DEL, dstRoot, dstRoot.resolve(e.getKey())));
+            }
+            batch = SyncJournal.shared().begin(srcRoot + " -> " + dstRoot, ops);
+        }
+        SyncJournal.Batch journal = batch;
+
+        int failedCopies = ParallelCopier.runAll(copies, copyConcurrency(),
+                t -> {
+                    stats.deltaSaved.addAndGet(copyFile(t.src(), t.dest()));
+                    SyncManifest.Entry entry = describe(t.dest());
+                    manifest.put(t.key(), entry);
+                    EchoGuard.wrote(t.dest(), entry);
+                    journal.done(t.op());
+                },
+                DirectorySynchronizer::reportCopyError);
+        stats.copied += copies.size() - failedCopies;
+        stats.failed += failedCopies;
+
+        for (int i = 0; i < extra.size(); i++) {
+            Map.Entry<String, Meta> e = extra.get(i);
+            String rel = e.getKey();
+            Path dstPath = dstRoot.resolve(rel);
+            try {
+                boolean inTrash = within(trashed, rel);
+                if (!inTrash) {
+                    WatchEventSuppressor.suppress(dstPath, DEST_SUPPRESS_MILLIS);
+                    Files.deleteIfExists(dstPath);
+                    EchoGuard.deleted(dstPath);
+                }
+                manifest.remove(prefix.isEmpty() ? rel : prefix + "/" + rel);
+                if (!e.getValue().dir()) stats.deleted++;
+                if (!inTrash) journal.done(copies.size() + i);
+            } catch (IOException ex) {
+                System.err.println("[SYNC] No se pudo borrar " + dstPath + ": " + ex.getMessage());
+                stats.failed++;
+            }
+        }
+
+        // lo que falló ya se informó y no dejó nada a medias (las copias van por temporal);
+        // el lote solo se cierra cuando lo copiado ya está en disco
+        Durability.barrier(srcRoot + " -> " + dstRoot);
+        if (journal != null) journal.end();
+
+        if (stats.copied + stats.deleted + stats.touched + stats.failed > 0) {
+            System.out.println("[SYNC] " + srcRoot + " -> " + dstRoot + ": "
+                    + stats.copied + " copiados, "
+                    + stats.deleted + " borrados, "
+                    + stats.touched + " solo mtime, "
+                    + stats.unchanged + " sin cambios"
+                    + (stats.failed > 0 ? ", " + stats.failed + " errores" : "")
+                    + (stats.deltaSaved.get() > 0 ? ", " + (stats.deltaSaved.get() / (1024 * 1024)) + " MB sin reescribir por delta" : "")
+                    + " (" + (System.currentTimeMillis() - start) + " ms)");
+        }
     }
 
-    private static void ensureParentDirectory(@NotNull Path dest) throws IOException {
-        Path parent = dest.getParent();
-        if (parent != null && !Files.exists(parent)) {
-            WatchEventSuppressor.suppress(parent, DEST_SUPPRESS_MILLIS);
-            Files.createDirectories(parent);
+    private static void reportCopyError(CopyTask t, IOException e) {
+        if (e instanceof NoSuchFileException) {
+            System.err.println("[SYNC] Archivo desapareció antes de copiar: " + t.src());
+        } else {
+            System.err.println("[SYNC] Error copiando " + t.src() + " -> " + t.dest() + ": " + e.getMessage());
         }
     }
 
+    static int copyConcurrency() {
+        return Math.max(1, settings.copyConcurrency);
+    }
 
-    public static void copyTopLevelContents(Path source, Path target) throws IOException {
-        if (!Files.exists(source)) return;
+    /* Copia completa sin manifiesto ni borrados (benchmark y staging); nunca con enlaces duros. */
+    static int copyTree(Path srcRoot, Path dstRoot, int concurrency) throws IOException {
+        TreeMap<String, Meta> src = scan(srcRoot);
+        List<CopyTask> copies = new ArrayList<>();
+        Durability.createDirectories(dstRoot);
+        for (Map.Entry<String, Meta> e : src.entrySet()) {
+            Path dest = dstRoot.resolve(e.getKey());
+            if (e.getValue().dir()) Durability.createDirectories(dest);
+            else copies.add(new CopyTask(srcRoot.resolve(e.getKey()), dest, e.getKey(), -1));
+        }
+        int failed = ParallelCopier.runAll(copies, concurrency,
+                t -> {
+                    ensureParentDirectory(t.dest());
+                    WatchEventSuppressor.suppress(t.dest(), DEST_SUPPRESS_MILLIS);
+                    FileCopier.copy(t.src(), t.dest(), false);
+                    Durability.track(t.dest());
+                },
+                DirectorySynchronizer::reportCopyError);
+        return copies.size() - failed;
+    }
 
-        if (!Files.exists(target)) Files.createDirectories(target);
+    /* Con manifestHashes: un archivo reescrito con el mismo contenido (p.ej. rebuild idéntico) no se recopia. */
+    private static boolean sameContentAsManifest(SyncManifest.Entry prev, Meta s, Meta d, Path srcPath) {
+        if (!settings.manifestHashes || prev == null || prev.hash() == null) return false;
+        if (prev.size() != d.size() || prev.mtime() != d.mtime()) return false;
+        if (s.size() != prev.size()) return false;
+        try {
+            return prev.hash().equalsIgnoreCase(HashUtils.sha256OfFile(srcPath));
+        } catch (Exception e) {
+            return false;
+        }
+    }
 
-        try (DirectoryStream<Path> children = Files.newDirectoryStream(source)) {
-            for (Path child : children) {
-                Path dest = target.resolve(child.getFileName());
-                try {
-                    WatchEventSuppressor.suppress(dest, DEST_SUPPRESS_MILLIS);
+    static @NotNull SyncManifest.Entry describe(Path dest) throws IOException {
+        BasicFileAttributes a = Files.readAttributes(dest, BasicFileAttributes.class);
+        String hash = null;
+        if (settings.manifestHashes) {
+            try {
+                hash = HashUtils.sha256OfFile(dest);
+            } catch (Exception e) {
+                System.err.println("[SYNC] No se pudo calcular hash de " + dest + ": " + e.getMessage());
+            }
+        }
+        return new SyncManifest.Entry(a.size(), a.lastModifiedTime().toMillis(), hash);
+    }
 
-                    if (Files.isDirectory(child)) {
-                        copyTreeFast(child, dest);
-                    } else {
-                        if (dest.getParent() != null && !Files.exists(dest.getParent())) {
-                            Files.createDirectories(dest.getParent());
-                        }
-                        Files.copy(child, dest,
-                                StandardCopyOption.REPLACE_EXISTING,
-                                StandardCopyOption.COPY_ATTRIBUTES);
-                    }
-                } catch (IOException e) {
-                    System.err.println("[SYNC FAST] Error copiando " + child + " -> " + dest + ": " + e.getMessage());
+    /* Devuelve los bytes que la copia delta no tuvo que escribir (0 en copia completa). */
+    static long copyFile(Path src, Path dest) throws IOException {
+        ensureParentDirectory(dest);
+        WatchEventSuppressor.suppress(dest, DEST_SUPPRESS_MILLIS);
+
+        if (DeltaCopier.applies(src, dest)) {
+            try {
+                DeltaCopier.Result r = DeltaCopier.copy(src, dest);
+                if (r.saved() > 0) {
+                    System.out.println("[SYNC] Delta " + dest.getFileName() + ": "
+                            + (r.written() / 1024) + " KB escritos, " + (r.saved() / 1024) + " KB reutilizados");
                 }
+                Durability.track(dest);
+                return r.saved();
+            } catch (IOException e) {
+                System.err.println("[SYNC] Delta falló para " + dest + " (" + e.getMessage() + "), copia completa.");
             }
         }
-    }
 
+        FileCopier.copy(src, dest);
+        Durability.track(dest);
+        return 0L;
+    }
 
-    private static void copyTreeFast(Path source, Path target) throws IOException {
-        if (!Files.exists(source)) return;
+    static @NotNull TreeMap<String, Meta> scan(Path root) throws IOException {
+        TreeMap<String, Meta> out = new TreeMap<>();
+        if (!Files.isDirectory(root)) return out;
 
-        Files.walkFileTree(source, new SimpleFileVisitor<>() {
+        Files.walkFileTree(root, new SimpleFileVisitor<>() {
             @Override
-            public @NotNull FileVisitResult preVisitDirectory(@NotNull Path dir, @NotNull BasicFileAttributes attrs) throws IOException {
-                Path rel = source.relativize(dir);
-                Path destDir = target.resolve(rel);
-                if (!Files.exists(destDir)) {
-                    Files.createDirectories(destDir);
+            public @NotNull FileVisitResult preVisitDirectory(@NotNull Path dir, @NotNull BasicFileAttributes attrs) {
+                if (!dir.equals(root)) {
+                    Path rel = root.relativize(dir);
+                    if (PathFilter.skipInSync(rel)) return FileVisitResult.SKIP_SUBTREE;
+                    out.put(SyncManifest.key(rel), new Meta(0L, 0L, true));
                 }
                 return FileVisitResult.CONTINUE;
             }
 
             @Override
-            public @NotNull FileVisitResult visitFile(@NotNull Path file, @NotNull BasicFileAttributes attrs) throws IOException {
-                Path rel = source.relativize(file);
-                Path dest = target.resolve(rel);
-                if (dest.getParent() != null && !Files.exists(dest.getParent())) {
-                    Files.createDirectories(dest.getParent());
+            public @NotNull FileVisitResult visitFile(@NotNull Path file, @NotNull BasicFileAttributes attrs) {
+                // temporales (propios, de descargas, de editores) y marcadores de build: ni se copian ni se borran
+                if (PathFilter.skipInSync(root.relativize(file))) return FileVisitResult.CONTINUE;
+                BasicFileAttributes a = attrs;
+                if (a.isSymbolicLink()) {
+                    try {
+                        a = Files.readAttributes(file, BasicFileAttributes.class);
+                    } catch (IOException e) {
+                        return FileVisitResult.CONTINUE;
+                    }
                 }
-                // copia sin waits ni suppress por cada archivo (sólo el root se suprime arriba)
-                Files.copy(file, dest, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.COPY_ATTRIBUTES);
+                out.put(SyncManifest.key(root.relativize(file)),
+                        new Meta(a.size(), a.lastModifiedTime().toMillis(), false));
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public @NotNull FileVisitResult visitFileFailed(@NotNull Path file, @NotNull IOException exc) {
+                System.err.println("[SYNC] visitFileFailed " + file + ": " + exc.getMessage());
                 return FileVisitResult.CONTINUE;
             }
         });
+
+        return out;
+    }
+
+    private static void ensureParentDirectory(@NotNull Path dest) throws IOException {
+        Path parent = dest.getParent();
+        if (parent != null && !Files.exists(parent)) {
+            WatchEventSuppressor.suppress(parent, DEST_SUPPRESS_MILLIS);
+            Durability.createDirectories(parent);
+        }
     }
 
     /* =========================
-       MÉTODOS AUXILIARES LENTOS (se mantienen por compatibilidad)
-       - waitForStableFileQuiet, waitForStableTreeQuiet
-       - applyEvents y deleteRecursivelyIfExists siguen usando las rutinas antiguas
+       EVENTOS
+       - OVERFLOW ya no borra todo: se resuelve con un escaneo de metadatos
        ========================= */
 
     public static void applyEvents(Path source, Path target, java.util.List<WatchEvent<?>> events) throws IOException {
@@ -190,58 +415,158 @@ public final class DirectorySynchronizer {
             Files.createDirectories(target);
         }
 
-        for (WatchEvent<?> ev : events) {
-            WatchEvent.Kind<?> kind = ev.kind();
+        SyncManifest manifest = SyncManifest.forPair(source, target);
 
-            if (kind == StandardWatchEventKinds.OVERFLOW) {
-                replaceSync(source, target);
-                return;
+        // los archivos del lote se esperan juntos; los directorios nuevos, cada uno con su subárbol
+        List<Path> touched = new ArrayList<>();
+        for (WatchEvent<?> ev : events) {
+            if (ev.kind() != StandardWatchEventKinds.ENTRY_DELETE && ev.context() instanceof Path relative
+                    && Files.isRegularFile(source.resolve(relative))) {
+                touched.add(source.resolve(relative));
             }
+        }
+        if (!touched.isEmpty()) waitForStableFilesQuiet(touched);
 
-            Object context = ev.context();
-            if (!(context instanceof Path relative)) continue;
+        SyncJournal.Batch journal = journalEvents(source, target, events);
 
-            Path srcPath = source.resolve(relative);
-            Path destPath = target.resolve(relative);
+        try {
+            for (int i = 0; i < events.size(); i++) {
+                WatchEvent<?> ev = events.get(i);
+                WatchEvent.Kind<?> kind = ev.kind();
 
-            try {
-                if (kind == StandardWatchEventKinds.ENTRY_DELETE) {
-                    WatchEventSuppressor.suppress(destPath, DEST_SUPPRESS_MILLIS);
-                    deleteRecursivelyIfExists(destPath);
-                } else if (kind == StandardWatchEventKinds.ENTRY_CREATE ||
-                        kind == StandardWatchEventKinds.ENTRY_MODIFY) {
-
-                    if (Files.exists(srcPath) && Files.isDirectory(srcPath)) {
-                        if (kind == StandardWatchEventKinds.ENTRY_CREATE) {
-                            waitForStableTreeQuiet(srcPath);
-                        }
+                if (kind == StandardWatchEventKinds.OVERFLOW) {
+                    syncTree(source, target, manifest, "", true, true);
+                    return;
+                }
+
+                Object context = ev.context();
+                if (!(context instanceof Path relative)) continue;
+
+                Path srcPath = source.resolve(relative);
+                Path destPath = target.resolve(relative);
+                String key = SyncManifest.key(relative);
+
+                try {
+                    if (kind == StandardWatchEventKinds.ENTRY_DELETE) {
                         WatchEventSuppressor.suppress(destPath, DEST_SUPPRESS_MILLIS);
-                        replaceSync(srcPath, destPath);
-                    } else {
-                        if (Files.exists(srcPath)) {
-                            waitForStableFileQuiet(srcPath);
-                            ensureParentDirectory(destPath);
+                        deleteRecursivelyIfExists(destPath);
+                        manifest.remove(key);
+                    } else if (kind == StandardWatchEventKinds.ENTRY_CREATE ||
+                            kind == StandardWatchEventKinds.ENTRY_MODIFY) {
+
+                        if (Files.exists(srcPath) && Files.isDirectory(srcPath)) {
+                            if (kind == StandardWatchEventKinds.ENTRY_CREATE) {
+                                waitForStableTreeQuiet(srcPath);
+                            }
                             WatchEventSuppressor.suppress(destPath, DEST_SUPPRESS_MILLIS);
-                            Files.copy(srcPath, destPath,
-                                    StandardCopyOption.REPLACE_EXISTING,
-                                    StandardCopyOption.COPY_ATTRIBUTES);
+                            syncTree(srcPath, destPath, manifest, key, true, true);
+                        } else if (Files.exists(srcPath)) {
+                            if (isSameFile(srcPath, destPath)) continue;
+                            if (!sourceWins(srcPath, destPath, manifest.get(key))) continue;
+                            copyFile(srcPath, destPath);
+                            SyncManifest.Entry entry = describe(destPath);
+                            manifest.put(key, entry);
+                            EchoGuard.wrote(destPath, entry);
                         }
                     }
+                } catch (Exception e) {
+                    System.err.println("[SYNC] Error aplicando evento " + kind + " " + relative + ": " + e.getMessage());
+                } finally {
+                    // también si se descartó (conflicto, sin cambios): no hay que rehacerlo
+                    journal.done(i);
                 }
-            } catch (Exception e) {
-                System.err.println("[SYNC] Error aplicando evento " + kind + " " + relative + ": " + e.getMessage());
             }
+        } finally {
+            manifest.save();
+            Durability.barrier(source + " -> " + target);
+            journal.end();
         }
     }
 
-    private static void deleteRecursivelyIfExists(Path path) throws IOException {
+    /* Una operación por evento (índice = posición del evento); los directorios los registra syncTree. */
+    private static SyncJournal.Batch journalEvents(Path source, Path target, List<WatchEvent<?>> events) {
+        List<SyncJournal.Op> ops = new ArrayList<>(events.size());
+        for (WatchEvent<?> ev : events) {
+            SyncJournal.Op op = null;
+            if (ev.context() instanceof Path relative && ev.kind() != StandardWatchEventKinds.OVERFLOW) {
+                Path srcPath = source.resolve(relative);
+                Path destPath = target.resolve(relative);
+                if (ev.kind() == StandardWatchEventKinds.ENTRY_DELETE) {
+                    op = new SyncJournal.Op(SyncJournal.Kind.DEL, target, destPath);
+                } else if (Files.isRegularFile(srcPath)) {
+                    op = new SyncJournal.Op(SyncJournal.Kind.COPY, srcPath, destPath);
+                }
+            }
+            ops.add(op); // null = nada que registrar para este evento
+        }
+        return SyncJournal.shared().begin(source + " -> " + target + " (eventos)", ops);
+    }
+
+    private static boolean isSameFile(Path src, Path dest) {
+        try {
+            BasicFileAttributes s = Files.readAttributes(src, BasicFileAttributes.class);
+            BasicFileAttributes d = Files.readAttributes(dest, BasicFileAttributes.class);
+            return !d.isDirectory()
+                    && s.size() == d.size()
+                    && s.lastModifiedTime().toMillis() == d.lastModifiedTime().toMillis();
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /*
+     * Regla de conflicto cuando origen y destino cambiaron desde la última sincronización:
+     * gana el mtime más reciente; en empate gana el lado local (preferredRoot).
+     * Si el destino sigue como lo dejamos, no hay conflicto y el origen se copia.
+     */
+    static boolean sourceWins(Path src, Path dest, SyncManifest.Entry lastSynced) {
+        try {
+            if (!Files.exists(dest) || Files.isDirectory(dest)) return true;
+            BasicFileAttributes d = Files.readAttributes(dest, BasicFileAttributes.class);
+            long destMtime = d.lastModifiedTime().toMillis();
+            if (lastSynced != null && lastSynced.size() == d.size() && lastSynced.mtime() == destMtime) {
+                return true;
+            }
+
+            long srcMtime = Files.getLastModifiedTime(src).toMillis();
+            boolean wins = srcMtime > destMtime
+                    || (srcMtime == destMtime && isPreferred(src));
+            System.out.println("[SYNC] Conflicto en " + dest.getFileName() + ": ambos lados cambiaron, gana "
+                    + (wins ? "origen " + src : "destino " + dest)
+                    + (srcMtime == destMtime ? " (mismo mtime, prioridad local)" : " (más reciente)"));
+            return wins;
+        } catch (IOException e) {
+            return true;
+        }
+    }
+
+    static void setPreferredRoot(Path root) {
+        preferredRoot = root == null ? null : root.toAbsolutePath().normalize();
+    }
+
+    private static boolean isPreferred(Path p) {
+        Path root = preferredRoot;
+        return root != null && p.toAbsolutePath().normalize().startsWith(root);
+    }
+
+    /* ¿rel es uno de dirs o está debajo de alguno? (claves con '/') */
+    private static boolean within(List<String> dirs, String rel) {
+        for (String d : dirs) {
+            if (rel.equals(d) || (rel.length() > d.length() && rel.charAt(d.length()) == '/' && rel.startsWith(d))) return true;
+        }
+        return false;
+    }
+
+    static void deleteRecursivelyIfExists(Path path) throws IOException {
         if (!Files.exists(path)) return;
+        if (Trash.discard(path)) return;
         Files.walkFileTree(path, new SimpleFileVisitor<>() {
             @Override
             public @NotNull FileVisitResult visitFile(@NotNull Path file, @NotNull BasicFileAttributes attrs) {
                 try {
                     WatchEventSuppressor.suppress(file, DEST_SUPPRESS_MILLIS);
                     Files.deleteIfExists(file);
+                    EchoGuard.deleted(file);
                 } catch (IOException ignored) {}
                 return FileVisitResult.CONTINUE;
             }
@@ -251,6 +576,7 @@ public final class DirectorySynchronizer {
                 try {
                     WatchEventSuppressor.suppress(dir, DEST_SUPPRESS_MILLIS);
                     Files.deleteIfExists(dir);
+                    EchoGuard.deleted(dir);
                 } catch (IOException ignored) {}
                 return FileVisitResult.CONTINUE;
             }
@@ -258,113 +584,22 @@ public final class DirectorySynchronizer {
     }
 
     /* =========================
-       Métodos de espera (se mantienen, no usados por copyTopLevelContents)
+       Esperas: delegan en el detector de reposo alimentado por los eventos
        ========================= */
 
-    @SuppressWarnings("BusyWait")
-    private static void waitForStableFileQuiet(Path file) {
-        if (file == null || !Files.exists(file)) return;
-
-        long start = System.currentTimeMillis();
-        long stableStart;
-        long prevSize;
-
-        try {
-            prevSize = Files.size(file);
-            stableStart = System.currentTimeMillis();
-        } catch (IOException e) {
-            return;
-        }
-
-        while (true) {
-            if (Thread.currentThread().isInterrupted()) return;
-
-            try { Thread.sleep(200L); }
-            catch (InterruptedException ex) { Thread.currentThread().interrupt(); return; }
-
-            long now = System.currentTimeMillis();
-            long curSize;
-
-            try {
-                if (!Files.exists(file)) return;
-                curSize = Files.size(file);
-            } catch (IOException ex) {
-                return;
-            }
-
-            if (curSize == prevSize) {
-                if (now - stableStart >= 500L) return;
-            } else {
-                prevSize = curSize;
-                stableStart = now;
-            }
-
-            if (now - start > 5000L) return;
-        }
+    private static void waitForStableFilesQuiet(List<Path> files) {
+        QuiescenceDetector.shared().awaitQuietAll(files, quietMillis(), 15000L);
     }
 
-    @SuppressWarnings("BusyWait")
     private static void waitForStableTreeQuiet(Path dir) {
-        if (dir == null || !Files.exists(dir)) return;
-
-        long start = System.currentTimeMillis();
-        Map<Path, Long> lastSizes = new HashMap<>();
-        Map<Path, Long> lastChange = new HashMap<>();
-
-        try (var walk = Files.walk(dir)) {
-            walk.filter(Files::isRegularFile).forEach(p -> {
-                try {
-                    Path rel = dir.relativize(p);
-                    long size = Files.size(p);
-                    lastSizes.put(rel, size);
-                    lastChange.put(rel, start - 1000L);
-                } catch (IOException ignored) {}
-            });
-        } catch (IOException ignored) {}
-
-        while (true) {
-            if (Thread.currentThread().isInterrupted()) return;
-
-            try { Thread.sleep(300L); }
-            catch (InterruptedException ex) { Thread.currentThread().interrupt(); return; }
-
-            long now = System.currentTimeMillis();
-            Map<Path, Long> curr = new HashMap<>();
-
-            try (var walk = Files.walk(dir)) {
-                walk.filter(Files::isRegularFile).forEach(p -> {
-                    try {
-                        Path rel = dir.relativize(p);
-                        long size = Files.size(p);
-                        curr.put(rel, size);
-                    } catch (IOException ignored) {}
-                });
-            } catch (IOException ignored) {}
-
-            lastSizes.keySet().removeIf(k -> !curr.containsKey(k));
-            lastChange.keySet().removeIf(k -> !curr.containsKey(k));
-
-            for (var e : curr.entrySet()) {
-                Path name = e.getKey();
-                long size = e.getValue();
-                Long prev = lastSizes.get(name);
-                if (prev == null || prev != size) {
-                    lastSizes.put(name, size);
-                    lastChange.put(name, now);
-                }
-            }
+        QuiescenceDetector.shared().awaitQuiet(dir, quietMillis(), 15000L);
+    }
 
-            boolean allStable = true;
-            for (var e : lastSizes.entrySet()) {
-                long changedAt = lastChange.getOrDefault(e.getKey(), 0L);
-                if (now - changedAt < 1000L) {
-                    allStable = false;
-                    break;
-                }
-            }
+    static long quietMillis() {
+        return Math.max(0, settings.quietMillis);
+    }
 
-            if (allStable) return;
-            if (now - start > 15000L) return;
-        }
+    static long debounceMillis() {
+        return Math.max(0, settings.debounceMillis);
     }
-}
\ No newline at end of file
+}
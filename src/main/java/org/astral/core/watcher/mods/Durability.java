@@ -0,0 +1,171 @@
+package org.astral.core.watcher.mods;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/*
+ * Durabilidad de lo que escribe la sincronización (sync.durability):
+ *   none   -> sin fsync (comportamiento original; un corte de luz puede dejar jars de 0 bytes)
+ *   batch  -> cada archivo copiado y su directorio se apuntan, y al final de cada lote (antes de
+ *             cerrarlo en el journal y antes de arrancar el servidor) se hace una única barrera:
+ *             fsync en paralelo de todos los archivos y después de sus directorios
+ *   always -> fsync de cada archivo y su directorio nada más copiarlo (para comparar)
+ * La barrera está serializada: quien la pasa sabe que lo suyo ya está en disco, aunque lo haya
+ * vaciado otra sincronización concurrente.
+ */
+public final class Durability {
+
+    enum Mode {
+        NONE, BATCH, ALWAYS;
+
+        static Mode parse(String raw) {
+            if (raw == null) return BATCH;
+            try {
+                return Mode.valueOf(raw.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                System.err.println("[SYNC] durability desconocido '" + raw + "', usando batch.");
+                return BATCH;
+            }
+        }
+    }
+
+    private static final long SLOW_BARRIER_MILLIS = 250L;
+
+    private static final Set<Path> files = ConcurrentHashMap.newKeySet();
+    private static final Set<Path> dirs = ConcurrentHashMap.newKeySet();
+    // ReentrantLock y no synchronized: quien la tiene espera a hilos virtuales (fsync en paralelo)
+    // y un monitor fijaría su hilo portador
+    private static final ReentrantLock barrierLock = new ReentrantLock();
+
+    private static final AtomicLong barriers = new AtomicLong();
+    private static final AtomicLong syncedFiles = new AtomicLong();
+    private static final AtomicLong syncedDirs = new AtomicLong();
+    private static final AtomicLong failures = new AtomicLong();
+    private static final AtomicLong fsyncNanos = new AtomicLong();
+    private static volatile long maxBarrierMillis;
+    private static volatile boolean dirSyncUnsupported;
+
+    private Durability() {}
+
+    static Mode mode() {
+        return Mode.parse(DirectorySynchronizer.settings().durability);
+    }
+
+    /* Archivo recién colocado en dest: su contenido y la entrada en el directorio padre. */
+    static void track(@NotNull Path file) {
+        Mode mode = mode();
+        if (mode == Mode.NONE) return;
+        Path abs = file.toAbsolutePath().normalize();
+        Path parent = abs.getParent();
+        if (mode == Mode.ALWAYS) {
+            long start = System.nanoTime();
+            fsync(abs, false);
+            if (parent != null) fsync(parent, true);
+            fsyncNanos.addAndGet(System.nanoTime() - start);
+            return;
+        }
+        files.add(abs);
+        if (parent != null) dirs.add(parent);
+    }
+
+    /* Rename hacia dir (commit de staging): basta con la entrada del directorio. */
+    static void trackDir(@NotNull Path dir) {
+        Mode mode = mode();
+        if (mode == Mode.NONE) return;
+        Path abs = dir.toAbsolutePath().normalize();
+        if (mode == Mode.ALWAYS) {
+            long start = System.nanoTime();
+            fsync(abs, true);
+            fsyncNanos.addAndGet(System.nanoTime() - start);
+            return;
+        }
+        dirs.add(abs);
+    }
+
+    /* Files.createDirectories que además apunta los directorios padre de lo que se creó. */
+    static void createDirectories(@NotNull Path dir) throws IOException {
+        Path abs = dir.toAbsolutePath().normalize();
+        Path existing = abs;
+        while (existing != null && !Files.exists(existing)) existing = existing.getParent();
+        Files.createDirectories(abs);
+        if (existing == null || existing.equals(abs)) return;
+        for (Path p = abs; p != null && !p.equals(existing); p = p.getParent()) {
+            if (p.getParent() != null) trackDir(p.getParent());
+        }
+    }
+
+    /* Fin de lote: todo lo apuntado hasta ahora queda en disco al volver. */
+    public static void barrier(@NotNull String label) {
+        if (mode() == Mode.NONE) return;
+        // sin atajo fuera del lock: con los conjuntos vacíos puede haber otra barrera haciendo fsync de lo nuestro
+        barrierLock.lock();
+        try {
+            List<Path> f = drain(files);
+            List<Path> d = drain(dirs);
+            if (f.isEmpty() && d.isEmpty()) return;
+
+            long start = System.nanoTime();
+            // los archivos en paralelo; los directorios después, para que la entrada apunte a datos ya escritos
+            ParallelCopier.runAll(f, DirectorySynchronizer.copyConcurrency(), p -> fsync(p, false), (p, e) -> {});
+            for (Path dir : d) fsync(dir, true);
+            long nanos = System.nanoTime() - start;
+
+            barriers.incrementAndGet();
+            fsyncNanos.addAndGet(nanos);
+            long millis = nanos / 1_000_000;
+            if (millis > maxBarrierMillis) maxBarrierMillis = millis;
+            if (millis >= SLOW_BARRIER_MILLIS) {
+                System.out.println("[SYNC] fsync de " + label + ": " + f.size() + " archivos, "
+                        + d.size() + " directorios en " + millis + " ms");
+            }
+        } finally {
+            barrierLock.unlock();
+        }
+    }
+
+    private static List<Path> drain(Set<Path> set) {
+        List<Path> out = new ArrayList<>();
+        for (Path p : set) {
+            if (set.remove(p)) out.add(p);
+        }
+        return out;
+    }
+
+    private static void fsync(Path p, boolean dir) {
+        if (dir && dirSyncUnsupported) return;
+        try (FileChannel ch = FileChannel.open(p, StandardOpenOption.READ)) {
+            ch.force(true);
+            (dir ? syncedDirs : syncedFiles).incrementAndGet();
+        } catch (NoSuchFileException e) {
+            // temporal ya renombrado o archivo borrado después: nada que asegurar
+        } catch (IOException e) {
+            if (dir) {
+                // Windows no permite abrir directorios: el rename ya es durable allí
+                if (!dirSyncUnsupported) System.out.println("[SYNC] fsync de directorios no disponible (" + e.getMessage() + ").");
+                dirSyncUnsupported = true;
+            } else {
+                failures.incrementAndGet();
+                System.err.println("[SYNC] No se pudo hacer fsync de " + p + ": " + e.getMessage());
+            }
+        }
+    }
+
+    public static @NotNull String stats() {
+        long n = barriers.get();
+        double ms = fsyncNanos.get() / 1e6;
+        return String.format(Locale.ROOT,
+                "durabilidad %s: %d barreras, %d archivos y %d directorios con fsync, %.1f ms en total (%.2f ms por barrera, máx %d ms), %d errores, %d pendientes",
+                mode().name().toLowerCase(Locale.ROOT), n, syncedFiles.get(), syncedDirs.get(),
+                ms, n == 0 ? 0.0 : ms / n, maxBarrierMillis, failures.get(), files.size());
+    }
+}
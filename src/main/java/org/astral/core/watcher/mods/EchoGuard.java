@@ -0,0 +1,106 @@
+package org.astral.core.watcher.mods;
+
+import org.astral.core.updates.util.HashUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/*
+ * Recuerda el estado (tamaño, mtime, hash si se conoce) que nosotros dejamos en cada destino.
+ * Un evento sobre esa ruta es un eco si el archivo sigue exactamente así, tarde lo que tarde
+ * en llegar el evento. A diferencia de WatchEventSuppressor, no depende de una ventana de tiempo.
+ */
+final class EchoGuard {
+
+    private static final int MAX_ENTRIES = 20_000;
+
+    private record Written(long size, long mtime, String hash, boolean dir, boolean deleted) {}
+
+    private static final Map<Path, Written> written = new LinkedHashMap<>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Path, Written> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+
+    private static long echoes;
+
+    private EchoGuard() {}
+
+    static void wrote(Path dest, SyncManifest.Entry entry) {
+        put(dest, new Written(entry.size(), entry.mtime(), entry.hash(), false, false));
+    }
+
+    static void wrote(Path dest) {
+        try {
+            BasicFileAttributes a = Files.readAttributes(dest, BasicFileAttributes.class);
+            put(dest, new Written(a.size(), a.lastModifiedTime().toMillis(), null, a.isDirectory(), false));
+        } catch (IOException ignored) {}
+    }
+
+    static void createdDir(Path dir) {
+        put(dir, new Written(0L, 0L, null, true, false));
+    }
+
+    static void deleted(Path dest) {
+        put(dest, new Written(0L, 0L, null, false, true));
+    }
+
+    /* true si el estado actual de path es el que escribimos nosotros (el evento no aporta nada). */
+    static boolean isEcho(Path path, WatchEvent.Kind<?> kind) {
+        Path abs = path.toAbsolutePath().normalize();
+        Written w;
+        synchronized (written) {
+            w = written.get(abs);
+        }
+        if (w == null) return false;
+
+        boolean echo;
+        if (kind == StandardWatchEventKinds.ENTRY_DELETE || w.deleted()) {
+            echo = w.deleted() && !Files.exists(abs, LinkOption.NOFOLLOW_LINKS);
+        } else if (w.dir()) {
+            echo = Files.isDirectory(abs);
+        } else {
+            echo = sameFile(abs, w);
+        }
+
+        if (echo) {
+            synchronized (written) {
+                echoes++;
+            }
+        }
+        return echo;
+    }
+
+    static long echoes() {
+        synchronized (written) {
+            return echoes;
+        }
+    }
+
+    private static boolean sameFile(Path abs, Written w) {
+        try {
+            BasicFileAttributes a = Files.readAttributes(abs, BasicFileAttributes.class);
+            if (a.isDirectory() || a.size() != w.size()) return false;
+            if (a.lastModifiedTime().toMillis() == w.mtime()) return true;
+            // mtime tocado sin cambiar el contenido: solo se decide por hash si lo teníamos
+            return w.hash() != null && w.hash().equalsIgnoreCase(HashUtils.sha256OfFile(abs));
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    private static void put(Path p, Written w) {
+        Path abs = p.toAbsolutePath().normalize();
+        synchronized (written) {
+            written.put(abs, w);
+        }
+    }
+}
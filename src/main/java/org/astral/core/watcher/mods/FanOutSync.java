@@ -0,0 +1,280 @@
+package org.astral.core.watcher.mods;
+
+import org.astral.core.updates.util.IoThrottle;
+import org.astral.core.watcher.QuiescenceDetector;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * Un origen sincronizado a varios destinos (Config.Watcher.targets).
+ * - Cada archivo cambiado se lee una sola vez a una copia privada del lote (stateDir/fanout) y todos
+ *   los destinos escriben desde ella (una lectura del origen, N escrituras). Un destino lento no lee
+ *   nunca el origen en vivo: si este se reescribe o trunca, el lote pendiente no se ve afectado.
+ * - Si el origen cambia mientras se copia (tamaño o mtime distintos al terminar) no se usa: el cambio
+ *   trae su propio evento. La copia del lote se borra cuando todos los destinos la han aplicado.
+ * - Cada destino tiene su propio carril serie: los lotes se aplican en orden en cada destino,
+ *   pero un destino lento o caído no frena a los demás; solo acumula lotes pendientes.
+ * - Éxitos, errores y pendientes por destino en "watch stats".
+ * Directorios nuevos y OVERFLOW se resuelven con un escaneo por destino (syncTree).
+ */
+final class FanOutSync {
+
+    private static final long DEST_SUPPRESS_MILLIS = 1200L;
+
+    /* Copia del archivo de origen tomada una vez para todos los destinos. */
+    private record Shared(Path snapshot, long size, FileTime mtime) {}
+
+    private static final AtomicLong batchIds = new AtomicLong(System.currentTimeMillis());
+    private static final AtomicBoolean leftoversCleaned = new AtomicBoolean();
+
+    private static final class Target {
+        final Path dir;
+        final ExecutorService lane;
+        final AtomicInteger backlog = new AtomicInteger();
+        final AtomicLong written = new AtomicLong();
+        final AtomicLong deleted = new AtomicLong();
+        final AtomicLong failed = new AtomicLong();
+        volatile String lastError;
+        volatile long lastBatchMillis;
+
+        Target(Path dir) {
+            this.dir = dir;
+            this.lane = Executors.newSingleThreadExecutor(Thread.ofVirtual().name("FanOut-" + dir.getFileName()).factory());
+        }
+    }
+
+    private final Path source;
+    private final List<Target> targets = new ArrayList<>();
+
+    FanOutSync(@NotNull Path source, @NotNull List<Path> targets) {
+        this.source = source.toAbsolutePath().normalize();
+        for (Path t : targets) this.targets.add(new Target(t.toAbsolutePath().normalize()));
+        // el primer fan-out de la ejecución: lo que quede en stateDir/fanout es de un cierre a medias
+        if (leftoversCleaned.compareAndSet(false, true)) {
+            Path dir = DirectorySynchronizer.stateDir().resolve("fanout");
+            if (Files.isDirectory(dir)) {
+                try (DirectoryStream<Path> ds = Files.newDirectoryStream(dir)) {
+                    for (Path batch : ds) deleteBatch(batch);
+                } catch (IOException e) {
+                    System.err.println("[FANOUT] No se pudo limpiar " + dir + ": " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    List<Path> targets() {
+        return targets.stream().map(t -> t.dir).toList();
+    }
+
+    /* Import inicial: cada destino en su carril. */
+    void importAll() {
+        for (Target t : targets) {
+            submit(t, () -> {
+                DirectorySynchronizer.copyTopLevelContents(source, t.dir);
+                System.out.println("[FANOUT] Import inicial completado: " + source + " -> " + t.dir);
+            });
+        }
+    }
+
+    /* Lee una vez lo que cambió y encola el lote en todos los destinos; no espera a ninguno. */
+    void apply(@NotNull List<WatchEvent<?>> events) {
+        List<Path> changed = new ArrayList<>();
+        for (WatchEvent<?> ev : events) {
+            if (ev.kind() == StandardWatchEventKinds.OVERFLOW || ev.kind() == StandardWatchEventKinds.ENTRY_DELETE) continue;
+            if (ev.context() instanceof Path rel && Files.isRegularFile(source.resolve(rel))) changed.add(rel);
+        }
+        if (!changed.isEmpty()) {
+            QuiescenceDetector.shared().awaitQuietAll(changed.stream().map(source::resolve).toList(),
+                    DirectorySynchronizer.quietMillis(), 15000L);
+        }
+
+        Path batchDir = DirectorySynchronizer.stateDir().resolve("fanout").resolve(String.valueOf(batchIds.incrementAndGet()));
+        Map<Path, Shared> files = new HashMap<>();
+        for (Path rel : changed) {
+            Path src = source.resolve(rel);
+            try {
+                Shared s = snapshot(src, batchDir.resolve(String.valueOf(files.size())));
+                if (s != null) files.put(rel, s);
+            } catch (IOException e) {
+                System.err.println("[FANOUT] No se pudo leer " + src + ": " + e.getMessage());
+            }
+        }
+
+        AtomicInteger remaining = new AtomicInteger(targets.size());
+        for (Target t : targets) {
+            submit(t, () -> {
+                try {
+                    applyTo(t, events, files);
+                } finally {
+                    if (remaining.decrementAndGet() == 0) deleteBatch(batchDir);
+                }
+            });
+        }
+    }
+
+    /* Copia src a to; null si src cambió mientras se leía (tamaño o mtime distintos al terminar). */
+    private static Shared snapshot(Path src, Path to) throws IOException {
+        BasicFileAttributes before = Files.readAttributes(src, BasicFileAttributes.class);
+        Files.createDirectories(to.getParent());
+        try (FileChannel in = FileChannel.open(src, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(to,
+                     StandardOpenOption.CREATE,
+                     StandardOpenOption.TRUNCATE_EXISTING,
+                     StandardOpenOption.WRITE)) {
+            IoThrottle throttle = IoThrottle.shared();
+            long size = in.size();
+            long pos = 0;
+            while (pos < size) {
+                long want = throttle.enabled() ? Math.min(IoThrottle.CHUNK, size - pos) : size - pos;
+                throttle.acquire(want);
+                long n = in.transferTo(pos, want, out);
+                if (n <= 0) break;
+                pos += n;
+            }
+        }
+        BasicFileAttributes after = Files.readAttributes(src, BasicFileAttributes.class);
+        if (after.size() != before.size() || !after.lastModifiedTime().equals(before.lastModifiedTime())
+                || Files.size(to) != before.size()) {
+            Files.deleteIfExists(to);
+            System.out.println("[FANOUT] " + src + " cambió mientras se leía; se aplica con su siguiente evento.");
+            return null;
+        }
+        Files.setLastModifiedTime(to, before.lastModifiedTime());
+        return new Shared(to, before.size(), before.lastModifiedTime());
+    }
+
+    private static void deleteBatch(Path batchDir) {
+        if (!Files.isDirectory(batchDir)) return;
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(batchDir)) {
+            for (Path p : ds) Files.deleteIfExists(p);
+            Files.deleteIfExists(batchDir);
+        } catch (IOException e) {
+            System.err.println("[FANOUT] No se pudo borrar " + batchDir + ": " + e.getMessage());
+        }
+    }
+
+    private void submit(Target t, IoRunnable task) {
+        t.backlog.incrementAndGet();
+        t.lane.execute(() -> {
+            try {
+                task.run();
+            } catch (IOException | RuntimeException | InternalError e) {
+                t.failed.incrementAndGet();
+                t.lastError = e.getMessage();
+                System.err.println("[FANOUT] Error sincronizando " + source + " -> " + t.dir + ": " + e.getMessage());
+            } finally {
+                t.backlog.decrementAndGet();
+            }
+        });
+    }
+
+    private interface IoRunnable {
+        void run() throws IOException;
+    }
+
+    private void applyTo(Target t, List<WatchEvent<?>> events, Map<Path, Shared> files) throws IOException {
+        long start = System.currentTimeMillis();
+        for (WatchEvent<?> ev : events) {
+            if (ev.kind() == StandardWatchEventKinds.OVERFLOW) {
+                DirectorySynchronizer.replaceSync(source, t.dir);
+                t.lastBatchMillis = System.currentTimeMillis() - start;
+                return;
+            }
+        }
+
+        Files.createDirectories(t.dir);
+        SyncManifest manifest = SyncManifest.forPair(source, t.dir);
+        List<SyncJournal.Op> ops = new ArrayList<>(events.size());
+        for (WatchEvent<?> ev : events) {
+            SyncJournal.Op op = null;
+            if (ev.context() instanceof Path rel) {
+                if (ev.kind() == StandardWatchEventKinds.ENTRY_DELETE) {
+                    op = new SyncJournal.Op(SyncJournal.Kind.DEL, t.dir, t.dir.resolve(rel));
+                } else if (files.containsKey(rel)) {
+                    op = new SyncJournal.Op(SyncJournal.Kind.COPY, source.resolve(rel), t.dir.resolve(rel));
+                }
+            }
+            ops.add(op);
+        }
+        SyncJournal.Batch journal = SyncJournal.shared().begin(source + " -> " + t.dir + " (fan-out)", ops);
+
+        try {
+            for (int i = 0; i < events.size(); i++) {
+                WatchEvent<?> ev = events.get(i);
+                if (!(ev.context() instanceof Path rel)) continue;
+                Path dest = t.dir.resolve(rel);
+                String key = SyncManifest.key(rel);
+                try {
+                    if (ev.kind() == StandardWatchEventKinds.ENTRY_DELETE) {
+                        DirectorySynchronizer.deleteRecursivelyIfExists(dest);
+                        manifest.remove(key);
+                        t.deleted.incrementAndGet();
+                    } else if (files.containsKey(rel)) {
+                        write(files.get(rel), dest);
+                        SyncManifest.Entry entry = DirectorySynchronizer.describe(dest);
+                        manifest.put(key, entry);
+                        EchoGuard.wrote(dest, entry);
+                        t.written.incrementAndGet();
+                    } else if (Files.isDirectory(source.resolve(rel))) {
+                        // mismo manifiesto que los archivos sueltos: las claves del subárbol llevan rel delante
+                        DirectorySynchronizer.mirrorSubtree(source.resolve(rel), dest, manifest, key);
+                    }
+                    journal.done(i);
+                } catch (IOException e) {
+                    t.failed.incrementAndGet();
+                    t.lastError = rel + ": " + e.getMessage();
+                    System.err.println("[FANOUT] Error en " + t.dir + " con " + rel + ": " + e.getMessage());
+                }
+            }
+        } finally {
+            manifest.save();
+            Durability.barrier(source + " -> " + t.dir);
+            journal.end();
+            t.lastBatchMillis = System.currentTimeMillis() - start;
+        }
+    }
+
+    /* Escribe desde la copia del lote a un temporal del destino y lo coloca con rename. */
+    private static void write(Shared src, Path dest) throws IOException {
+        Path parent = dest.getParent();
+        if (parent != null && !Files.exists(parent)) {
+            WatchEventSuppressor.suppress(parent, DEST_SUPPRESS_MILLIS);
+            Durability.createDirectories(parent);
+        }
+        WatchEventSuppressor.suppress(dest, DEST_SUPPRESS_MILLIS);
+
+        // la copia es privada, pero se comprueba igual antes de colocar nada
+        BasicFileAttributes a = Files.readAttributes(src.snapshot(), BasicFileAttributes.class);
+        if (a.size() != src.size() || !a.lastModifiedTime().equals(src.mtime())) {
+            throw new IOException("la copia del lote cambió: " + src.snapshot());
+        }
+        FileCopier.transferCopy(src.snapshot(), dest);
+        Durability.track(dest);
+    }
+
+    @NotNull List<String> stats() {
+        List<String> out = new ArrayList<>();
+        for (Target t : targets) {
+            out.add(source + " -> " + t.dir + ": " + t.written.get() + " escritos, "
+                    + t.deleted.get() + " borrados, " + t.failed.get() + " errores, "
+                    + t.backlog.get() + " lotes pendientes, último lote " + t.lastBatchMillis + " ms"
+                    + (t.lastError != null ? " (último error: " + t.lastError + ")" : ""));
+        }
+        return out;
+    }
+
+    void close() {
+        for (Target t : targets) t.lane.shutdown();
+    }
+}
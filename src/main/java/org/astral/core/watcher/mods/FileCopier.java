@@ -0,0 +1,263 @@
+package org.astral.core.watcher.mods;
+
+import org.astral.core.updates.util.IoThrottle;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Copia de un archivo según la estrategia configurada (sync.copyMode):
+ *   copy     -> Files.copy con atributos (comportamiento original)
+ *   transfer -> FileChannel.transferTo (copia en el kernel, sin pasar por el heap)
+ *   reflink  -> clon copy-on-write (btrfs/XFS) vía "cp --reflink=always"
+ *   hardlink -> enlace duro para .jar/.zip. Origen y destino comparten inodo: solo es seguro si el
+ *               origen se reemplaza siempre con rename. Una reescritura en el sitio (Gradle en
+ *               build/libs, deltaInPlace) cambiaría también localMods y Server/mods. Nunca se usa
+ *               con deltaInPlace ni para staging (ahí se usa reflink/transfer).
+ *   auto     -> reflink/transfer, en ese orden, según lo que soporte el sistema (sin enlaces duros)
+ * Si una estrategia no está soportada se recuerda por FileStore y se pasa a la siguiente.
+ */
+final class FileCopier {
+
+    enum Mode {
+        COPY, TRANSFER, REFLINK, HARDLINK, AUTO;
+
+        static Mode parse(String raw) {
+            if (raw == null) return COPY;
+            try {
+                return Mode.valueOf(raw.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                System.err.println("[SYNC] copyMode desconocido '" + raw + "', usando copy.");
+                return COPY;
+            }
+        }
+    }
+
+    private static final Map<String, Boolean> REFLINK_SUPPORT = new ConcurrentHashMap<>();
+    private static final Map<String, Boolean> HARDLINK_SUPPORT = new ConcurrentHashMap<>();
+    private static volatile Boolean cpAvailable;
+    private static volatile boolean hardlinkInPlaceWarned;
+
+    private static final long TEMP_SUPPRESS_MILLIS = 1200L;
+
+    private FileCopier() {}
+
+    static void copy(@NotNull Path src, @NotNull Path dest) throws IOException {
+        copy(src, dest, true);
+    }
+
+    /* allowLink=false: la copia no puede compartir inodo con el origen (staging). */
+    static void copy(@NotNull Path src, @NotNull Path dest, boolean allowLink) throws IOException {
+        Mode mode = Mode.parse(DirectorySynchronizer.settings().copyMode);
+        if (mode == Mode.HARDLINK && DirectorySynchronizer.settings().deltaInPlace) {
+            if (!hardlinkInPlaceWarned) {
+                hardlinkInPlaceWarned = true;
+                System.out.println("[SYNC] copyMode hardlink no se usa con deltaInPlace (escribiría en el origen), usando reflink.");
+            }
+            mode = Mode.REFLINK;
+        } else if (mode == Mode.HARDLINK && !allowLink) {
+            mode = Mode.REFLINK;
+        }
+
+        switch (mode) {
+            case COPY -> plainCopy(src, dest);
+            case TRANSFER -> transferCopy(src, dest);
+            case REFLINK -> {
+                if (!tryReflink(src, dest)) transferCopy(src, dest);
+            }
+            case HARDLINK -> {
+                if (!tryHardlink(src, dest)) transferCopy(src, dest);
+            }
+            case AUTO -> {
+                if (!tryReflink(src, dest)) transferCopy(src, dest);
+            }
+        }
+    }
+
+    static void plainCopy(Path src, Path dest) throws IOException {
+        // Files.copy no se puede limitar: con límite de I/O se copia por bloques
+        if (IoThrottle.shared().enabled()) {
+            transferCopy(src, dest);
+            return;
+        }
+        Files.copy(src, dest,
+                StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.COPY_ATTRIBUTES);
+    }
+
+    /* Copia en el kernel (copy_file_range/sendfile) hacia un temporal y rename atómico. */
+    static void transferCopy(Path src, Path dest) throws IOException {
+        Path tmp = tempSibling(dest);
+        try {
+            try (FileChannel in = FileChannel.open(src, StandardOpenOption.READ);
+                 FileChannel out = FileChannel.open(tmp,
+                         StandardOpenOption.CREATE,
+                         StandardOpenOption.TRUNCATE_EXISTING,
+                         StandardOpenOption.WRITE)) {
+                IoThrottle throttle = IoThrottle.shared();
+                long size = in.size();
+                long pos = 0;
+                while (pos < size) {
+                    long want = throttle.enabled() ? Math.min(IoThrottle.CHUNK, size - pos) : size - pos;
+                    throttle.acquire(want);
+                    long n = in.transferTo(pos, want, out);
+                    if (n <= 0) break;
+                    pos += n;
+                }
+                // el origen se acortó a mitad de copia: no colocar un archivo truncado como si estuviera completo
+                if (pos < size) {
+                    throw new IOException("origen truncado durante la copia (" + pos + " de " + size + " bytes): " + src);
+                }
+            }
+            copyTimes(src, tmp);
+            moveIntoPlace(tmp, dest);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    private static boolean isReadOnlyArtifact(Path src) {
+        String n = src.getFileName() == null ? "" : src.getFileName().toString().toLowerCase(Locale.ROOT);
+        return n.endsWith(".jar") || n.endsWith(".zip");
+    }
+
+    private static boolean tryHardlink(Path src, Path dest) {
+        if (!isReadOnlyArtifact(src)) return false;
+
+        String fs = storeKey(dest);
+        if (Boolean.FALSE.equals(HARDLINK_SUPPORT.get(fs))) return false;
+
+        try {
+            Object srcKey = Files.readAttributes(src, BasicFileAttributes.class).fileKey();
+            if (srcKey != null && Files.exists(dest)
+                    && srcKey.equals(Files.readAttributes(dest, BasicFileAttributes.class).fileKey())) {
+                return true;
+            }
+
+            Path tmp = tempSibling(dest);
+            try {
+                Files.deleteIfExists(tmp);
+                Files.createLink(tmp, src);
+                moveIntoPlace(tmp, dest);
+            } finally {
+                Files.deleteIfExists(tmp);
+            }
+            HARDLINK_SUPPORT.put(fs, true);
+            return true;
+
+        } catch (NoSuchFileException e) {
+            return false;
+        } catch (UnsupportedOperationException | FileSystemException e) {
+            // EXDEV (otro filesystem), EPERM, FS sin enlaces duros...
+            if (HARDLINK_SUPPORT.put(fs, false) == null)
+                System.out.println("[SYNC] Hardlink no disponible en " + fs + " (" + e.getMessage() + "), usando copia.");
+            return false;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static boolean tryReflink(Path src, Path dest) {
+        Path tmp = tempSibling(dest);
+        try {
+            if (!reflinkClone(src, tmp)) return false;
+            moveIntoPlace(tmp, dest);
+            return true;
+        } catch (IOException e) {
+            return false;
+        } finally {
+            try {
+                Files.deleteIfExists(tmp);
+            } catch (IOException ignored) {}
+        }
+    }
+
+    /* Clon copy-on-write de src en to (to no debe existir); false si el FS no lo soporta. */
+    static boolean reflinkClone(Path src, Path to) {
+        String fs = storeKey(to);
+        if (Boolean.FALSE.equals(REFLINK_SUPPORT.get(fs))) return false;
+        if (!cpSupportsReflink()) return false;
+
+        try {
+            Process p = new ProcessBuilder("cp", "--reflink=always", "--preserve=timestamps",
+                    src.toString(), to.toString())
+                    .redirectErrorStream(true)
+                    .start();
+            String out = new String(p.getInputStream().readAllBytes()).trim();
+            if (!p.waitFor(60, TimeUnit.SECONDS)) {
+                p.destroyForcibly();
+                return false;
+            }
+            if (p.exitValue() != 0) {
+                // solo se descarta el FS si nunca clonó: tras un clon correcto, un fallo es del archivo
+                // (origen borrado, disco lleno, permisos) y no del soporte de reflink
+                if (REFLINK_SUPPORT.putIfAbsent(fs, false) == null)
+                    System.out.println("[SYNC] Reflink no disponible en " + fs + (out.isEmpty() ? "" : " (" + out + ")") + ", usando copia.");
+                return false;
+            }
+            REFLINK_SUPPORT.put(fs, true);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static boolean cpSupportsReflink() {
+        Boolean v = cpAvailable;
+        if (v != null) return v;
+        boolean ok;
+        try {
+            Process p = new ProcessBuilder("cp", "--version").redirectErrorStream(true).start();
+            p.getInputStream().readAllBytes();
+            ok = p.waitFor(5, TimeUnit.SECONDS) && p.exitValue() == 0;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            ok = false;
+        } catch (IOException e) {
+            ok = false;
+        }
+        cpAvailable = ok;
+        return ok;
+    }
+
+    /* Temporal junto al destino (mismo filesystem, para poder hacer rename atómico). */
+    static Path tempSibling(Path dest) {
+        Path tmp = dest.resolveSibling("." + dest.getFileName() + ".sync-tmp");
+        WatchEventSuppressor.suppress(tmp, TEMP_SUPPRESS_MILLIS);
+        return tmp;
+    }
+
+    static void moveIntoPlace(Path tmp, Path dest) throws IOException {
+        try {
+            Files.move(tmp, dest, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tmp, dest, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    static void copyTimes(Path src, Path dest) throws IOException {
+        FileTime mtime = Files.getLastModifiedTime(src);
+        Files.setLastModifiedTime(dest, mtime);
+    }
+
+    private static String storeKey(Path dest) {
+        try {
+            Path probe = dest.getParent() != null ? dest.getParent() : dest;
+            FileStore store = Files.getFileStore(probe);
+            return store.name() + ":" + store.type();
+        } catch (IOException e) {
+            return String.valueOf(dest.getRoot());
+        }
+    }
+}
@@ -1,13 +1,15 @@
 package org.astral.core.watcher.mods;
 
 import org.astral.core.process.ManagerHolder;
+import org.astral.core.process.RestartCoordinator;
+import org.astral.core.watcher.QuiescenceDetector;
 
 import java.io.IOException;
-import java.nio.file.DirectoryStream;
-import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
 import java.nio.file.WatchEvent;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -19,19 +21,49 @@ public class ModsAutoUpdater {
     private final Path serverMods;
     private final boolean restartOnUpdate;
     private final Path localModsForBuildTrigger;
+    private final BuildCompletion completion;
+    private volatile FanOutSync fanOut;
 
-    private final AtomicBoolean updating = new AtomicBoolean(false);
+    private record PendingChange(WatchEvent.Kind<?> kind, boolean existedBefore) {
+        @SuppressWarnings("unchecked")
+        WatchEvent.Kind<Path> pathKind() {
+            return (WatchEvent.Kind<Path>) kind;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static final WatchEvent.Kind<Path> OVERFLOW_KIND =
+            (WatchEvent.Kind<Path>) (WatchEvent.Kind<?>) StandardWatchEventKinds.OVERFLOW;
+
+    // tras un error inesperado en un lote: reintento sin convertirlo en un bucle continuo
+    private static final long RETRY_MILLIS = 5000L;
+
+    private final Map<Path, PendingChange> pending = new LinkedHashMap<>();
+    private boolean overflowPending;
+    private final AtomicBoolean draining = new AtomicBoolean(false);
+    private int rawSinceBatch;
 
     public ModsAutoUpdater(ManagerHolder managerHolder,
                            Path sourceMods,
                            Path serverMods,
                            boolean restartOnUpdate,
                            Path localModsForBuildTrigger) {
+        this(managerHolder, sourceMods, serverMods, restartOnUpdate, localModsForBuildTrigger, null);
+    }
+
+    /* completion: cómo saber que el build terminó (ver BuildCompletion); null = auto. */
+    public ModsAutoUpdater(ManagerHolder managerHolder,
+                           Path sourceMods,
+                           Path serverMods,
+                           boolean restartOnUpdate,
+                           Path localModsForBuildTrigger,
+                           String completion) {
         this.managerHolder = managerHolder;
         this.sourceMods = sourceMods;
         this.serverMods = serverMods;
         this.restartOnUpdate = restartOnUpdate;
         this.localModsForBuildTrigger = localModsForBuildTrigger;
+        this.completion = localModsForBuildTrigger != null ? BuildCompletion.parse(completion) : null;
     }
 
     public ModsAutoUpdater(ManagerHolder managerHolder,
@@ -41,145 +73,222 @@ public class ModsAutoUpdater {
         this(managerHolder, sourceMods, serverMods, restartOnUpdate, null);
     }
 
-    public void triggerUpdate(List<WatchEvent<?>> events) {
-        if (!updating.compareAndSet(false, true)) {
-            return;
-        }
-
-        Thread t = new Thread(() -> {
-            try {
-
-                if (localModsForBuildTrigger != null) {
-
-                    try {
-                        waitForStableTopLevel(sourceMods);
-                        DirectorySynchronizer.copyTopLevelContents(sourceMods, localModsForBuildTrigger);
-                    } catch (IOException e) {
-                        System.err.println("[MODS] Error copiando build/libs -> localMods: " + e.getMessage());
-                    }
-
-                    if (managerHolder.get() != null) {
-                        managerHolder.get().stop();
-                        managerHolder.get().waitForStop();
-                    }
-
-                    try {
-                        DirectorySynchronizer.copyTopLevelContents(localModsForBuildTrigger, serverMods);
-                    } catch (IOException e) {
-                        System.err.println("[MODS] Error sincronizando localMods -> serverMods: " + e.getMessage());
-                    }
-
-                    if (managerHolder.get() != null) {
-                        managerHolder.get().start();
-                    }
-
-                } else if (restartOnUpdate) {
-
-                    if (managerHolder.get() != null) {
-                        managerHolder.get().stop();
-                        managerHolder.get().waitForStop();
-                    }
-
-                    try {
-                        DirectorySynchronizer.copyTopLevelContents(sourceMods, serverMods);
-                    } catch (IOException e) {
-                        System.err.println("[MODS] Error sincronizando: " + e.getMessage());
-                    }
-
-                    if (managerHolder.get() != null) {
-                        managerHolder.get().start();
-                    }
+    /* Varios destinos (Config.Watcher.targets): los lotes van a FanOutSync en lugar de a serverMods. */
+    void setFanOut(FanOutSync fanOut) {
+        this.fanOut = fanOut;
+    }
 
-                } else {
+    FanOutSync fanOut() {
+        return fanOut;
+    }
 
-                    try {
-                        DirectorySynchronizer.applyEvents(sourceMods, serverMods, events);
-                    } catch (IOException e) {
-                        System.err.println("[MODS] Error en sincronización incremental: " + e.getMessage());
-                    }
+    /*
+     * Los eventos nunca se descartan: se fusionan por ruta en una cola y se procesan
+     * en lotes. Mientras un lote se aplica, lo que llega forma el siguiente.
+     */
+    public void triggerUpdate(List<WatchEvent<?>> events) {
+        synchronized (pending) {
+            rawSinceBatch += events.size();
+            for (WatchEvent<?> ev : events) {
+                if (ev.kind() == StandardWatchEventKinds.OVERFLOW) {
+                    overflowPending = true;
+                } else if (ev.context() instanceof Path rel) {
+                    merge(rel, ev.kind());
                 }
-
-            } finally {
-                updating.set(false);
             }
-        }, "ModsAutoUpdater-Thread");
+        }
+        // cada evento reinicia la ventana: una ráfaga de Gradle termina en un único lote
+        QuiescenceDetector.shared().debounce(this, DirectorySynchronizer.debounceMillis(), this::drain);
+    }
 
-        t.setDaemon(true);
-        t.start();
+    /*
+     * CREATE + MODIFY -> una escritura; CREATE + DELETE -> nada (si no existía antes del lote);
+     * DELETE + CREATE -> reescritura. El orden del mapa sigue al último evento de cada ruta.
+     */
+    private void merge(Path rel, WatchEvent.Kind<?> kind) {
+        PendingChange prev = pending.remove(rel);
+        boolean existedBefore = prev != null ? prev.existedBefore() : kind != StandardWatchEventKinds.ENTRY_CREATE;
+
+        WatchEvent.Kind<?> merged = kind;
+        if (prev != null && kind == StandardWatchEventKinds.ENTRY_MODIFY
+                && prev.kind() == StandardWatchEventKinds.ENTRY_CREATE) {
+            merged = StandardWatchEventKinds.ENTRY_CREATE;
+        }
+        if (kind == StandardWatchEventKinds.ENTRY_DELETE && !existedBefore) {
+            return;
+        }
+        pending.put(rel, new PendingChange(merged, existedBefore));
     }
 
-    @SuppressWarnings("BusyWait")
-    private static void waitForStableTopLevel(Path dir) {
-        if (dir == null || !Files.exists(dir)) return;
+    private void drain() {
+        if (!draining.compareAndSet(false, true)) {
+            return; // el lote en curso recogerá lo pendiente al terminar
+        }
+        boolean inFlight = false;
+        try {
+            while (true) {
+                List<WatchEvent<?>> taken = takeBatch();
+                inFlight = !taken.isEmpty();
+                List<WatchEvent<?>> batch = dropEchoes(taken);
+                if (batch.isEmpty()) {
+                    draining.set(false);
+                    // un evento pudo entrar entre takeBatch() y el set(false)
+                    if (hasPending() && draining.compareAndSet(false, true)) continue;
+                    return;
+                }
+                applyBatch(batch);
+                inFlight = false;
+            }
+        } catch (RuntimeException e) {
+            System.err.println("[MODS] Error procesando cambios de " + sourceMods + ": " + e.getMessage());
+            if (inFlight) {
+                // el lote ya salió de la cola: se repite como escaneo completo, que cubre sus rutas
+                synchronized (pending) {
+                    overflowPending = true;
+                }
+            }
+            draining.set(false);
+            if (hasPending()) {
+                System.err.println("[MODS] Se reintentará en " + (RETRY_MILLIS / 1000) + "s.");
+                QuiescenceDetector.shared().debounce(this, RETRY_MILLIS, this::drain);
+            }
+        }
+    }
 
-        long start = System.currentTimeMillis();
-        long now;
+    private boolean hasPending() {
+        synchronized (pending) {
+            return overflowPending || !pending.isEmpty();
+        }
+    }
 
-        Map<Path, Long> lastSizes = snapshotTopLevel(dir);
-        Map<Path, Long> lastChange = new HashMap<>();
+    private List<WatchEvent<?>> takeBatch() {
+        synchronized (pending) {
+            List<WatchEvent<?>> batch = new ArrayList<>();
+            if (overflowPending) {
+                // applyEvents resuelve OVERFLOW con un escaneo completo; el resto sobra
+                batch.add(new RelativeWatchEvent(OVERFLOW_KIND, Path.of(""), 1));
+            } else {
+                for (Map.Entry<Path, PendingChange> e : pending.entrySet()) {
+                    batch.add(new RelativeWatchEvent(e.getValue().pathKind(), e.getKey(), 1));
+                }
+            }
+            if (rawSinceBatch > batch.size()) {
+                if (!batch.isEmpty()) {
+                    System.out.println("[MODS] " + rawSinceBatch + " eventos fusionados en un lote de " + batch.size() + " (" + sourceMods + ")");
+                }
+            }
+            rawSinceBatch = 0;
+            pending.clear();
+            overflowPending = false;
+            return batch;
+        }
+    }
 
-        long initStamp = start - 1000L;
-        for (Path p : lastSizes.keySet()) {
-            lastChange.put(p, initStamp);
+    /*
+     * Se comprueba al procesar el lote, no al recibir el evento: para entonces la copia
+     * que lo originó ya terminó y el estado del archivo es comparable.
+     */
+    private List<WatchEvent<?>> dropEchoes(List<WatchEvent<?>> batch) {
+        List<WatchEvent<?>> out = new ArrayList<>(batch.size());
+        for (WatchEvent<?> ev : batch) {
+            if (ev.kind() != StandardWatchEventKinds.OVERFLOW
+                    && ev.context() instanceof Path rel
+                    && EchoGuard.isEcho(sourceMods.resolve(rel), ev.kind())) {
+                continue;
+            }
+            out.add(ev);
+        }
+        int dropped = batch.size() - out.size();
+        if (dropped > 0) {
+            System.out.println("[MODS] " + dropped + " eventos de " + sourceMods + " eran ecos de nuestra propia copia, ignorados.");
         }
+        return out;
+    }
 
-        while (true) {
-            if (Thread.currentThread().isInterrupted()) return;
+    private void applyBatch(List<WatchEvent<?>> events) {
+        if (localModsForBuildTrigger != null) {
 
-            try {
-                Thread.sleep(200L);
-            } catch (InterruptedException ex) {
-                Thread.currentThread().interrupt();
+            String waiting = completion.pending(sourceMods, events);
+            if (waiting != null) {
+                // la escritura que complete el build traerá su propio evento
+                System.out.println("[MODS] Build sin terminar en " + sourceMods + " (" + waiting + "), se espera al siguiente cambio.");
                 return;
             }
 
-            now = System.currentTimeMillis();
+            try {
+                DirectorySynchronizer.copyTopLevelContents(sourceMods, localModsForBuildTrigger);
+            } catch (IOException e) {
+                System.err.println("[MODS] Error copiando build/libs -> localMods: " + e.getMessage());
+            }
 
-            Map<Path, Long> curr = snapshotTopLevel(dir);
+            stagedRestart(localModsForBuildTrigger, serverMods);
 
-            lastSizes.keySet().removeIf(k -> !curr.containsKey(k));
-            lastChange.keySet().removeIf(k -> !curr.containsKey(k));
+        } else if (restartOnUpdate) {
 
-            for (Map.Entry<Path, Long> e : curr.entrySet()) {
-                Path name = e.getKey();
-                long size = e.getValue();
-                Long prev = lastSizes.get(name);
+            stagedRestart(sourceMods, serverMods);
 
-                if (prev == null || prev != size) {
-                    lastSizes.put(name, size);
-                    lastChange.put(name, now);
-                }
-            }
+        } else if (fanOut != null) {
 
-            boolean allStable = true;
-            for (Map.Entry<Path, Long> e : lastSizes.entrySet()) {
-                long changedAt = lastChange.getOrDefault(e.getKey(), 0L);
-                if (now - changedAt < 1000L) {
-                    allStable = false;
-                    break;
-                }
-            }
+            fanOut.apply(events);
 
-            if (allStable) return;
-            if (now - start > 10000L) return;
+        } else {
+
+            try {
+                DirectorySynchronizer.applyEvents(sourceMods, serverMods, events);
+            } catch (IOException e) {
+                System.err.println("[MODS] Error en sincronización incremental: " + e.getMessage());
+            }
         }
     }
 
-    private static Map<Path, Long> snapshotTopLevel(Path dir) {
-        Map<Path, Long> map = new HashMap<>();
+    /*
+     * El reinicio lo decide el RestartCoordinator: el staging se hace al disparar el lote (servidor
+     * corriendo) y los renames con el servidor parado, junto con el resto de peticiones del lote.
+     * Tras el arranque se vuelve a preparar una vez: lo que cambió después del staging entra en otro
+     * reinicio, y si no cambió nada no se reinicia. Si el lote lo dispara un reinicio urgente no hay
+     * staging: se copia directamente con el servidor parado.
+     */
+    private void stagedRestart(Path from, Path to) {
+        stagedRestart(from, to, true);
+    }
+
+    private void stagedRestart(Path from, Path to, boolean catchUp) {
+        managerHolder.restarts().submit("mods:" + to, "cambios en " + from, RestartCoordinator.Urgency.NORMAL, () -> {
+            StagedSync plan;
+            try {
+                plan = StagedSync.stage(from, to);
+            } catch (IOException e) {
+                System.err.println("[MODS] Error preparando staging, se usa copia directa: " + e.getMessage());
+                plan = null;
+            }
+
+            if (plan != null && plan.isEmpty()) {
+                System.out.println("[MODS] Sin cambios que aplicar en " + to + ", no se reinicia.");
+                return null;
+            }
 
-        try (DirectoryStream<Path> ds = Files.newDirectoryStream(dir)) {
-            for (Path child : ds) {
-                if (Files.isRegularFile(child)) {
-                    try {
-                        map.put(child.getFileName(), Files.size(child));
-                    } catch (IOException ignored) {
+            final StagedSync staged = plan;
+            return () -> {
+                try {
+                    if (staged != null) {
+                        staged.commit();
+                    } else {
+                        DirectorySynchronizer.copyTopLevelContents(from, to);
                     }
+                } catch (IOException e) {
+                    System.err.println("[MODS] Error sincronizando " + from + " -> " + to + ": " + e.getMessage());
+                    if (staged != null) staged.discard();
                 }
+            };
+        }, () -> {
+            // reinicio urgente en el mismo lote: sin staging, copia directa con el servidor ya parado
+            try {
+                DirectorySynchronizer.copyTopLevelContents(from, to);
+            } catch (IOException e) {
+                System.err.println("[MODS] Error sincronizando " + from + " -> " + to + ": " + e.getMessage());
             }
-        } catch (IOException ignored) {
-        }
-
-        return map;
+        }).thenAccept(restarted -> {
+            if (catchUp && Boolean.TRUE.equals(restarted)) stagedRestart(from, to, false);
+        });
     }
-}
\ No newline at end of file
+}
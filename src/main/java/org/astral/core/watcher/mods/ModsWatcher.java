@@ -1,106 +1,140 @@
 package org.astral.core.watcher.mods;
 
+import org.astral.core.watcher.QuiescenceDetector;
+import org.astral.core.watcher.WatchDispatcher;
+
+import org.jetbrains.annotations.NotNull;
+
 import java.io.IOException;
 import java.nio.file.*;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.concurrent.TimeUnit;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
 
-public class ModsWatcher implements Runnable {
+/* Vigila modsPath y sus subdirectorios a través del WatchDispatcher compartido. */
+public class ModsWatcher implements WatchDispatcher.Handler, TreeWatcher {
 
     final Path modsPath;
     private final ModsAutoUpdater updater;
+    private final PathFilter filter;
+
+    private final Path root;
+    private WatchDispatcher.Subscription subscription;
 
     public ModsWatcher(Path modsPath, ModsAutoUpdater updater) {
+        this(modsPath, updater, PathFilter.NONE);
+    }
+
+    public ModsWatcher(Path modsPath, ModsAutoUpdater updater, PathFilter filter) {
         this.modsPath = modsPath;
         this.updater = updater;
+        this.filter = filter == null ? PathFilter.NONE : filter;
+        this.root = modsPath.toAbsolutePath().normalize();
     }
 
     @Override
-    public void run() {
+    public synchronized void start() throws IOException {
+        if (subscription != null) return;
 
-        WatchService watchService = null;
+        if (Files.notExists(modsPath)) {
+            Files.createDirectories(modsPath);
+            System.out.println("[MODS] Directorio creado: " + modsPath);
+        }
 
-        try {
+        subscription = WatchDispatcher.shared().subscribe("mods:" + root, this);
+        registerAll(root);
 
-            if (Files.notExists(modsPath)) {
-                Files.createDirectories(modsPath);
-                System.out.println("[MODS] Directorio creado: " + modsPath);
-            }
+        System.out.println("[MODS] Watcher activo en: " + modsPath + " (" + subscription.watchedDirs() + " directorios)");
+    }
 
-            watchService = FileSystems.getDefault().newWatchService();
+    @Override
+    public synchronized void close() {
+        if (subscription == null) return;
+        subscription.close();
+        subscription = null;
+        System.out.println("[MODS] Watcher finalizado: " + modsPath);
+    }
 
-            modsPath.register(
-                    watchService,
-                    StandardWatchEventKinds.ENTRY_CREATE,
-                    StandardWatchEventKinds.ENTRY_DELETE,
-                    StandardWatchEventKinds.ENTRY_MODIFY,
-                    StandardWatchEventKinds.OVERFLOW
-            );
+    /* Se llama en orden, desde el hilo virtual de esta suscripción. */
+    @Override
+    public void onEvents(@NotNull Path dir, @NotNull List<WatchEvent<?>> rawEvents) {
+        boolean hasOverflow = rawEvents.stream().anyMatch(ev -> ev.kind() == StandardWatchEventKinds.OVERFLOW);
+        if (hasOverflow) {
+            // se pudieron perder creaciones de subdirectorios: se vuelve a registrar el árbol
+            registerAll(dir);
+            updater.triggerUpdate(rawEvents);
+            return;
+        }
 
-            System.out.println("[MODS] Watcher activo en: " + modsPath);
+        List<WatchEvent<?>> filtered = new ArrayList<>();
+        for (WatchEvent<?> ev : rawEvents) {
+            if (!(ev.context() instanceof Path name)) continue;
 
-            while (!Thread.currentThread().isInterrupted()) {
+            Path abs = dir.resolve(name).toAbsolutePath().normalize();
+            WatchEvent.Kind<?> kind = ev.kind();
 
-                WatchKey key;
+            if (kind == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(abs, LinkOption.NOFOLLOW_LINKS)) {
+                registerAll(abs);
+            } else if (kind == StandardWatchEventKinds.ENTRY_DELETE) {
+                forgetUnder(abs);
+            } else if (kind == StandardWatchEventKinds.ENTRY_MODIFY && Files.isDirectory(abs)) {
+                // el cambio real llega como evento propio desde el subdirectorio vigilado
+                continue;
+            }
 
-                try {
-                    key = watchService.poll(1, TimeUnit.SECONDS);
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                    break;
-                }
+            // en un borrado ya no se sabe si era directorio: se trata como tal (no se filtra por include)
+            boolean isDir = kind == StandardWatchEventKinds.ENTRY_DELETE
+                    || (filter.hasIncludes() && Files.isDirectory(abs));
+            if (!filter.accepts(root.relativize(abs), isDir)) continue;
 
-                if (key == null) {
-                    continue;
-                }
+            if (WatchEventSuppressor.isSuppressed(abs)) continue;
 
-                List<WatchEvent<?>> rawEvents = key.pollEvents();
-                if (rawEvents.isEmpty()) {
-                    boolean valid = key.reset();
-                    if (!valid) break;
-                    continue;
-                }
-                boolean hasOverflow = rawEvents.stream().anyMatch(ev -> ev.kind() == StandardWatchEventKinds.OVERFLOW);
-                if (hasOverflow) {
-                    updater.triggerUpdate(rawEvents);
-                    boolean valid = key.reset();
-                    if (!valid) break;
-                    continue;
-                }
-                List<WatchEvent<?>> filtered = new ArrayList<>();
-                for (WatchEvent<?> ev : rawEvents) {
-                    Object ctx = ev.context();
-                    if (ctx instanceof Path rel) {
-                        Path abs = modsPath.resolve(rel).toAbsolutePath().normalize();
-                        if (!WatchEventSuppressor.isSuppressed(abs)) {
-                            filtered.add(ev);
-                        }
-                    } else {
-                        filtered.add(ev);
-                    }
-                }
+            QuiescenceDetector.shared().touch(abs);
+            filtered.add(new RelativeWatchEvent(cast(kind), root.relativize(abs), ev.count()));
+        }
 
-                if (!filtered.isEmpty()) {
-                    updater.triggerUpdate(filtered);
-                }
+        if (!filtered.isEmpty()) {
+            updater.triggerUpdate(filtered);
+        }
+    }
 
-                boolean valid = key.reset();
-                if (!valid) {
-                    break;
-                }
-            }
+    @Override
+    public void onKeyInvalid(@NotNull Path dir) {
+        if (dir.equals(root)) {
+            System.out.println("[MODS] Directorio vigilado ya no existe: " + modsPath);
+            close();
+        }
+    }
 
-            System.out.println("[MODS] Watcher finalizado: " + modsPath);
+    /* Registra dir y todos sus subdirectorios (los ya registrados se ignoran). */
+    private void registerAll(Path dir) {
+        WatchDispatcher.Subscription sub = subscription;
+        if (sub == null) return;
+        try {
+            Files.walkFileTree(dir, new SimpleFileVisitor<>() {
+                @Override
+                public @NotNull FileVisitResult preVisitDirectory(@NotNull Path d, @NotNull BasicFileAttributes attrs) throws IOException {
+                    sub.watch(d);
+                    return FileVisitResult.CONTINUE;
+                }
 
+                @Override
+                public @NotNull FileVisitResult visitFileFailed(@NotNull Path file, @NotNull IOException exc) {
+                    return FileVisitResult.CONTINUE;
+                }
+            });
         } catch (IOException e) {
-            System.err.println("[MODS] Error en watcher: " + e.getMessage());
-        } finally {
-            if (watchService != null) {
-                try {
-                    watchService.close();
-                } catch (IOException ignored) {}
-            }
+            System.err.println("[MODS] No se pudo vigilar " + dir + ": " + e.getMessage());
         }
     }
-}
\ No newline at end of file
+
+    /* Un subdirectorio borrado deja de vigilarse junto con todo lo que colgaba de él. */
+    private void forgetUnder(Path abs) {
+        WatchDispatcher.Subscription sub = subscription;
+        if (sub != null && !abs.equals(root)) sub.unwatchUnder(abs);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static WatchEvent.Kind<Path> cast(WatchEvent.Kind<?> kind) {
+        return (WatchEvent.Kind<Path>) kind;
+    }
+}
@@ -0,0 +1,77 @@
+package org.astral.core.watcher.mods;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+ * Ejecuta operaciones de archivo en paralelo con un límite de concurrencia de I/O.
+ * Cada operación corre en un hilo virtual; el semáforo acota cuántas tocan disco a la vez.
+ * Los errores los informa cada tarea; aquí solo se cuentan. Una RuntimeException cuenta como error
+ * de esa tarea (en ambos caminos) y lo que no llega a ejecutarse por una interrupción cuenta como fallido.
+ */
+final class ParallelCopier {
+
+    interface IoTask<T> {
+        void run(T item) throws IOException;
+    }
+
+    interface ErrorHandler<T> {
+        void onError(T item, IOException error);
+    }
+
+    private ParallelCopier() {}
+
+    /* Devuelve el número de tareas que fallaron. */
+    static <T> int runAll(List<T> items, int concurrency, IoTask<T> task, ErrorHandler<T> onError) {
+        if (items.isEmpty()) return 0;
+
+        if (concurrency <= 1 || items.size() == 1) {
+            int failed = 0;
+            for (int i = 0; i < items.size(); i++) {
+                if (Thread.currentThread().isInterrupted()) return failed + items.size() - i;
+                if (!runOne(items.get(i), task, onError)) failed++;
+            }
+            return failed;
+        }
+
+        AtomicInteger failed = new AtomicInteger();
+        Semaphore permits = new Semaphore(concurrency);
+
+        try (ExecutorService exec = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (T item : items) {
+                exec.execute(() -> {
+                    try {
+                        permits.acquire();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        failed.incrementAndGet();
+                        return;
+                    }
+                    try {
+                        if (!runOne(item, task, onError)) failed.incrementAndGet();
+                    } finally {
+                        permits.release();
+                    }
+                });
+            }
+        }
+
+        return failed.get();
+    }
+
+    private static <T> boolean runOne(T item, IoTask<T> task, ErrorHandler<T> onError) {
+        try {
+            task.run(item);
+            return true;
+        } catch (IOException e) {
+            onError.onError(item, e);
+        } catch (RuntimeException e) {
+            onError.onError(item, new IOException(e));
+        }
+        return false;
+    }
+}
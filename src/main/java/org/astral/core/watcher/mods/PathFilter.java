@@ -0,0 +1,148 @@
+package org.astral.core.watcher.mods;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+/*
+ * Filtro include/exclude por watcher, aplicado antes de que un evento llegue al ModsAutoUpdater.
+ * - Patrones glob: sin '/' se comparan con el nombre (como en .gitignore), con '/' con la ruta
+ *   relativa a la carpeta vigilada. Los "*.ext" van a un conjunto de sufijos, sin PathMatcher.
+ * - Exclusiones por defecto (siempre activas): temporales de Sync Core y de las descargas,
+ *   archivos de swap/backup de editores y parciales de descargas.
+ * - Con include no vacío, un archivo tiene que coincidir con alguno; los directorios siempre pasan.
+ */
+public final class PathFilter {
+
+    static final List<String> DEFAULT_EXCLUDES = List.of(
+            "*.sync-tmp", "*.download", "*.tmp", "*.part", "*.crdownload",
+            "*.swp", "*.swo", "*.swx", "*~", ".#*", "4913", ".*.staging", ".*.trash");
+
+    public static final PathFilter NONE = new PathFilter(List.of(), List.of());
+
+    private static final Pattern SUFFIX = Pattern.compile("\\*\\.[^*?\\[\\]{}/\\\\]+");
+
+    private static final LongAdder excludedDefault = new LongAdder();
+    private static final LongAdder excludedUser = new LongAdder();
+    private static final LongAdder notIncluded = new LongAdder();
+
+    private static final Matcher DEFAULTS = new Matcher(DEFAULT_EXCLUDES);
+
+    /* Marcadores de fin de build (BuildCompletion): sus eventos llegan, pero no se sincronizan. */
+    private static final Set<String> SIGNALS = ConcurrentHashMap.newKeySet();
+
+    private final Matcher include;
+    private final Matcher exclude;
+
+    private PathFilter(List<String> include, List<String> exclude) {
+        this.include = new Matcher(include);
+        this.exclude = new Matcher(exclude);
+    }
+
+    public static @NotNull PathFilter of(List<String> include, List<String> exclude) {
+        if ((include == null || include.isEmpty()) && (exclude == null || exclude.isEmpty())) return NONE;
+        return new PathFilter(include == null ? List.of() : include, exclude == null ? List.of() : exclude);
+    }
+
+    /* relative: ruta relativa a la carpeta vigilada. */
+    boolean accepts(@NotNull Path relative, boolean dir) {
+        if (isDefaultExcluded(relative)) {
+            excludedDefault.increment();
+            return false;
+        }
+        if (exclude.matches(relative)) {
+            excludedUser.increment();
+            return false;
+        }
+        if (!dir && !include.isEmpty() && !include.matches(relative)) {
+            notIncluded.increment();
+            return false;
+        }
+        return true;
+    }
+
+    boolean hasIncludes() {
+        return !include.isEmpty();
+    }
+
+    /* Temporales propios y de editores: tampoco se copian ni se borran en los escaneos. */
+    static boolean isDefaultExcluded(@NotNull Path relative) {
+        return DEFAULTS.matches(relative);
+    }
+
+    static void registerSignal(@NotNull String name) {
+        SIGNALS.add(name);
+    }
+
+    static boolean isSignal(Path name) {
+        if (name == null) return false;
+        String n = name.toString();
+        return n.endsWith(BuildCompletion.READY_SUFFIX) || SIGNALS.contains(n);
+    }
+
+    /* Lo que los escaneos de sincronización no copian ni borran. */
+    public static boolean skipInSync(@NotNull Path relative) {
+        return isDefaultExcluded(relative) || isSignal(relative.getFileName());
+    }
+
+    public static @NotNull String stats() {
+        return "filtrados: " + excludedDefault.sum() + " por exclusión por defecto, "
+                + excludedUser.sum() + " por exclude, " + notIncluded.sum() + " fuera de include";
+    }
+
+    /* Patrones compilados una vez: sufijos en un Set, el resto como PathMatcher. */
+    private static final class Matcher {
+        private final Set<String> suffixes = new HashSet<>();
+        private final List<PathMatcher> names = new ArrayList<>();
+        private final List<PathMatcher> paths = new ArrayList<>();
+
+        Matcher(List<String> patterns) {
+            for (String raw : patterns) {
+                if (raw == null || raw.isBlank()) continue;
+                String p = raw.trim();
+                try {
+                    if (SUFFIX.matcher(p).matches()) {
+                        suffixes.add(p.substring(1).toLowerCase(Locale.ROOT));
+                    } else if (p.indexOf('/') < 0) {
+                        names.add(FileSystems.getDefault().getPathMatcher("glob:" + p));
+                    } else {
+                        paths.add(FileSystems.getDefault().getPathMatcher("glob:" + p));
+                    }
+                } catch (IllegalArgumentException e) {
+                    System.err.println("[WATCHER] Patrón inválido '" + p + "': " + e.getMessage());
+                }
+            }
+        }
+
+        boolean isEmpty() {
+            return suffixes.isEmpty() && names.isEmpty() && paths.isEmpty();
+        }
+
+        boolean matches(Path relative) {
+            Path name = relative.getFileName();
+            if (name == null) return false;
+            if (!suffixes.isEmpty()) {
+                String n = name.toString().toLowerCase(Locale.ROOT);
+                int dot = n.lastIndexOf('.');
+                // "*.tar.gz" y similares: se prueban todos los sufijos posibles
+                while (dot >= 0) {
+                    if (suffixes.contains(n.substring(dot))) return true;
+                    dot = n.lastIndexOf('.', dot - 1);
+                }
+            }
+            for (PathMatcher m : names) {
+                if (m.matches(name)) return true;
+            }
+            for (PathMatcher m : paths) {
+                if (m.matches(relative)) return true;
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package org.astral.core.watcher.mods;
+
+import org.astral.core.watcher.QuiescenceDetector;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Alternativa a inotify para NFS, overlay, volúmenes montados...
+ * - Guarda por directorio su mtime y los metadatos de sus entradas.
+ * - Si el mtime del directorio no cambió, no se vuelve a listar: solo se hace stat de lo conocido.
+ *   Un mtime muy reciente (RACY_MILLIS) se trata como cambiado, por la resolución gruesa de NFS.
+ * - El intervalo baja al mínimo cuando hay cambios y crece x1.5 en cada escaneo sin cambios.
+ * - Emite los mismos RelativeWatchEvent que ModsWatcher, así la sincronización no cambia.
+ */
+final class PollingWatcher implements TreeWatcher {
+
+    private static final long RACY_MILLIS = 2000L;
+
+    private static final ScheduledExecutorService POLLER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "Mods-Poller");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private record Entry(long size, long mtime, boolean dir) {}
+
+    private static final class DirState {
+        long mtime;
+        final Map<String, Entry> children = new HashMap<>();
+    }
+
+    private final Path root;
+    private final ModsAutoUpdater updater;
+    private final PathFilter filter;
+    private final Map<Path, DirState> dirs = new HashMap<>();
+
+    private volatile boolean running;
+    private ScheduledFuture<?> next;
+    private long interval;
+    private long scans, listings;
+
+    PollingWatcher(Path root, ModsAutoUpdater updater, PathFilter filter) {
+        this.root = root.toAbsolutePath().normalize();
+        this.updater = updater;
+        this.filter = filter == null ? PathFilter.NONE : filter;
+    }
+
+    @Override
+    public synchronized void start() throws IOException {
+        if (running) return;
+        if (Files.notExists(root)) {
+            Files.createDirectories(root);
+            System.out.println("[MODS] Directorio creado: " + root);
+        }
+
+        running = true;
+        interval = minInterval();
+        // primera pasada sin eventos: solo construye el estado
+        scan(null);
+        schedule();
+        System.out.println("[MODS] Watcher (polling) activo en: " + root + " (" + dirs.size() + " directorios)");
+    }
+
+    @Override
+    public synchronized void close() {
+        if (!running) return;
+        running = false;
+        if (next != null) next.cancel(false);
+        dirs.clear();
+        System.out.println("[MODS] Watcher (polling) finalizado: " + root + " (" + scans + " escaneos, " + listings + " listados)");
+    }
+
+    private synchronized void schedule() {
+        if (!running) return;
+        next = POLLER.schedule(this::tick, interval, TimeUnit.MILLISECONDS);
+    }
+
+    private void tick() {
+        List<WatchEvent<?>> events = new ArrayList<>();
+        synchronized (this) {
+            if (!running) return;
+            try {
+                scan(events);
+            } catch (RuntimeException e) {
+                System.err.println("[MODS] Error escaneando " + root + ": " + e.getMessage());
+            }
+            interval = events.isEmpty()
+                    ? Math.min(maxInterval(), (long) (interval * 1.5))
+                    : minInterval();
+        }
+        if (!events.isEmpty()) updater.triggerUpdate(events);
+        schedule();
+    }
+
+    private void scan(List<WatchEvent<?>> out) {
+        scans++;
+        if (!Files.isDirectory(root)) {
+            if (!dirs.isEmpty() && out != null) {
+                System.out.println("[MODS] Directorio vigilado ya no existe: " + root);
+            }
+            dirs.clear();
+            return;
+        }
+        scanDir(root, out, System.currentTimeMillis());
+    }
+
+    private void scanDir(Path dir, List<WatchEvent<?>> out, long now) {
+        long dirMtime;
+        try {
+            dirMtime = Files.getLastModifiedTime(dir).toMillis();
+        } catch (IOException e) {
+            return;
+        }
+
+        DirState state = dirs.get(dir);
+        boolean relist = state == null || state.mtime != dirMtime || now - dirMtime < RACY_MILLIS;
+
+        if (state == null) {
+            state = new DirState();
+            dirs.put(dir, state);
+        }
+        state.mtime = dirMtime;
+
+        Map<String, Entry> current = relist ? list(dir) : statKnown(dir, state.children);
+        if (current == null) return;
+
+        for (Map.Entry<String, Entry> e : current.entrySet()) {
+            Entry cur = e.getValue();
+            Entry prev = state.children.get(e.getKey());
+            Path child = dir.resolve(e.getKey());
+
+            if (prev == null || prev.dir() != cur.dir()) {
+                if (prev != null) emitDelete(child, prev, out);
+                emit(StandardWatchEventKinds.ENTRY_CREATE, child, cur.dir(), out);
+            } else if (!cur.dir() && (prev.size() != cur.size() || prev.mtime() != cur.mtime())) {
+                emit(StandardWatchEventKinds.ENTRY_MODIFY, child, false, out);
+            }
+        }
+        for (Map.Entry<String, Entry> e : state.children.entrySet()) {
+            if (!current.containsKey(e.getKey())) {
+                emitDelete(dir.resolve(e.getKey()), e.getValue(), out);
+            }
+        }
+
+        state.children.clear();
+        state.children.putAll(current);
+
+        for (Map.Entry<String, Entry> e : current.entrySet()) {
+            if (e.getValue().dir()) scanDir(dir.resolve(e.getKey()), out, now);
+        }
+    }
+
+    private Map<String, Entry> list(Path dir) {
+        listings++;
+        Map<String, Entry> out = new HashMap<>();
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(dir)) {
+            for (Path p : ds) {
+                Entry e = stat(p);
+                if (e != null) out.put(p.getFileName().toString(), e);
+            }
+        } catch (IOException e) {
+            return null;
+        }
+        return out;
+    }
+
+    /* Directorio sin cambios de entradas: solo cambian tamaños y mtimes de lo ya conocido. */
+    private Map<String, Entry> statKnown(Path dir, Map<String, Entry> known) {
+        Map<String, Entry> out = new HashMap<>();
+        for (String name : known.keySet()) {
+            Entry e = stat(dir.resolve(name));
+            if (e == null) return list(dir); // desapareció algo: mejor listar de nuevo
+            out.put(name, e);
+        }
+        return out;
+    }
+
+    private static Entry stat(Path p) {
+        try {
+            BasicFileAttributes a = Files.readAttributes(p, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+            if (a.isSymbolicLink()) a = Files.readAttributes(p, BasicFileAttributes.class);
+            return new Entry(a.size(), a.lastModifiedTime().toMillis(), a.isDirectory());
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private void emitDelete(Path child, Entry prev, List<WatchEvent<?>> out) {
+        if (prev.dir()) {
+            dirs.keySet().removeIf(d -> d.startsWith(child));
+        }
+        emit(StandardWatchEventKinds.ENTRY_DELETE, child, prev.dir(), out);
+    }
+
+    private void emit(WatchEvent.Kind<Path> kind, Path abs, boolean dir, List<WatchEvent<?>> out) {
+        if (out == null) return;
+        if (!filter.accepts(root.relativize(abs), dir)) return;
+        if (WatchEventSuppressor.isSuppressed(abs)) return;
+        QuiescenceDetector.shared().touch(abs);
+        out.add(new RelativeWatchEvent(kind, root.relativize(abs), 1));
+    }
+
+    private static long minInterval() {
+        return Math.max(100L, DirectorySynchronizer.settings().pollMinMillis);
+    }
+
+    private static long maxInterval() {
+        return Math.max(minInterval(), DirectorySynchronizer.settings().pollMaxMillis);
+    }
+}
@@ -0,0 +1,10 @@
+package org.astral.core.watcher.mods;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+
+/* Evento con la ruta relativa a la raíz vigilada (no solo el nombre dentro del directorio que lo emitió). */
+record RelativeWatchEvent(@NotNull Kind<Path> kind, @NotNull Path context, int count) implements WatchEvent<Path> {
+}
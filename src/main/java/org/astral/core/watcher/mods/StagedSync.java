@@ -0,0 +1,297 @@
+package org.astral.core.watcher.mods;
+
+import org.astral.core.updates.util.HashUtils;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.stream.Stream;
+
+/*
+ * Sincronización en dos fases para destinos que requieren parar el servidor:
+ *   stage()  -> con el servidor corriendo, copia las entradas de primer nivel que cambiaron
+ *               a un directorio de staging junto al destino y verifica tamaño y hash.
+ *   commit() -> con el servidor parado, cada entrada se coloca con un rename atómico y el manifiesto
+ *               del par se actualiza con lo que se describió al preparar (sin escanear ni copiar).
+ * El tiempo de parada queda en stop + renames + start, sin depender del tamaño de los mods.
+ * Lo que cambie en el origen después del staging se recoge tras el arranque (ModsAutoUpdater).
+ */
+public final class StagedSync {
+
+    private static final long DEST_SUPPRESS_MILLIS = 1200L;
+
+    private final Path source;
+    private final Path target;
+    private final Path stagingDir;
+    private final List<String> names = new ArrayList<>();
+    private final Map<String, SyncManifest.Entry> entries = new HashMap<>();
+    private long stagedBytes;
+
+    private StagedSync(Path source, Path target, Path stagingDir) {
+        this.source = source;
+        this.target = target;
+        this.stagingDir = stagingDir;
+    }
+
+    public static @NotNull Path stagingDirFor(@NotNull Path target) {
+        return target.resolveSibling("." + target.getFileName() + ".staging");
+    }
+
+    /* Fase 1: copia a staging lo que cambió. No toca el destino. */
+    public static @NotNull StagedSync stage(@NotNull Path source, @NotNull Path target) throws IOException {
+        long start = System.currentTimeMillis();
+        StagedSync plan = new StagedSync(source, target, stagingDirFor(target));
+
+        dispose(plan.stagingDir);
+        if (!Files.exists(source)) return plan;
+        Files.createDirectories(target);
+
+        SyncManifest manifest = SyncManifest.forPair(source, target);
+        List<Path> children = new ArrayList<>();
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(source)) {
+            for (Path child : ds) children.add(child);
+        }
+
+        for (Path child : children) {
+            String name = child.getFileName().toString();
+            if (PathFilter.skipInSync(Path.of(name))) continue;
+            Path dest = target.resolve(name);
+            try {
+                if (!differs(child, dest)) continue;
+                if (!Files.isDirectory(child)
+                        && !DirectorySynchronizer.sourceWins(child, dest, manifest.get(SyncManifest.key(Path.of(name))))) {
+                    continue;
+                }
+
+                if (plan.names.isEmpty()) Durability.createDirectories(plan.stagingDir);
+                Path staged = plan.stagingDir.resolve(name);
+
+                if (Files.isDirectory(child)) {
+                    DirectorySynchronizer.copyTree(child, staged, DirectorySynchronizer.copyConcurrency());
+                    keepTargetOnlyFiles(dest, staged);
+                } else {
+                    // copia independiente: un enlace duro dejaría el staging a merced del origen
+                    FileCopier.copy(child, staged, false);
+                    Durability.track(staged);
+                }
+
+                plan.stagedBytes += verify(child, staged);
+                plan.describe(name, staged);
+                plan.names.add(name);
+
+            } catch (NoSuchFileException nsf) {
+                System.err.println("[STAGE] Archivo desapareció durante staging: " + child);
+            } catch (IOException e) {
+                System.err.println("[STAGE] Error preparando " + child + ": " + e.getMessage());
+                plan.discard();
+                throw e;
+            }
+        }
+
+        // los datos van a disco ahora, con el servidor corriendo; el commit solo asegura los renames
+        Durability.barrier("staging " + target);
+
+        if (!plan.names.isEmpty()) {
+            System.out.println("[STAGE] " + plan.names.size() + " entradas preparadas ("
+                    + (plan.stagedBytes / 1024) + " KB) en " + (System.currentTimeMillis() - start) + " ms");
+        }
+        return plan;
+    }
+
+    public boolean isEmpty() {
+        return names.isEmpty();
+    }
+
+    /* Fase 2 (servidor parado): renames atómicos hacia el destino. */
+    public void commit() throws IOException {
+        if (names.isEmpty()) return;
+        long start = System.currentTimeMillis();
+        List<Path> oldDirs = new ArrayList<>();
+
+        // si el proceso muere a mitad, al arrancar se terminan los renames pendientes
+        List<SyncJournal.Op> ops = new ArrayList<>(names.size());
+        for (String name : names) {
+            ops.add(new SyncJournal.Op(SyncJournal.Kind.MOVE, stagingDir.resolve(name), target.resolve(name)));
+        }
+        SyncJournal.Batch journal = SyncJournal.shared().begin("commit " + target, ops);
+
+        for (int i = 0; i < names.size(); i++) {
+            String name = names.get(i);
+            Path staged = stagingDir.resolve(name);
+            Path dest = target.resolve(name);
+            WatchEventSuppressor.suppress(dest, DEST_SUPPRESS_MILLIS);
+
+            // un directorio no se puede reemplazar con rename: el anterior se aparta primero
+            if (Files.exists(dest) && (Files.isDirectory(staged) || Files.isDirectory(dest))) {
+                Path old = stagingDir.resolve(".old-" + name);
+                atomicMove(dest, old);
+                oldDirs.add(old);
+            }
+            atomicMove(staged, dest);
+            journal.done(i);
+            recordWritten(dest);
+        }
+        Durability.trackDir(target);
+        Durability.barrier("commit " + target);
+        journal.end();
+
+        System.out.println("[STAGE] " + names.size() + " entradas aplicadas por rename en "
+                + (System.currentTimeMillis() - start) + " ms");
+
+        // con el servidor aún parado: solo renames a la papelera, el borrado real va en segundo plano
+        for (Path old : oldDirs) dispose(old);
+        dispose(stagingDir);
+
+        // el rename conserva tamaño y mtime: lo descrito en staging vale para el destino
+        SyncManifest manifest = SyncManifest.forPair(source, target);
+        entries.forEach(manifest::put);
+        manifest.save();
+        entries.clear();
+    }
+
+    /* Entradas de manifiesto de lo preparado, calculadas con el servidor aún corriendo. */
+    private void describe(String name, Path staged) throws IOException {
+        if (!Files.isDirectory(staged)) {
+            entries.put(name, DirectorySynchronizer.describe(staged));
+            return;
+        }
+        try (Stream<Path> s = Files.walk(staged)) {
+            for (Path p : (Iterable<Path>) s::iterator) {
+                if (Files.isRegularFile(p, LinkOption.NOFOLLOW_LINKS)) {
+                    entries.put(name + "/" + SyncManifest.key(staged.relativize(p)), DirectorySynchronizer.describe(p));
+                }
+            }
+        }
+    }
+
+    private static void recordWritten(Path dest) throws IOException {
+        if (!Files.isDirectory(dest)) {
+            EchoGuard.wrote(dest);
+            return;
+        }
+        try (Stream<Path> s = Files.walk(dest)) {
+            s.forEach(EchoGuard::wrote);
+        }
+    }
+
+    public void discard() {
+        try {
+            dispose(stagingDir);
+        } catch (IOException e) {
+            System.err.println("[STAGE] No se pudo limpiar staging " + stagingDir + ": " + e.getMessage());
+        }
+        names.clear();
+        entries.clear();
+    }
+
+    /* Igual que copyTopLevelContents, lo que solo existe en el destino no se pierde. */
+    private static void keepTargetOnlyFiles(Path dest, Path staged) throws IOException {
+        if (!Files.isDirectory(dest)) return;
+        Files.walkFileTree(dest, new SimpleFileVisitor<>() {
+            @Override
+            public @NotNull FileVisitResult visitFile(@NotNull Path file, @NotNull BasicFileAttributes attrs) throws IOException {
+                Path copy = staged.resolve(dest.relativize(file).toString());
+                if (!Files.exists(copy)) {
+                    Durability.createDirectories(copy.getParent());
+                    FileCopier.plainCopy(file, copy);
+                    Durability.track(copy);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private static boolean differs(Path src, Path dest) throws IOException {
+        if (!Files.exists(dest)) return true;
+        if (Files.isDirectory(src) != Files.isDirectory(dest)) return true;
+
+        if (!Files.isDirectory(src)) {
+            BasicFileAttributes s = Files.readAttributes(src, BasicFileAttributes.class);
+            BasicFileAttributes d = Files.readAttributes(dest, BasicFileAttributes.class);
+            return s.size() != d.size()
+                    || s.lastModifiedTime().toMillis() != d.lastModifiedTime().toMillis();
+        }
+
+        Map<String, long[]> a = describeTree(src);
+        Map<String, long[]> b = describeTree(dest);
+        if (a.size() != b.size()) return true;
+        for (Map.Entry<String, long[]> e : a.entrySet()) {
+            long[] other = b.get(e.getKey());
+            if (other == null || !Arrays.equals(e.getValue(), other)) return true;
+        }
+        return false;
+    }
+
+    /* Mismo criterio que copyTree: lo que scan() salta no cuenta como diferencia. */
+    private static Map<String, long[]> describeTree(Path root) throws IOException {
+        Map<String, long[]> out = new HashMap<>();
+        for (Map.Entry<String, DirectorySynchronizer.Meta> e : DirectorySynchronizer.scan(root).entrySet()) {
+            DirectorySynchronizer.Meta m = e.getValue();
+            if (!m.dir()) out.put(e.getKey(), new long[]{m.size(), m.mtime()});
+        }
+        return out;
+    }
+
+    /*
+     * Comprueba tamaño y SHA-256 de lo copiado a staging; devuelve los bytes verificados.
+     * Un directorio se compara contra el mismo scan() que usa copyTree: los temporales y marcadores
+     * que la sincronización salta no están en staging y no cuentan como diferencia.
+     */
+    private static long verify(Path src, Path staged) throws IOException {
+        long total = 0L;
+        List<Path> files = new ArrayList<>();
+        if (Files.isDirectory(src)) {
+            for (Map.Entry<String, DirectorySynchronizer.Meta> e : DirectorySynchronizer.scan(src).entrySet()) {
+                if (!e.getValue().dir()) files.add(src.resolve(e.getKey()));
+            }
+        } else {
+            files.add(src);
+        }
+
+        for (Path f : files) {
+            Path rel = Files.isDirectory(src) ? src.relativize(f) : null;
+            Path copy = rel != null ? staged.resolve(rel.toString()) : staged;
+
+            long size = Files.size(f);
+            if (!Files.exists(copy) || Files.size(copy) != size) {
+                throw new IOException("tamaño distinto en staging: " + copy);
+            }
+            if (DirectorySynchronizer.settings().verifyStagedHashes) {
+                try {
+                    if (!HashUtils.sha256OfFile(f).equals(HashUtils.sha256OfFile(copy))) {
+                        throw new IOException("hash distinto en staging: " + copy);
+                    }
+                } catch (IOException e) {
+                    throw e;
+                } catch (Exception e) {
+                    throw new IOException("no se pudo verificar hash de " + copy + ": " + e.getMessage(), e);
+                }
+            }
+            total += size;
+        }
+        return total;
+    }
+
+    private static void atomicMove(Path from, Path to) throws IOException {
+        try {
+            Files.move(from, to, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(from, to, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static void dispose(Path dir) throws IOException {
+        if (!Trash.discard(dir)) deleteTree(dir);
+    }
+
+    private static void deleteTree(Path dir) throws IOException {
+        if (!Files.exists(dir)) return;
+        try (Stream<Path> s = Files.walk(dir)) {
+            for (Path p : (Iterable<Path>) s.sorted(Comparator.reverseOrder())::iterator) {
+                Files.deleteIfExists(p);
+            }
+        }
+    }
+}
@@ -0,0 +1,246 @@
+package org.astral.core.watcher.mods;
+
+import org.astral.core.watcher.mods.DirectorySynchronizer.Meta;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+/*
+ * Reconciliación a tres bandas al arrancar (último snapshot, local, servidor).
+ * - Al cerrar limpio se guarda, por par, lo que estaba igual en ambos lados (tamaño, mtime).
+ * - Al arrancar se compara cada ruta con ese snapshot: el lado que cambió se propaga
+ *   (altas, modificaciones y borrados); si cambiaron los dos, gana el más reciente
+ *   y un cambio gana siempre a un borrado.
+ * - El snapshot se borra al leerlo: tras una caída no hay base fiable y no se propaga
+ *   ningún borrado (solo altas y el más reciente en caso de diferencia).
+ * Formato: "size<TAB>mtime<TAB>ruta" por línea; los directorios con size -1.
+ */
+final class StartupReconciler {
+
+    private static final String HEADER = "# sync-core snapshot v1";
+
+    private record Copy(Path src, Path dest, String key, boolean toServer, int op) {}
+
+    private StartupReconciler() {}
+
+    static void reconcile(@NotNull Path local, @NotNull Path server) throws IOException {
+        long start = System.currentTimeMillis();
+        Path file = snapshotFile(local, server);
+        Map<String, Meta> base = load(file);
+        Files.deleteIfExists(file);
+
+        TreeMap<String, Meta> l = DirectorySynchronizer.scan(local);
+        TreeMap<String, Meta> s = DirectorySynchronizer.scan(server);
+        TreeSet<String> keys = new TreeSet<>(l.keySet());
+        keys.addAll(s.keySet());
+
+        List<Copy> copies = new ArrayList<>();
+        List<Path> deletes = new ArrayList<>();
+        List<Path> mkdirs = new ArrayList<>();
+        int toServer = 0, toLocal = 0, deletedServer = 0, deletedLocal = 0, conflicts = 0, unchanged = 0;
+
+        // archivos
+        for (String key : keys) {
+            Meta lm = l.get(key), sm = s.get(key), bm = base == null ? null : base.get(key);
+            if ((lm != null && lm.dir()) || (sm != null && sm.dir())) continue;
+
+            if (same(lm, sm)) {
+                unchanged++;
+                continue;
+            }
+            boolean localChanged = !same(lm, bm);
+            boolean serverChanged = !same(sm, bm);
+
+            boolean localWins;
+            if (localChanged && !serverChanged) {
+                localWins = true;
+            } else if (serverChanged && !localChanged) {
+                localWins = false;
+            } else {
+                conflicts++;
+                // una modificación gana a un borrado; entre dos modificaciones, la más reciente (empate: local)
+                localWins = sm == null || (lm != null && lm.mtime() >= sm.mtime());
+                if (lm != null && sm != null) {
+                    System.out.println("[SYNC] Conflicto en " + key + ": ambos lados cambiaron, gana "
+                            + (localWins ? "local" : "servidor")
+                            + (lm.mtime() == sm.mtime() ? " (mismo mtime, prioridad local)" : " (más reciente)"));
+                }
+            }
+
+            Meta winner = localWins ? lm : sm;
+            if (winner == null) {
+                deletes.add((localWins ? server : local).resolve(key));
+                if (localWins) deletedServer++;
+                else deletedLocal++;
+            } else {
+                Path from = (localWins ? local : server).resolve(key);
+                Path to = (localWins ? server : local).resolve(key);
+                copies.add(new Copy(from, to, key, localWins, copies.size()));
+                if (localWins) toServer++;
+                else toLocal++;
+            }
+        }
+
+        // directorios: un borrado solo se propaga si no queda nada nuevo dentro
+        for (String key : keys.descendingSet()) {
+            Meta lm = l.get(key), sm = s.get(key), bm = base == null ? null : base.get(key);
+            boolean ld = lm != null && lm.dir(), sd = sm != null && sm.dir();
+            if (ld == sd) continue; // directorio en ambos lados, o archivo (ya tratado)
+            if ((ld && sm != null) || (sd && lm != null)) {
+                System.err.println("[SYNC] " + key + " es archivo en un lado y directorio en el otro; se deja sin tocar.");
+                continue;
+            }
+            Path present = (ld ? local : server).resolve(key);
+            Path other = (ld ? server : local).resolve(key);
+            boolean deletedOnOther = bm != null && bm.dir();
+            if (deletedOnOther && !receivesCopies(copies, key, ld)) {
+                deletes.add(present);
+                if (ld) deletedLocal++;
+                else deletedServer++;
+            } else if (!deletedOnOther) {
+                mkdirs.add(other);
+            }
+        }
+
+        apply(local, server, copies, deletes, mkdirs);
+
+        System.out.println("[SYNC] Reconciliación " + local + " <-> " + server + ": "
+                + toServer + " -> servidor, " + toLocal + " -> local, "
+                + deletedServer + " borrados en servidor, " + deletedLocal + " borrados en local, "
+                + conflicts + " conflictos, " + unchanged + " sin cambios"
+                + (base == null ? " (sin snapshot previo: no se propagan borrados)" : "")
+                + " (" + (System.currentTimeMillis() - start) + " ms)");
+    }
+
+    private static void apply(Path local, Path server, List<Copy> copies, List<Path> deletes, List<Path> mkdirs) {
+        if (copies.isEmpty() && deletes.isEmpty() && mkdirs.isEmpty()) return;
+
+        List<SyncJournal.Op> ops = new ArrayList<>(copies.size() + deletes.size());
+        for (Copy c : copies) ops.add(new SyncJournal.Op(SyncJournal.Kind.COPY, c.src(), c.dest()));
+        for (Path d : deletes) ops.add(new SyncJournal.Op(SyncJournal.Kind.DEL, d.getParent(), d));
+        SyncJournal.Batch journal = SyncJournal.shared().begin("reconciliación " + local + " <-> " + server, ops);
+
+        SyncManifest toServer = SyncManifest.forPair(local, server);
+        SyncManifest toLocal = SyncManifest.forPair(server, local);
+        try {
+            ParallelCopier.runAll(copies, DirectorySynchronizer.copyConcurrency(),
+                    c -> {
+                        DirectorySynchronizer.copyFile(c.src(), c.dest());
+                        SyncManifest.Entry entry = DirectorySynchronizer.describe(c.dest());
+                        (c.toServer() ? toServer : toLocal).put(c.key(), entry);
+                        EchoGuard.wrote(c.dest(), entry);
+                        journal.done(c.op());
+                    },
+                    (c, e) -> System.err.println("[SYNC] Error copiando " + c.src() + " -> " + c.dest() + ": " + e.getMessage()));
+
+            for (int i = 0; i < deletes.size(); i++) {
+                Path d = deletes.get(i);
+                try {
+                    DirectorySynchronizer.deleteRecursivelyIfExists(d);
+                    boolean onServer = d.startsWith(server);
+                    (onServer ? toServer : toLocal).remove(SyncManifest.key((onServer ? server : local).relativize(d)));
+                    journal.done(copies.size() + i);
+                } catch (IOException e) {
+                    System.err.println("[SYNC] No se pudo borrar " + d + ": " + e.getMessage());
+                }
+            }
+
+            for (Path dir : mkdirs) {
+                try {
+                    WatchEventSuppressor.suppress(dir, 1200L);
+                    Durability.createDirectories(dir);
+                    EchoGuard.createdDir(dir);
+                } catch (IOException e) {
+                    System.err.println("[SYNC] No se pudo crear " + dir + ": " + e.getMessage());
+                }
+            }
+        } finally {
+            Durability.barrier("reconciliación " + local + " <-> " + server);
+            journal.end();
+            toServer.save();
+            toLocal.save();
+        }
+    }
+
+    /* ¿Se va a copiar algo dentro de dirKey desde el lado que aún lo tiene? */
+    private static boolean receivesCopies(List<Copy> copies, String dirKey, boolean fromLocal) {
+        String prefix = dirKey + "/";
+        for (Copy c : copies) {
+            if (c.toServer() == fromLocal && c.key().startsWith(prefix)) return true;
+        }
+        return false;
+    }
+
+    private static boolean same(Meta a, Meta b) {
+        if (a == null || b == null) return a == b;
+        if (a.dir() || b.dir()) return a.dir() == b.dir();
+        return a.size() == b.size() && a.mtime() == b.mtime();
+    }
+
+    /* =========================
+       SNAPSHOT
+       ========================= */
+
+    /* Al cerrar limpio: guarda lo que está igual en ambos lados. */
+    static void saveSnapshot(@NotNull Path local, @NotNull Path server) {
+        Path file = snapshotFile(local, server);
+        try {
+            TreeMap<String, Meta> l = DirectorySynchronizer.scan(local);
+            TreeMap<String, Meta> s = DirectorySynchronizer.scan(server);
+
+            Files.createDirectories(file.getParent());
+            Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+            int count = 0;
+            try (BufferedWriter w = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+                w.write(HEADER);
+                w.newLine();
+                w.write("# " + local + " <-> " + server);
+                w.newLine();
+                for (Map.Entry<String, Meta> e : l.entrySet()) {
+                    Meta m = e.getValue();
+                    if (!same(m, s.get(e.getKey()))) continue;
+                    w.write((m.dir() ? -1 : m.size()) + "\t" + (m.dir() ? 0 : m.mtime()) + "\t" + e.getKey());
+                    w.newLine();
+                    count++;
+                }
+            }
+            try {
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException ignored) {
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+            System.out.println("[SYNC] Snapshot guardado: " + count + " entradas (" + local + " <-> " + server + ")");
+        } catch (IOException e) {
+            System.err.println("[SYNC] No se pudo guardar snapshot " + file + ": " + e.getMessage());
+        }
+    }
+
+    private static Map<String, Meta> load(Path file) {
+        if (!Files.exists(file)) return null;
+        Map<String, Meta> out = new HashMap<>();
+        try {
+            for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+                if (line.isEmpty() || line.startsWith("#")) continue;
+                String[] f = line.split("\t", 3);
+                if (f.length < 3) continue;
+                try {
+                    long size = Long.parseLong(f[0]);
+                    out.put(f[2], size < 0 ? new Meta(0L, 0L, true) : new Meta(size, Long.parseLong(f[1]), false));
+                } catch (NumberFormatException ignored) {}
+            }
+        } catch (IOException e) {
+            System.err.println("[SYNC] No se pudo leer snapshot " + file + ": " + e.getMessage());
+            return null;
+        }
+        return out;
+    }
+
+    private static Path snapshotFile(Path local, Path server) {
+        return DirectorySynchronizer.stateDir().resolve("snapshots")
+                .resolve(SyncManifest.pairId(local, server) + ".snapshot");
+    }
+}
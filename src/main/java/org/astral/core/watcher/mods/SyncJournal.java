@@ -0,0 +1,263 @@
+package org.astral.core.watcher.mods;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/*
+ * Journal de escritura anticipada (stateDir/journal/sync.journal), solo se añade al final:
+ *   B <lote> <etiqueta>                 inicio de lote
+ *   O <lote> <n> COPY|DEL|MOVE <a>\t<b>  operación prevista (se escriben todas y fsync antes de tocar nada)
+ *   C <lote> <n>                        operación terminada
+ *   E <lote>                            lote terminado (fsync, después de la barrera de Durability)
+ * Al arrancar, las operaciones de lotes sin E y sin C se rehacen: el origen sigue siendo la verdad,
+ * así que repetir una copia o un borrado es seguro. Si el origen ya no existe, la copia se deshace
+ * (se borra el temporal y el destino a medias). Las copias con C de un lote sin E pueden no haber
+ * llegado a disco (el corte fue antes de la barrera): si el destino quedó vacío se rehacen también.
+ */
+final class SyncJournal {
+
+    enum Kind { COPY, DEL, MOVE }
+
+    record Op(Kind kind, Path from, Path to) {}
+
+    private static final long COMPACT_BYTES = 256 * 1024;
+
+    private static SyncJournal shared;
+
+    private final Path file;
+    private final AtomicLong ids = new AtomicLong(System.currentTimeMillis());
+    private final Set<Long> open = new HashSet<>();
+    private FileChannel channel;
+
+    private SyncJournal(Path file) {
+        this.file = file;
+    }
+
+    static synchronized SyncJournal shared() {
+        Path f = DirectorySynchronizer.stateDir().resolve("journal").resolve("sync.journal");
+        if (shared == null || !shared.file.equals(f)) {
+            if (shared != null) shared.close();
+            shared = new SyncJournal(f);
+        }
+        return shared;
+    }
+
+    /* Lote en curso; las operaciones se marcan con done(i) según terminan. */
+    final class Batch {
+        private final long id;
+        private final int size;
+
+        private Batch(long id, int size) {
+            this.id = id;
+            this.size = size;
+        }
+
+        void done(int index) {
+            if (id == 0 || index < 0 || index >= size) return;
+            append("C " + id + " " + index + "\n", false);
+        }
+
+        void end() {
+            if (id == 0) return;
+            append("E " + id + "\n", true);
+            synchronized (SyncJournal.this) {
+                open.remove(id);
+                if (open.isEmpty()) compactIfLarge();
+            }
+        }
+    }
+
+    /* Registra las operaciones previstas (las null se omiten) y hace fsync antes de devolver. */
+    Batch begin(String label, List<Op> ops) {
+        // lote sin nada que registrar: ni escritura ni fsync
+        if (ops.stream().allMatch(Objects::isNull)) return new Batch(0, 0);
+
+        long id = ids.incrementAndGet();
+        StringBuilder sb = new StringBuilder();
+        sb.append("B ").append(id).append(' ').append(clean(label)).append('\n');
+        for (int i = 0; i < ops.size(); i++) {
+            Op op = ops.get(i);
+            if (op == null) continue;
+            sb.append("O ").append(id).append(' ').append(i).append(' ').append(op.kind()).append(' ')
+                    .append(clean(String.valueOf(op.from()))).append('\t')
+                    .append(clean(String.valueOf(op.to()))).append('\n');
+        }
+        synchronized (this) {
+            open.add(id);
+        }
+        append(sb.toString(), true);
+        return new Batch(id, ops.size());
+    }
+
+    private synchronized void append(String text, boolean force) {
+        try {
+            if (channel == null) {
+                Files.createDirectories(file.getParent());
+                channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            }
+            ByteBuffer buf = ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8));
+            while (buf.hasRemaining()) channel.write(buf);
+            if (force) channel.force(false);
+        } catch (IOException e) {
+            System.err.println("[JOURNAL] No se pudo escribir el journal: " + e.getMessage());
+        }
+    }
+
+    private void compactIfLarge() {
+        try {
+            if (channel != null && channel.size() > COMPACT_BYTES) {
+                channel.truncate(0);
+                channel.force(true);
+            }
+        } catch (IOException e) {
+            System.err.println("[JOURNAL] No se pudo compactar el journal: " + e.getMessage());
+        }
+    }
+
+    private synchronized void close() {
+        if (channel == null) return;
+        try {
+            channel.close();
+        } catch (IOException ignored) {}
+        channel = null;
+    }
+
+    private static String clean(String s) {
+        return s.replace('\n', ' ').replace('\r', ' ').replace('\t', ' ');
+    }
+
+    /* =========================
+       RECUPERACIÓN AL ARRANCAR
+       ========================= */
+
+    /* Rehace o deshace lo que quedó a medias. Devuelve las operaciones recuperadas. */
+    synchronized int recover() {
+        if (!Files.exists(file)) return 0;
+
+        Map<Long, Map<Integer, Op>> pending = new LinkedHashMap<>();
+        Map<Long, List<Op>> unsynced = new HashMap<>();
+        try (Stream<String> lines = Files.lines(file, StandardCharsets.UTF_8)) {
+            lines.forEach(line -> parse(line, pending, unsynced));
+        } catch (IOException | UncheckedIOException e) {
+            System.err.println("[JOURNAL] No se pudo leer el journal: " + e.getMessage());
+            return 0;
+        }
+
+        int recovered = 0;
+        for (Map<Integer, Op> ops : pending.values()) {
+            for (Op op : ops.values()) {
+                try {
+                    if (replay(op)) recovered++;
+                } catch (IOException e) {
+                    System.err.println("[JOURNAL] No se pudo recuperar " + op.kind() + " " + op.to() + ": " + e.getMessage());
+                }
+            }
+        }
+        for (List<Op> ops : unsynced.values()) {
+            for (Op op : ops) {
+                try {
+                    if (torn(op) && replay(op)) recovered++;
+                } catch (IOException e) {
+                    System.err.println("[JOURNAL] No se pudo recuperar " + op.kind() + " " + op.to() + ": " + e.getMessage());
+                }
+            }
+        }
+        // lo rehecho tiene que estar en disco antes de olvidar el journal
+        Durability.barrier("recuperación del journal");
+
+        close();
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            System.err.println("[JOURNAL] No se pudo limpiar el journal: " + e.getMessage());
+        }
+        if (recovered > 0) {
+            System.out.println("[JOURNAL] " + recovered + " operaciones de sincronización interrumpidas recuperadas.");
+        }
+        return recovered;
+    }
+
+    private static void parse(String line, Map<Long, Map<Integer, Op>> pending, Map<Long, List<Op>> unsynced) {
+        // una línea cortada por el crash simplemente no se reconoce
+        String[] p = line.split(" ", 5);
+        try {
+            switch (p[0]) {
+                case "B" -> pending.put(Long.parseLong(p[1]), new LinkedHashMap<>());
+                case "O" -> {
+                    Map<Integer, Op> ops = pending.get(Long.parseLong(p[1]));
+                    String[] paths = p[4].split("\t", 2);
+                    if (ops != null && paths.length == 2) {
+                        ops.put(Integer.parseInt(p[2]),
+                                new Op(Kind.valueOf(p[3]), Path.of(paths[0]), Path.of(paths[1])));
+                    }
+                }
+                case "C" -> {
+                    long id = Long.parseLong(p[1]);
+                    Map<Integer, Op> ops = pending.get(id);
+                    Op op = ops == null ? null : ops.remove(Integer.parseInt(p[2]));
+                    if (op != null && op.kind() == Kind.COPY) unsynced.computeIfAbsent(id, _ -> new ArrayList<>()).add(op);
+                }
+                case "E" -> {
+                    pending.remove(Long.parseLong(p[1]));
+                    unsynced.remove(Long.parseLong(p[1]));
+                }
+                default -> {}
+            }
+        } catch (RuntimeException ignored) {}
+    }
+
+    private static boolean replay(Op op) throws IOException {
+        Path to = op.to();
+        switch (op.kind()) {
+            case COPY -> {
+                Files.deleteIfExists(FileCopier.tempSibling(to));
+                if (Files.isRegularFile(op.from())) {
+                    if (Files.isDirectory(to, LinkOption.NOFOLLOW_LINKS)) deleteTree(to);
+                    if (to.getParent() != null) Durability.createDirectories(to.getParent());
+                    FileCopier.copy(op.from(), to);
+                    Durability.track(to);
+                    EchoGuard.wrote(to);
+                } else {
+                    // el origen ya no está: no se sabe si el destino quedó completo, se deshace
+                    Files.deleteIfExists(to);
+                }
+                return true;
+            }
+            case DEL -> {
+                deleteTree(to);
+                return true;
+            }
+            case MOVE -> {
+                if (!Files.exists(op.from())) return false; // el rename ya se había hecho
+                if (Files.isDirectory(to)) deleteTree(to);
+                Files.move(op.from(), to, StandardCopyOption.REPLACE_EXISTING);
+                if (to.getParent() != null) Durability.trackDir(to.getParent());
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /* Copia marcada como hecha cuyo contenido no llegó a disco: el destino quedó vacío y el origen no. */
+    private static boolean torn(Op op) throws IOException {
+        Path to = op.to();
+        return Files.isRegularFile(to, LinkOption.NOFOLLOW_LINKS) && Files.size(to) == 0
+                && Files.isRegularFile(op.from()) && Files.size(op.from()) > 0;
+    }
+
+    private static void deleteTree(Path p) throws IOException {
+        if (!Files.exists(p, LinkOption.NOFOLLOW_LINKS)) return;
+        try (Stream<Path> s = Files.walk(p)) {
+            for (Path x : (Iterable<Path>) s.sorted(Comparator.reverseOrder())::iterator) {
+                Files.deleteIfExists(x);
+            }
+        }
+    }
+}
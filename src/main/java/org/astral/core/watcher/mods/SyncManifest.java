@@ -0,0 +1,135 @@
+package org.astral.core.watcher.mods;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+ * Estado persistente de un par origen -> destino: por cada ruta relativa sincronizada
+ * guarda (tamaño, mtime, hash opcional) tal y como quedó en el destino.
+ * Formato: una línea por archivo "size<TAB>mtime<TAB>hash<TAB>ruta" ('-' = sin hash).
+ */
+final class SyncManifest {
+
+    record Entry(long size, long mtime, String hash) {}
+
+    private static final String HEADER = "# sync-core manifest v1";
+    private static final Map<String, SyncManifest> CACHE = new ConcurrentHashMap<>();
+
+    private final Path file;
+    private final Path source;
+    private final Path target;
+    private final Map<String, Entry> entries = new HashMap<>();
+    private boolean dirty;
+
+    private SyncManifest(Path file, Path source, Path target) {
+        this.file = file;
+        this.source = source;
+        this.target = target;
+    }
+
+    static @NotNull SyncManifest forPair(@NotNull Path source, @NotNull Path target) {
+        Path s = source.toAbsolutePath().normalize();
+        Path t = target.toAbsolutePath().normalize();
+        String id = pairId(s, t);
+        return CACHE.computeIfAbsent(id, _ -> {
+            SyncManifest m = new SyncManifest(
+                    DirectorySynchronizer.stateDir().resolve("manifests").resolve(id + ".manifest"), s, t);
+            m.load();
+            return m;
+        });
+    }
+
+    static @NotNull String pairId(@NotNull Path source, @NotNull Path target) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            byte[] d = md.digest((source + "\n" + target).getBytes(StandardCharsets.UTF_8));
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < 8; i++) sb.append(String.format("%02x", d[i]));
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            return Integer.toHexString((source + "\n" + target).hashCode());
+        }
+    }
+
+    static @NotNull String key(@NotNull Path relative) {
+        return relative.toString().replace('\\', '/');
+    }
+
+    synchronized Entry get(String rel) {
+        return entries.get(rel);
+    }
+
+    synchronized void put(String rel, Entry e) {
+        Entry prev = entries.put(rel, e);
+        if (!e.equals(prev)) dirty = true;
+    }
+
+    /* Borra la entrada y todas las que cuelgan de ella (si era un directorio). */
+    synchronized void remove(String rel) {
+        if (entries.remove(rel) != null) dirty = true;
+        String prefix = rel.isEmpty() ? "" : rel + "/";
+        if (entries.keySet().removeIf(k -> k.startsWith(prefix))) dirty = true;
+    }
+
+    synchronized @NotNull Map<String, Entry> snapshot() {
+        return new HashMap<>(entries);
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+    private synchronized void load() {
+        if (!Files.exists(file)) return;
+        try {
+            for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+                if (line.isEmpty() || line.startsWith("#")) continue;
+                String[] f = line.split("\t", 4);
+                if (f.length < 4) continue;
+                try {
+                    entries.put(f[3], new Entry(Long.parseLong(f[0]), Long.parseLong(f[1]),
+                            "-".equals(f[2]) ? null : f[2]));
+                } catch (NumberFormatException ignored) {}
+            }
+        } catch (IOException e) {
+            System.err.println("[SYNC] No se pudo leer manifiesto " + file + ": " + e.getMessage());
+            entries.clear();
+        }
+    }
+
+    synchronized void save() {
+        if (!dirty) return;
+        try {
+            Files.createDirectories(file.getParent());
+            Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+            try (BufferedWriter w = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+                w.write(HEADER);
+                w.newLine();
+                w.write("# " + source + " -> " + target);
+                w.newLine();
+                for (Map.Entry<String, Entry> e : entries.entrySet()) {
+                    Entry v = e.getValue();
+                    w.write(v.size() + "\t" + v.mtime() + "\t" + (v.hash() == null ? "-" : v.hash()) + "\t" + e.getKey());
+                    w.newLine();
+                }
+            }
+            try {
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException ignored) {
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+            dirty = false;
+        } catch (IOException e) {
+            System.err.println("[SYNC] No se pudo guardar manifiesto " + file + ": " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,227 @@
+package org.astral.core.watcher.mods;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * Papelera para borrar directorios en tiempo constante.
+ * - Borrar un directorio en la ruta crítica es un único rename a la papelera del mismo filesystem:
+ *   <stateDir>/trash, o ".<raíz>.trash" junto a la raíz registrada si stateDir está en otro disco.
+ * - Un hilo de baja prioridad (Trash-Reaper) borra después el contenido real, con una espera previa
+ *   para que los watchers den de baja los subdirectorios movidos.
+ * - Backlog acotado (sync.trashBacklog entradas): si el reaper va por detrás, se borra en línea.
+ *   0 = sin papelera, siempre en línea.
+ * - Al arrancar se vacían las papeleras que quedaran de la ejecución anterior.
+ */
+public final class Trash {
+
+    private static final long DEST_SUPPRESS_MILLIS = 1200L;
+    private static final long REAP_DELAY_MILLIS = 2000L;
+    private static final int UNLINKS_PER_PAUSE = 256;
+
+    private record Pending(Path path, long notBefore) {}
+
+    private static final LinkedBlockingQueue<Pending> queue = new LinkedBlockingQueue<>();
+    private static final Set<Path> roots = ConcurrentHashMap.newKeySet();
+    private static final AtomicLong sequence = new AtomicLong();
+    private static final AtomicLong trashed = new AtomicLong();
+    private static final AtomicLong inline = new AtomicLong();
+    private static final AtomicLong reaped = new AtomicLong();
+    private static final AtomicLong unlinked = new AtomicLong();
+    private static final AtomicLong renameNanos = new AtomicLong();
+    private static volatile Thread reaper;
+
+    private Trash() {}
+
+    /*
+     * Aparta dir a la papelera con un rename. false si no se pudo (otro filesystem, backlog lleno,
+     * papelera desactivada): el llamador lo borra en línea.
+     */
+    static boolean discard(@NotNull Path dir) {
+        int limit = DirectorySynchronizer.settings().trashBacklog;
+        if (limit <= 0) return false;
+        if (queue.size() >= limit) {
+            inline.incrementAndGet();
+            return false;
+        }
+        if (!Files.isDirectory(dir, LinkOption.NOFOLLOW_LINKS)) return false;
+
+        long start = System.nanoTime();
+        Path bin = binFor(dir);
+        if (bin == null) {
+            inline.incrementAndGet();
+            return false;
+        }
+        Path dest = bin.resolve(sequence.incrementAndGet() + "-" + System.currentTimeMillis() + "-" + dir.getFileName());
+        try {
+            Files.createDirectories(bin);
+            WatchEventSuppressor.suppress(dir, DEST_SUPPRESS_MILLIS);
+            Files.move(dir, dest, StandardCopyOption.ATOMIC_MOVE);
+            EchoGuard.deleted(dir);
+        } catch (IOException e) {
+            inline.incrementAndGet();
+            return false;
+        }
+        trashed.incrementAndGet();
+        renameNanos.addAndGet(System.nanoTime() - start);
+        enqueue(dest, System.currentTimeMillis() + REAP_DELAY_MILLIS);
+        return true;
+    }
+
+    /* Raíces vigiladas o sincronizadas: su papelera alternativa va junto a ellas. */
+    static void registerRoot(@NotNull Path root) {
+        Path abs = root.toAbsolutePath().normalize();
+        if (abs.getParent() == null || !roots.add(abs)) return;
+        reapLeftovers(siblingBin(abs));
+    }
+
+    /* Arranque: lo que quedó en la papelera de stateDir se borra en segundo plano. */
+    public static void recover() {
+        reapLeftovers(DirectorySynchronizer.stateDir().resolve("trash"));
+    }
+
+    private static void reapLeftovers(Path bin) {
+        if (!Files.isDirectory(bin)) return;
+        int n = 0;
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(bin)) {
+            for (Path p : ds) {
+                enqueue(p, 0L);
+                n++;
+            }
+        } catch (IOException e) {
+            System.err.println("[TRASH] No se pudo leer " + bin + ": " + e.getMessage());
+        }
+        if (n > 0) System.out.println("[TRASH] " + n + " entradas pendientes en " + bin + ", se borran en segundo plano.");
+    }
+
+    private static Path binFor(Path dir) {
+        Path parent = dir.toAbsolutePath().normalize().getParent();
+        if (parent == null) return null;
+
+        Path stateBin = DirectorySynchronizer.stateDir().resolve("trash");
+        if (!dir.toAbsolutePath().normalize().startsWith(stateBin) && sameStore(parent, DirectorySynchronizer.stateDir())) {
+            return stateBin;
+        }
+
+        // la raíz más cercana cuyo directorio padre contiene dir (vale también para su staging)
+        Path best = null;
+        for (Path r : roots) {
+            if (parent.startsWith(r.getParent()) && (best == null || r.getNameCount() > best.getNameCount())) best = r;
+        }
+        if (best == null) return null;
+        Path bin = siblingBin(best);
+        return sameStore(parent, best.getParent()) ? bin : null;
+    }
+
+    private static Path siblingBin(Path root) {
+        return root.resolveSibling("." + root.getFileName() + ".trash");
+    }
+
+    private static boolean sameStore(Path a, Path b) {
+        try {
+            if (!Files.exists(b)) return false;
+            try {
+                return Objects.equals(Files.getAttribute(a, "unix:dev"), Files.getAttribute(b, "unix:dev"));
+            } catch (UnsupportedOperationException | IllegalArgumentException e) {
+                return Files.getFileStore(a).equals(Files.getFileStore(b));
+            }
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static void enqueue(Path p, long notBefore) {
+        queue.add(new Pending(p, notBefore));
+        startReaper();
+    }
+
+    private static synchronized void startReaper() {
+        if (reaper != null) return;
+        Thread t = new Thread(Trash::reapLoop, "Trash-Reaper");
+        t.setDaemon(true);
+        t.setPriority(Thread.MIN_PRIORITY);
+        reaper = t;
+        t.start();
+    }
+
+    private static void reapLoop() {
+        while (true) {
+            try {
+                Pending p = queue.take();
+                long wait = p.notBefore() - System.currentTimeMillis();
+                if (wait > 0) TimeUnit.MILLISECONDS.sleep(wait);
+                reap(p.path());
+                reaped.incrementAndGet();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (IOException | RuntimeException e) {
+                System.err.println("[TRASH] Error vaciando papelera: " + e.getMessage());
+            }
+        }
+    }
+
+    /* Borrado real, cediendo el disco cada UNLINKS_PER_PAUSE archivos. */
+    private static void reap(Path p) throws IOException, InterruptedException {
+        if (!Files.exists(p, LinkOption.NOFOLLOW_LINKS)) return;
+        final int[] count = {0};
+        try {
+            Files.walkFileTree(p, new SimpleFileVisitor<>() {
+                @Override
+                public @NotNull FileVisitResult visitFile(@NotNull Path file, @NotNull BasicFileAttributes attrs) throws IOException {
+                    Files.deleteIfExists(file);
+                    pause();
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public @NotNull FileVisitResult postVisitDirectory(@NotNull Path dir, IOException exc) throws IOException {
+                    Files.deleteIfExists(dir);
+                    pause();
+                    return FileVisitResult.CONTINUE;
+                }
+
+                private void pause() {
+                    unlinked.incrementAndGet();
+                    if (++count[0] % UNLINKS_PER_PAUSE == 0) {
+                        try {
+                            TimeUnit.MILLISECONDS.sleep(1);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+                }
+            });
+        } finally {
+            if (Thread.interrupted()) throw new InterruptedException();
+        }
+        removeEmptyBin(p.getParent());
+    }
+
+    /* Las papeleras junto a las raíces no se dejan vacías en disco. */
+    private static void removeEmptyBin(Path bin) {
+        if (bin == null || bin.equals(DirectorySynchronizer.stateDir().resolve("trash"))) return;
+        try {
+            Files.deleteIfExists(bin);
+        } catch (DirectoryNotEmptyException ignored) {
+            // aún queda algo por borrar
+        } catch (IOException e) {
+            System.err.println("[TRASH] No se pudo quitar " + bin + ": " + e.getMessage());
+        }
+    }
+
+    public static @NotNull String stats() {
+        long n = trashed.get();
+        return String.format(Locale.ROOT,
+                "papelera: %d directorios apartados (%.2f ms de media), %d borrados en línea, %d vaciados, %d entradas borradas, %d pendientes",
+                n, n == 0 ? 0.0 : renameNanos.get() / 1e6 / n, inline.get(), reaped.get(), unlinked.get(), queue.size());
+    }
+}
@@ -0,0 +1,62 @@
+package org.astral.core.watcher.mods;
+
+import java.io.IOException;
+import java.nio.file.FileStore;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.Set;
+
+/*
+ * Vigilancia recursiva de una carpeta que entrega RelativeWatchEvent a un ModsAutoUpdater.
+ *   native  -> WatchService (inotify) a través del WatchDispatcher
+ *   polling -> escaneo de metadatos con intervalo adaptativo (PollingWatcher)
+ *   auto    -> polling en sistemas de archivos donde inotify no es fiable, native en el resto
+ */
+interface TreeWatcher {
+
+    Set<String> UNRELIABLE_FS = Set.of("nfs", "nfs4", "cifs", "smb", "smb2", "smbfs", "overlay", "9p", "virtiofs", "sshfs");
+
+    void start() throws IOException;
+
+    void close();
+
+    static TreeWatcher create(Path root, ModsAutoUpdater updater, String backend) {
+        return create(root, updater, backend, PathFilter.NONE);
+    }
+
+    static TreeWatcher create(Path root, ModsAutoUpdater updater, String backend, PathFilter filter) {
+        String mode = backend == null || backend.isBlank()
+                ? DirectorySynchronizer.settings().watchBackend
+                : backend;
+        mode = mode == null ? "auto" : mode.trim().toLowerCase(Locale.ROOT);
+
+        boolean polling = switch (mode) {
+            case "polling", "poll" -> true;
+            case "native" -> false;
+            default -> {
+                String type = storeType(root);
+                boolean unreliable = type != null
+                        && (UNRELIABLE_FS.contains(type) || type.startsWith("fuse"));
+                if (unreliable) {
+                    System.out.println("[WATCHER] " + root + " está en " + type + ", se usa polling.");
+                }
+                yield unreliable;
+            }
+        };
+
+        return polling ? new PollingWatcher(root, updater, filter) : new ModsWatcher(root, updater, filter);
+    }
+
+    private static String storeType(Path root) {
+        try {
+            Path probe = root;
+            while (probe != null && !Files.exists(probe)) probe = probe.getParent();
+            if (probe == null) return null;
+            FileStore store = Files.getFileStore(probe);
+            return store.type().toLowerCase(Locale.ROOT);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+}
@@ -1,38 +1,241 @@
 package org.astral.core.watcher.mods;
 
 import java.nio.file.Path;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicLong;
-
+import java.util.Arrays;
+import java.util.Locale;
 
+/*
+ * Rutas que acabamos de escribir nosotros: sus eventos se ignoran durante unos milisegundos.
+ * - La clave es un hash de 64 bits de la ruta absoluta (sin guardar ni crear Paths).
+ * - La caducidad la lleva una rueda de tiempo (timing wheel) con ranuras de TICK_MILLIS;
+ *   al avanzar solo se revisan las ranuras vencidas, sin recorrer toda la tabla.
+ * - Como máximo MAX_ENTRIES entradas; si se llena, se descartan las que caducan antes.
+ * Una colisión de hash solo supone ignorar un evento durante una ventana corta.
+ */
 public final class WatchEventSuppressor {
 
-    private static final Map<Path, AtomicLong> suppressedUntil = new ConcurrentHashMap<>();
+    private static final long TICK_MILLIS = 100L;
+    private static final int WHEEL_SLOTS = 128;          // ~12.8 s por vuelta
+    private static final int MAX_ENTRIES = 1 << 16;
+
+    private static final LongLongTable until = new LongLongTable(MAX_ENTRIES);
+    private static final LongList[] wheel = new LongList[WHEEL_SLOTS];
+    private static long currentTick = System.currentTimeMillis() / TICK_MILLIS;
+
+    private static long hits, misses, suppressions, expired, evicted;
+    private static int peak;
+
+    static {
+        for (int i = 0; i < WHEEL_SLOTS; i++) wheel[i] = new LongList();
+    }
 
     private WatchEventSuppressor() {}
 
     public static void suppress(Path path, long millis) {
         if (path == null) return;
-        Path p = path.toAbsolutePath().normalize();
-        long until = System.currentTimeMillis() + Math.max(0, millis);
-        suppressedUntil.compute(p, (_, cur) -> {
-            if (cur == null) return new AtomicLong(until);
-            cur.set(Math.max(cur.get(), until));
-            return cur;
-        });
+        long key = keyOf(path);
+        long now = System.currentTimeMillis();
+        long expiry = now + Math.max(0, millis);
+
+        synchronized (until) {
+            advance(now);
+            suppressions++;
+
+            long cur = until.get(key);
+            if (cur != LongLongTable.MISSING) {
+                // ya está en la rueda: si caduca más tarde se reprograma al vencer su ranura
+                if (expiry > cur) until.put(key, expiry);
+                return;
+            }
+
+            if (until.size() >= MAX_ENTRIES) evictEarliest();
+            until.put(key, expiry);
+            schedule(key, expiry);
+            peak = Math.max(peak, until.size());
+        }
     }
 
     public static boolean isSuppressed(Path path) {
         if (path == null) return false;
-        Path p = path.toAbsolutePath().normalize();
-        AtomicLong at = suppressedUntil.get(p);
-        if (at == null) return false;
-        long val = at.get();
-        if (val < System.currentTimeMillis()) {
-            suppressedUntil.remove(p);
+        long key = keyOf(path);
+        long now = System.currentTimeMillis();
+
+        synchronized (until) {
+            advance(now);
+            long expiry = until.get(key);
+            if (expiry != LongLongTable.MISSING && expiry >= now) {
+                hits++;
+                return true;
+            }
+            misses++;
             return false;
         }
-        return true;
     }
-}
\ No newline at end of file
+
+    public static String stats() {
+        synchronized (until) {
+            advance(System.currentTimeMillis());
+            long lookups = hits + misses;
+            return String.format(Locale.ROOT,
+                    "supresor: %d entradas (máx %d, pico %d), %d suprimidos / %d consultas (%.1f%%), %d caducados, %d descartados por límite",
+                    until.size(), MAX_ENTRIES, peak, hits, lookups,
+                    lookups == 0 ? 0.0 : hits * 100.0 / lookups, expired, evicted);
+        }
+    }
+
+    /* Eventos descartados por EchoGuard (estado idéntico al que escribimos), sin ventana de tiempo. */
+    public static long echoesDropped() {
+        return EchoGuard.echoes();
+    }
+
+    /* Procesa las ranuras vencidas desde la última llamada. */
+    private static void advance(long now) {
+        long target = now / TICK_MILLIS;
+        if (target <= currentTick) return;
+
+        // tras una pausa larga basta con una vuelta completa
+        long from = Math.max(currentTick + 1, target - WHEEL_SLOTS + 1);
+        for (long t = from; t <= target; t++) {
+            LongList slot = wheel[(int) (t % WHEEL_SLOTS)];
+            int n = slot.size;
+            if (n == 0) continue;
+            long[] keys = slot.drain();
+            for (int i = 0; i < n; i++) {
+                long key = keys[i];
+                long expiry = until.get(key);
+                if (expiry == LongLongTable.MISSING) continue;
+                if (expiry < now) {
+                    until.remove(key);
+                    expired++;
+                } else {
+                    schedule(key, expiry);
+                }
+            }
+        }
+        currentTick = target;
+    }
+
+    private static void schedule(long key, long expiry) {
+        long tick = Math.max(currentTick + 1, expiry / TICK_MILLIS + 1);
+        // más allá de una vuelta se deja en la última ranura alcanzable y se reprograma al vencer
+        tick = Math.min(tick, currentTick + WHEEL_SLOTS - 1);
+        wheel[(int) (tick % WHEEL_SLOTS)].add(key);
+    }
+
+    private static void evictEarliest() {
+        for (int i = 1; i < WHEEL_SLOTS && until.size() >= MAX_ENTRIES; i++) {
+            LongList slot = wheel[(int) ((currentTick + i) % WHEEL_SLOTS)];
+            int n = slot.size;
+            long[] keys = slot.drain();
+            for (int k = 0; k < n; k++) {
+                if (until.remove(keys[k])) evicted++;
+            }
+        }
+    }
+
+    /* FNV-1a de 64 bits sobre la ruta absoluta; solo se normaliza si hace falta. */
+    private static long keyOf(Path path) {
+        Path p = path.isAbsolute() ? path : path.toAbsolutePath();
+        String s = p.toString();
+        if (s.contains("..") || s.contains("/./") || s.contains("\\.\\")) {
+            s = p.normalize().toString();
+        }
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < s.length(); i++) {
+            h ^= s.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        return h;
+    }
+
+    /* Lista de long sin boxing. */
+    private static final class LongList {
+        long[] items = new long[8];
+        int size;
+
+        void add(long v) {
+            if (size == items.length) items = Arrays.copyOf(items, size * 2);
+            items[size++] = v;
+        }
+
+        /* Devuelve el array actual y deja la lista vacía (el llamador usa los primeros size elementos). */
+        long[] drain() {
+            long[] out = items;
+            items = size > 64 ? new long[8] : new long[items.length];
+            size = 0;
+            return out;
+        }
+    }
+
+    /* Tabla hash abierta long -> long con sondeo lineal y borrado por desplazamiento. */
+    private static final class LongLongTable {
+        static final long MISSING = Long.MIN_VALUE;
+
+        private final long[] keys;
+        private final long[] values;
+        private final boolean[] used;
+        private final int mask;
+        private int size;
+
+        LongLongTable(int maxEntries) {
+            int cap = Integer.highestOneBit(maxEntries * 2 - 1) << 1; // carga <= 0.5
+            keys = new long[cap];
+            values = new long[cap];
+            used = new boolean[cap];
+            mask = cap - 1;
+        }
+
+        int size() {
+            return size;
+        }
+
+        private int slot(long key) {
+            long h = key * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32)) & mask;
+        }
+
+        long get(long key) {
+            for (int i = slot(key); used[i]; i = (i + 1) & mask) {
+                if (keys[i] == key) return values[i];
+            }
+            return MISSING;
+        }
+
+        void put(long key, long value) {
+            int i = slot(key);
+            for (; used[i]; i = (i + 1) & mask) {
+                if (keys[i] == key) {
+                    values[i] = value;
+                    return;
+                }
+            }
+            used[i] = true;
+            keys[i] = key;
+            values[i] = value;
+            size++;
+        }
+
+        boolean remove(long key) {
+            int i = slot(key);
+            while (used[i] && keys[i] != key) i = (i + 1) & mask;
+            if (!used[i]) return false;
+
+            // desplaza hacia atrás las entradas siguientes del mismo racimo
+            int hole = i;
+            int j = (i + 1) & mask;
+            while (used[j]) {
+                int home = slot(keys[j]);
+                boolean movable = hole <= j ? (home <= hole || home > j) : (home <= hole && home > j);
+                if (movable) {
+                    keys[hole] = keys[j];
+                    values[hole] = values[j];
+                    hole = j;
+                }
+                j = (j + 1) & mask;
+            }
+            used[hole] = false;
+            size--;
+            return true;
+        }
+    }
+}
@@ -1,12 +1,14 @@
 package org.astral.core.watcher.mods;
 
+import org.astral.core.config.Config;
 import org.astral.core.process.ManagerHolder;
 import org.jetbrains.annotations.NotNull;
 
 import java.io.IOException;
-import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -21,6 +23,9 @@ public class WatcherRegistry {
         this.managerHolder = managerHolder;
         this.baseServerMods = baseServerMods.toAbsolutePath().normalize();
         this.localMods = localMods.toAbsolutePath().normalize();
+        DirectorySynchronizer.setPreferredRoot(this.localMods);
+        Trash.registerRoot(this.localMods);
+        Trash.registerRoot(this.baseServerMods);
 
         try {
             if (!Files.exists(this.localMods)) {
@@ -42,19 +47,10 @@ public class WatcherRegistry {
 
         try {
             ModsAutoUpdater localToServer = new ModsAutoUpdater(this.managerHolder, this.localMods, this.baseServerMods, true);
-            ModsWatcher watcherLocal = new ModsWatcher(this.localMods, localToServer);
-            Thread tLocal = new Thread(watcherLocal, "ModsWatcher-localMods");
-            tLocal.setDaemon(true);
-            tLocal.start();
+            TreeWatcher watcherLocal = TreeWatcher.create(this.localMods, localToServer, null);
+            watcherLocal.start();
 
-            handles.put(this.localMods, new WatchHandle(this.localMods, this.baseServerMods, watcherLocal, localToServer, tLocal));
-
-            try {
-                copyTopLevelIfAbsent(this.localMods, this.baseServerMods);
-                System.out.println("[WATCHER] Import inicial (local -> server) completado: " + this.localMods + " -> " + this.baseServerMods);
-            } catch (IOException e) {
-                System.err.println("[WATCHER] Error en import inicial local -> server: " + e.getMessage());
-            }
+            handles.put(this.localMods, new WatchHandle(this.localMods, this.baseServerMods, watcherLocal, localToServer));
 
         } catch (Exception e) {
             System.err.println("[WATCHER] Error creando watcher para localMods: " + e.getMessage());
@@ -62,26 +58,49 @@ public class WatcherRegistry {
 
         try {
             ModsAutoUpdater serverToLocal = new ModsAutoUpdater(this.managerHolder, this.baseServerMods, this.localMods, false);
-            ModsWatcher watcherServer = new ModsWatcher(this.baseServerMods, serverToLocal);
-            Thread tServer = new Thread(watcherServer, "ModsWatcher-baseServerMods");
-            tServer.setDaemon(true);
-            tServer.start();
+            TreeWatcher watcherServer = TreeWatcher.create(this.baseServerMods, serverToLocal, null);
+            watcherServer.start();
 
-            handles.put(this.baseServerMods, new WatchHandle(this.baseServerMods, this.localMods, watcherServer, serverToLocal, tServer));
-
-            try {
-                copyTopLevelIfAbsent(this.baseServerMods, this.localMods);
-                System.out.println("[WATCHER] Import inicial (server -> local) completado: " + this.baseServerMods + " -> " + this.localMods);
-            } catch (IOException e) {
-                System.err.println("[WATCHER] Error en import inicial server -> local: " + e.getMessage());
-            }
+            handles.put(this.baseServerMods, new WatchHandle(this.baseServerMods, this.localMods, watcherServer, serverToLocal));
 
         } catch (Exception e) {
             System.err.println("[WATCHER] Error creando watcher para baseServerMods: " + e.getMessage());
         }
+
+        // con los dos watchers ya activos: lo que cambie durante la reconciliación no se pierde
+        try {
+            StartupReconciler.reconcile(this.localMods, this.baseServerMods);
+        } catch (IOException e) {
+            System.err.println("[WATCHER] Error en la reconciliación inicial local <-> server: " + e.getMessage());
+        }
+    }
+
+    public void addWatcher(Path source) {
+        addWatcher(source, (String) null);
     }
 
-    public synchronized void addWatcher(Path source) {
+    public void addWatcher(Path source, String backend) {
+        addWatcher(source, new Config.Watcher(source.toString(), backend));
+    }
+
+    /*
+     * Opciones de Config.Watcher:
+     *   backend    -> auto | native | polling (null = sync.watchBackend)
+     *   include / exclude -> filtros glob
+     *   completion -> señal de fin de build para build/libs (quiet | marker[:nombre] | ready | zip | auto)
+     *   targets    -> destinos propios (fan-out) en lugar de localMods
+     */
+    public synchronized void addWatcher(Path source, Config.Watcher options) {
+        String backend = options != null ? options.backend : null;
+        PathFilter filter = options != null ? PathFilter.of(options.include, options.exclude) : PathFilter.NONE;
+        String completion = options != null ? options.completion : null;
+        List<Path> targets = new ArrayList<>();
+        if (options != null && options.targets != null) {
+            for (String t : options.targets) {
+                if (t != null && !t.isBlank()) targets.add(Path.of(t).toAbsolutePath().normalize());
+            }
+        }
+
         try {
             source = source.toAbsolutePath().normalize();
 
@@ -105,23 +124,25 @@ public class WatcherRegistry {
             ModsAutoUpdater updater;
             Path target;
 
+            Trash.registerRoot(source);
+
+            if (!targets.isEmpty()) {
+                targets.forEach(Trash::registerRoot);
+                addFanOutWatcher(source, targets, backend, filter);
+                return;
+            }
+
             if (isBuildLibTrigger) {
-                updater = new ModsAutoUpdater(this.managerHolder, source, this.baseServerMods, true, this.localMods);
+                updater = new ModsAutoUpdater(this.managerHolder, source, this.baseServerMods, true, this.localMods, completion);
             } else {
                 updater = new ModsAutoUpdater(this.managerHolder, source, this.localMods, false);
             }
 
             target = this.localMods;
 
-            ModsWatcher watcher = new ModsWatcher(source, updater);
-
-            Thread t = new Thread(
-                    watcher,
-                    "ModsWatcher-" + (source.getFileName() == null ? "root" : source.getFileName().toString())
-            );
-            t.setDaemon(true);
+            TreeWatcher watcher = TreeWatcher.create(source, updater, backend, filter);
 
-            handles.put(source, new WatchHandle(source, target, watcher, updater, t));
+            handles.put(source, new WatchHandle(source, target, watcher, updater));
 
             try {
                 DirectorySynchronizer.copyTopLevelContents(source, target);
@@ -130,7 +151,7 @@ public class WatcherRegistry {
                 System.err.println("[WATCHER] Error importando contenido inicial de watcher: " + e.getMessage());
             }
 
-            t.start();
+            watcher.start();
 
             System.out.println("[WATCHER] Watcher añadido: " + source + " -> " + target
                     + (isBuildLibTrigger ? " (build/libs trigger: copiar + reiniciar)" : " (externo, sin reinicio directo)"));
@@ -140,6 +161,30 @@ public class WatcherRegistry {
         }
     }
 
+    /* Un origen, varios destinos: sin reinicios, cada destino avanza a su ritmo. */
+    private void addFanOutWatcher(Path source, List<Path> targets, String backend, PathFilter filter) throws IOException {
+        FanOutSync fanOut = new FanOutSync(source, targets);
+        ModsAutoUpdater updater = new ModsAutoUpdater(this.managerHolder, source, targets.getFirst(), false);
+        updater.setFanOut(fanOut);
+
+        TreeWatcher watcher = TreeWatcher.create(source, updater, backend, filter);
+        handles.put(source, new WatchHandle(source, targets.getFirst(), watcher, updater));
+
+        fanOut.importAll();
+        watcher.start();
+
+        System.out.println("[WATCHER] Watcher añadido: " + source + " -> " + targets.size() + " destinos " + targets + " (fan-out)");
+    }
+
+    public synchronized List<String> fanOutStats() {
+        List<String> out = new ArrayList<>();
+        handles.values().forEach(h -> {
+            FanOutSync f = h.updater.fanOut();
+            if (f != null) out.addAll(f.stats());
+        });
+        return out;
+    }
+
     public synchronized boolean removeWatcher(Path source) {
         source = source.toAbsolutePath().normalize();
 
@@ -149,12 +194,8 @@ public class WatcherRegistry {
             return false;
         }
 
-        h.thread.interrupt();
-        try {
-            h.thread.join(2000);
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-        }
+        h.watcher.close();
+        if (h.updater.fanOut() != null) h.updater.fanOut().close();
 
         System.out.println("[WATCHER] Watcher removido: " + source);
         return true;
@@ -169,68 +210,31 @@ public class WatcherRegistry {
     public synchronized void shutdownAll() {
         System.out.println("[WATCHER] Cerrando todos los watchers...");
 
-        handles.forEach((_, h) -> h.thread.interrupt());
-
+        boolean managed = handles.containsKey(localMods);
         handles.forEach((_, h) -> {
-            try {
-                h.thread.join(2000);
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-            }
+            h.watcher.close();
+            if (h.updater.fanOut() != null) h.updater.fanOut().close();
         });
 
         handles.clear();
+        // solo tras un cierre limpio hay una base fiable para la próxima reconciliación
+        if (managed) StartupReconciler.saveSnapshot(localMods, baseServerMods);
         System.out.println("[WATCHER] Todos los watchers finalizados.");
     }
 
-    private static void copyTopLevelIfAbsent(Path source, Path target) throws IOException {
-        if (!Files.exists(source)) return;
-
-        if (!Files.exists(target)) {
-            Files.createDirectories(target);
-        }
-
-        try (DirectoryStream<Path> children = Files.newDirectoryStream(source)) {
-            for (Path child : children) {
-                Path dest = target.resolve(child.getFileName());
-                try {
-                    if (Files.exists(dest)) {
-                        continue;
-                    }
-
-                    if (Files.isDirectory(child)) {
-                        DirectorySynchronizer.copyTopLevelContents(child, dest);
-                    } else {
-                        if (dest.getParent() != null && !Files.exists(dest.getParent())) {
-                            Files.createDirectories(dest.getParent());
-                        }
-                        Files.copy(child, dest, java.nio.file.StandardCopyOption.COPY_ATTRIBUTES);
-                    }
-                } catch (java.nio.file.NoSuchFileException nsf) {
-                    System.err.println("[WATCHER] Archivo desapareció durante import: " + child);
-                } catch (IOException e) {
-                    System.err.println("[WATCHER] Error copiando top-level " + child + " -> " + dest + ": " + e.getMessage());
-                }
-            }
-        }
-    }
-
     private static class WatchHandle {
         final Path source;
         volatile Path target;
-        final ModsWatcher watcher;
+        final TreeWatcher watcher;
         final ModsAutoUpdater updater;
-        final Thread thread;
 
         WatchHandle(Path source, Path target,
-                    ModsWatcher watcher,
-                    ModsAutoUpdater updater,
-                    Thread thread) {
+                    TreeWatcher watcher,
+                    ModsAutoUpdater updater) {
             this.source = source;
             this.target = target;
             this.watcher = watcher;
             this.updater = updater;
-            this.thread = thread;
         }
     }
 }
\ No newline at end of file